@@ -0,0 +1,80 @@
+package com.xeno.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sum, mean and period-over-period change of a column of order totals, aggregated as
+ * {@link BigDecimal} the way analytics did before and in long minor units with
+ * {@link MoneyAccumulator}. Both read the amounts as they come off the database, one
+ * half of the column per period.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+    
+    @Param("1000000")
+    private int amounts;
+    
+    private BigDecimal[] decimals;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimals = new BigDecimal[amounts];
+        for (int i = 0; i < amounts; i++) {
+            decimals[i] = BigDecimal.valueOf(100 + random.nextInt(2_000_000), Money.SCALE);
+        }
+    }
+    
+    @Benchmark
+    public Object[] bigDecimal() {
+        int half = amounts / 2;
+        BigDecimal previous = BigDecimal.ZERO;
+        BigDecimal current = BigDecimal.ZERO;
+        for (int i = 0; i < half; i++) {
+            previous = previous.add(decimals[i]);
+        }
+        for (int i = half; i < amounts; i++) {
+            current = current.add(decimals[i]);
+        }
+        BigDecimal average = current.divide(BigDecimal.valueOf(amounts - half), Money.SCALE, RoundingMode.HALF_UP);
+        double change = current.subtract(previous)
+                .divide(previous, 4, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(100))
+                .doubleValue();
+        return new Object[] {current, average, change};
+    }
+    
+    @Benchmark
+    public Object[] minorUnits() {
+        int half = amounts / 2;
+        MoneyAccumulator previous = new MoneyAccumulator();
+        MoneyAccumulator current = new MoneyAccumulator();
+        for (int i = 0; i < half; i++) {
+            previous.add(decimals[i]);
+        }
+        for (int i = half; i < amounts; i++) {
+            current.add(decimals[i]);
+        }
+        return new Object[] {current.sumAsDecimal(), current.averageAsDecimal(), current.percentageChangeFrom(previous)};
+    }
+}
@@ -0,0 +1,138 @@
+package com.xeno.repository;
+
+import com.xeno.XenoApplication;
+import com.xeno.dto.EntityDto;
+import com.xeno.entity.Product;
+import com.xeno.repository.projection.ProductListRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First page of a tenant's product listing, newest first, read the way the endpoint did
+ * before projections (entities mapped to DTOs, description included) and through
+ * {@link RowQueryRepository} with offset and keyset paging. Boots the application
+ * without a web server against the database in DATABASE_URL, DATABASE_USERNAME and
+ * DATABASE_PASSWORD; pick the tenant with {@code -p tenantId=...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ProductListBenchmark {
+    
+    private static final Map<String, Keyset.SortKey<ProductListRow>> SORTS = Map.of(
+            "createdAt", Keyset.SortKey.dateTime("createdAt", ProductListRow::createdAt, false));
+    
+    @Param("1")
+    private long tenantId;
+    
+    @Param({"20", "100"})
+    private int size;
+    
+    private ConfigurableApplicationContext context;
+    private ProductRepository productRepository;
+    private RowQueryRepository rowQueryRepository;
+    private TransactionTemplate readOnlyTransaction;
+    
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(XenoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("scheduler.sync.enabled=false", "logging.level.root=WARN")
+                .run();
+        productRepository = context.getBean(ProductRepository.class);
+        rowQueryRepository = context.getBean(RowQueryRepository.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+    }
+    
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+    
+    @Benchmark
+    public List<EntityDto.ProductDto> entities() {
+        return readOnlyTransaction.execute(status -> productRepository
+                .findByTenantId(tenantId, PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "createdAt")))
+                .map(ProductListBenchmark::toDto)
+                .getContent());
+    }
+    
+    @Benchmark
+    public List<EntityDto.ProductDto> projection() {
+        return readOnlyTransaction.execute(status -> rowQueryRepository
+                .findPage(Product.class, ProductListRow.class, ProductRepository.ofTenant(tenantId),
+                        PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "createdAt")))
+                .map(ProductListBenchmark::toDto)
+                .getContent());
+    }
+    
+    @Benchmark
+    public List<EntityDto.ProductDto> projectionKeyset() {
+        return readOnlyTransaction.execute(status -> rowQueryRepository
+                .findKeyset(Product.class, ProductListRow.class, ProductRepository.ofTenant(tenantId), SORTS,
+                        new Keyset.Request("createdAt", false, null, size, false))
+                .map(ProductListBenchmark::toDto)
+                .content());
+    }
+    
+    private static EntityDto.ProductDto toDto(Product product) {
+        return EntityDto.ProductDto.builder()
+                .id(product.getId())
+                .shopifyProductId(product.getShopifyProductId())
+                .title(product.getTitle())
+                .description(product.getDescription())
+                .vendor(product.getVendor())
+                .productType(product.getProductType())
+                .price(product.getPrice())
+                .compareAtPrice(product.getCompareAtPrice())
+                .sku(product.getSku())
+                .inventoryQuantity(product.getInventoryQuantity())
+                .status(product.getStatus() != null ? product.getStatus().name() : null)
+                .imageUrl(product.getImageUrl())
+                .createdAt(product.getCreatedAt())
+                .build();
+    }
+    
+    private static EntityDto.ProductDto toDto(ProductListRow product) {
+        return EntityDto.ProductDto.builder()
+                .id(product.id())
+                .shopifyProductId(product.shopifyProductId())
+                .title(product.title())
+                .vendor(product.vendor())
+                .productType(product.productType())
+                .price(product.price())
+                .compareAtPrice(product.compareAtPrice())
+                .sku(product.sku())
+                .inventoryQuantity(product.inventoryQuantity())
+                .status(product.status() != null ? product.status().name() : null)
+                .imageUrl(product.imageUrl())
+                .createdAt(product.createdAt())
+                .build();
+    }
+}
@@ -0,0 +1,225 @@
+package com.xeno.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Sparse co-occurrence counts of items bought together, for basket analysis.
+ * Item ids are mapped to dense indexes, and each pair of indexes seen in the same
+ * basket is packed into one long key of a {@link LongIntHashMap}, so only pairs
+ * that actually occur take memory. When the number of distinct pairs passes
+ * {@code maxPairs}, pairs with counts at or below a rising prune level are dropped,
+ * so rare pairs make room and frequent pairs survive. Counts are never above their
+ * exact value, but a dropped pair that occurs again restarts from zero, so after any
+ * pruning reported counts are lower bounds with no fixed error bound. Not thread-safe.
+ */
+public class CoOccurrenceCounter {
+    
+    private final int maxPairs;
+    private final LongIntHashMap indexes = new LongIntHashMap(1024);
+    private long[] items = new long[1024];
+    private int[] baskets = new int[1024];
+    private int itemCount;
+    private long basketCount;
+    
+    private LongIntHashMap pairs = new LongIntHashMap(1024);
+    private int pruneLevel;
+    
+    private int[] scratch = new int[16];
+    
+    public CoOccurrenceCounter(int maxPairs) {
+        if (maxPairs < 1) {
+            throw new IllegalArgumentException("maxPairs must be positive: " + maxPairs);
+        }
+        this.maxPairs = maxPairs;
+    }
+    
+    /**
+     * Count one basket from the first {@code n} item ids; repeated ids count once.
+     * The array is sorted in place.
+     */
+    public void addBasket(long[] itemIds, int n) {
+        Arrays.sort(itemIds, 0, n);
+        if (scratch.length < n) {
+            scratch = new int[Math.max(n, scratch.length * 2)];
+        }
+        
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && itemIds[i] == itemIds[i - 1]) {
+                continue;
+            }
+            int index = indexOf(itemIds[i]);
+            baskets[index]++;
+            scratch[distinct++] = index;
+        }
+        basketCount++;
+        
+        for (int i = 0; i < distinct; i++) {
+            for (int j = i + 1; j < distinct; j++) {
+                pairs.addTo(pairKey(scratch[i], scratch[j]), 1);
+            }
+        }
+        if (pairs.size() > maxPairs) {
+            prune();
+        }
+    }
+    
+    public long getBasketCount() {
+        return basketCount;
+    }
+    
+    public int getItemCount() {
+        return itemCount;
+    }
+    
+    public int getPairCount() {
+        return pairs.size();
+    }
+    
+    /**
+     * Highest count at which pairs have been dropped, 0 when counts are exact.
+     * Pairs seen no more often than this may be missing or undercounted.
+     */
+    public int getPruneLevel() {
+        return pruneLevel;
+    }
+    
+    public long memoryBytes() {
+        return pairs.memoryBytes() + indexes.memoryBytes()
+                + (long) items.length * Long.BYTES + (long) baskets.length * Integer.BYTES;
+    }
+    
+    /**
+     * Visit each item's top {@code k} partners seen together at least {@code minCount} times.
+     * Partners are ranked by co-occurrences, then by fewest baskets of their own
+     * (the higher lift), then by id, and visited best first for each item.
+     */
+    public void forEachTopK(int k, int minCount, PairConsumer consumer) {
+        int[] partners = new int[itemCount * k];
+        int[] counts = new int[itemCount * k];
+        int[] sizes = new int[itemCount];
+        
+        pairs.forEach((key, count) -> {
+            if (count < minCount) {
+                return;
+            }
+            int a = (int) (key >>> 32);
+            int b = (int) key;
+            offer(partners, counts, sizes, k, a, b, count);
+            offer(partners, counts, sizes, k, b, a, count);
+        });
+        
+        for (int item = 0; item < itemCount; item++) {
+            int base = item * k;
+            int size = sizes[item];
+            // Pop the min-heap from the back so the best partner ends up first
+            for (int end = size - 1; end > 0; end--) {
+                swap(partners, counts, base, base + end);
+                siftDown(partners, counts, base, 0, end);
+            }
+            for (int rank = 0; rank < size; rank++) {
+                int partner = partners[base + rank];
+                consumer.accept(items[item], items[partner], rank + 1, counts[base + rank],
+                        baskets[item], baskets[partner]);
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    public interface PairConsumer {
+        void accept(long item, long partner, int rank, int coOccurrences, int itemBaskets, int partnerBaskets);
+    }
+    
+    private int indexOf(long itemId) {
+        int index = indexes.get(itemId, -1);
+        if (index >= 0) {
+            return index;
+        }
+        if (itemCount == items.length) {
+            items = Arrays.copyOf(items, itemCount * 2);
+            baskets = Arrays.copyOf(baskets, itemCount * 2);
+        }
+        index = itemCount++;
+        items[index] = itemId;
+        indexes.put(itemId, index);
+        return index;
+    }
+    
+    private static long pairKey(int low, int high) {
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Raise the prune level until the surviving pairs fit in three quarters of the limit
+     */
+    private void prune() {
+        LongIntHashMap kept = pairs;
+        while (kept.size() > maxPairs * 3L / 4) {
+            int level = ++pruneLevel;
+            LongIntHashMap survivors = new LongIntHashMap(kept.size() / 2);
+            kept.forEach((key, count) -> {
+                if (count > level) {
+                    survivors.put(key, count);
+                }
+            });
+            kept = survivors;
+        }
+        pairs = kept;
+    }
+    
+    /**
+     * Push a partner onto an item's bounded min-heap, replacing the weakest partner once full
+     */
+    private void offer(int[] partners, int[] counts, int[] sizes, int k, int item, int partner, int count) {
+        int base = item * k;
+        int size = sizes[item];
+        if (size < k) {
+            int child = size;
+            partners[base + child] = partner;
+            counts[base + child] = count;
+            while (child > 0) {
+                int parent = (child - 1) / 2;
+                if (!weaker(partners, counts, base + child, base + parent)) break;
+                swap(partners, counts, base + child, base + parent);
+                child = parent;
+            }
+            sizes[item] = size + 1;
+        } else if (better(partner, count, partners[base], counts[base])) {
+            partners[base] = partner;
+            counts[base] = count;
+            siftDown(partners, counts, base, 0, k);
+        }
+    }
+    
+    private void siftDown(int[] partners, int[] counts, int base, int parent, int size) {
+        while (true) {
+            int weakest = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < size && weaker(partners, counts, base + left, base + weakest)) weakest = left;
+            if (right < size && weaker(partners, counts, base + right, base + weakest)) weakest = right;
+            if (weakest == parent) return;
+            swap(partners, counts, base + parent, base + weakest);
+            parent = weakest;
+        }
+    }
+    
+    private boolean weaker(int[] partners, int[] counts, int x, int y) {
+        return better(partners[y], counts[y], partners[x], counts[x]);
+    }
+    
+    private boolean better(int partner, int count, int otherPartner, int otherCount) {
+        if (count != otherCount) return count > otherCount;
+        if (baskets[partner] != baskets[otherPartner]) return baskets[partner] < baskets[otherPartner];
+        return items[partner] < items[otherPartner];
+    }
+    
+    private static void swap(int[] partners, int[] counts, int x, int y) {
+        int partner = partners[x];
+        partners[x] = partners[y];
+        partners[y] = partner;
+        int count = counts[x];
+        counts[x] = counts[y];
+        counts[y] = count;
+    }
+}
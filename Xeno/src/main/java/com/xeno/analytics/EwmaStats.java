@@ -0,0 +1,69 @@
+package com.xeno.analytics;
+
+/**
+ * Exponentially weighted moving mean and variance of a stream of observations.
+ * Each observation moves the mean by {@code alpha} of its distance from it, and
+ * the variance is updated incrementally from the same difference, so the state is
+ * three numbers however long the stream runs. Not thread-safe.
+ */
+public class EwmaStats {
+    
+    private final double alpha;
+    private double mean;
+    private double variance;
+    private long observations;
+    
+    public EwmaStats(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]: " + alpha);
+        }
+        this.alpha = alpha;
+    }
+    
+    /**
+     * Restore previously saved state
+     */
+    public EwmaStats(double alpha, double mean, double variance, long observations) {
+        this(alpha);
+        this.mean = mean;
+        this.variance = variance;
+        this.observations = observations;
+    }
+    
+    public void update(double value) {
+        if (observations == 0) {
+            mean = value;
+            variance = 0;
+        } else {
+            double diff = value - mean;
+            double increment = alpha * diff;
+            mean += increment;
+            variance = (1 - alpha) * (variance + diff * increment);
+        }
+        observations++;
+    }
+    
+    /**
+     * Standard deviations between a value and the current mean, using at least
+     * {@code minStdDev} so a quiet history does not make every change look extreme
+     */
+    public double zScore(double value, double minStdDev) {
+        double stdDev = Math.max(Math.sqrt(variance), minStdDev);
+        if (stdDev <= 0) {
+            return 0;
+        }
+        return (value - mean) / stdDev;
+    }
+    
+    public double getMean() {
+        return mean;
+    }
+    
+    public double getVariance() {
+        return variance;
+    }
+    
+    public long getObservations() {
+        return observations;
+    }
+}
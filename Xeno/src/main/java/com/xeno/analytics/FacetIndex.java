@@ -0,0 +1,178 @@
+package com.xeno.analytics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet values of a set of documents as one {@link RoaringBitmap} of document ids per
+ * value, for faceted browsing. A document can hold several values of a facet, like tags.
+ * A filter selects values per facet; a document matches when it holds one of the selected
+ * values of every filtered facet, so the matching set is the intersection of the unions
+ * of the selected values' bitmaps.
+ * <p>
+ * Counts for a facet apply the filters on the other facets only, so the values a user
+ * could switch to or add keep their counts once one of them is selected. Each count is
+ * the cardinality of an intersection and never materialises it. Not thread-safe.
+ */
+public class FacetIndex<F extends Enum<F>> {
+    
+    private static final String[] NO_VALUES = new String[0];
+    
+    private final Class<F> facetType;
+    private final F[] facets;
+    private final EnumMap<F, Map<String, RoaringBitmap>> bitmaps;
+    private final RoaringBitmap all = new RoaringBitmap();
+    // Values each document holds, indexed by facet ordinal, to take them out on update
+    private final Map<Long, String[][]> documents = new HashMap<>();
+    
+    public FacetIndex(Class<F> facetType) {
+        this.facetType = facetType;
+        this.facets = facetType.getEnumConstants();
+        this.bitmaps = new EnumMap<>(facetType);
+        for (F facet : facets) {
+            bitmaps.put(facet, new HashMap<>());
+        }
+    }
+    
+    public int size() {
+        return documents.size();
+    }
+    
+    public boolean contains(long id) {
+        return documents.containsKey(id);
+    }
+    
+    /**
+     * Index a document's values per facet, replacing any earlier version; null and blank values are skipped
+     */
+    public void put(long id, Map<F, ? extends Collection<String>> values) {
+        String[][] document = new String[facets.length][];
+        for (F facet : facets) {
+            Collection<String> facetValues = values.get(facet);
+            document[facet.ordinal()] = facetValues == null ? NO_VALUES
+                    : facetValues.stream().filter(v -> v != null && !v.isBlank()).distinct().toArray(String[]::new);
+        }
+        
+        String[][] existing = documents.get(id);
+        if (existing != null) {
+            if (Arrays.deepEquals(existing, document)) {
+                return;
+            }
+            remove(id);
+        }
+        for (F facet : facets) {
+            Map<String, RoaringBitmap> byValue = bitmaps.get(facet);
+            for (String value : document[facet.ordinal()]) {
+                byValue.computeIfAbsent(value, v -> new RoaringBitmap()).add(id);
+            }
+        }
+        documents.put(id, document);
+        all.add(id);
+    }
+    
+    public void remove(long id) {
+        String[][] document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (F facet : facets) {
+            Map<String, RoaringBitmap> byValue = bitmaps.get(facet);
+            for (String value : document[facet.ordinal()]) {
+                RoaringBitmap bitmap = byValue.get(value);
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    byValue.remove(value);
+                }
+            }
+        }
+        all.remove(id);
+    }
+    
+    /**
+     * Every value of a facet held by at least one document
+     */
+    public List<String> values(F facet) {
+        return bitmaps.get(facet).keySet().stream().sorted().toList();
+    }
+    
+    /**
+     * Ids of the documents matching the selected values, a new set the caller may keep
+     */
+    public RoaringBitmap matching(Map<F, ? extends Collection<String>> selected) {
+        RoaringBitmap matching = filter(selected, null);
+        return matching != null ? matching : all.copy();
+    }
+    
+    /**
+     * Per facet, the number of documents matching each value under the filters on the other
+     * facets, at most {@code limit} values by count descending then value. Values with no
+     * matching documents are left out unless selected.
+     */
+    public Map<F, Map<String, Long>> counts(Map<F, ? extends Collection<String>> selected, int limit) {
+        Map<F, Map<String, Long>> counts = new EnumMap<>(facetType);
+        for (F facet : facets) {
+            RoaringBitmap others = filter(selected, facet);
+            Collection<String> chosen = selected.get(facet);
+            Map<String, Long> byValue = new HashMap<>();
+            bitmaps.get(facet).forEach((value, bitmap) -> {
+                long count = others == null ? bitmap.cardinality() : others.andCardinality(bitmap);
+                if (count > 0 || (chosen != null && chosen.contains(value))) {
+                    byValue.put(value, count);
+                }
+            });
+            if (chosen != null) {
+                chosen.forEach(value -> byValue.putIfAbsent(value, 0L));
+            }
+            
+            Map<String, Long> top = new LinkedHashMap<>();
+            byValue.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(Math.max(0, limit))
+                    .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+            counts.put(facet, top);
+        }
+        return counts;
+    }
+    
+    /**
+     * Approximate heap held by the bitmaps and per-document values
+     */
+    public long memoryBytes() {
+        long bytes = all.memoryBytes() + (long) documents.size() * (64 + 16L * facets.length);
+        for (Map<String, RoaringBitmap> byValue : bitmaps.values()) {
+            for (Map.Entry<String, RoaringBitmap> entry : byValue.entrySet()) {
+                bytes += 80 + entry.getKey().length() + entry.getValue().memoryBytes();
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * The documents matching the filters on every facet but {@code skipped}, or null when none of them filter
+     */
+    private RoaringBitmap filter(Map<F, ? extends Collection<String>> selected, F skipped) {
+        RoaringBitmap matching = null;
+        for (F facet : facets) {
+            Collection<String> chosen = selected.get(facet);
+            if (facet == skipped || chosen == null || chosen.isEmpty()) {
+                continue;
+            }
+            RoaringBitmap union = new RoaringBitmap();
+            for (String value : chosen) {
+                RoaringBitmap bitmap = bitmaps.get(facet).get(value);
+                if (bitmap != null) {
+                    union.or(bitmap);
+                }
+            }
+            matching = matching == null ? union : matching.and(union);
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,162 @@
+package com.xeno.analytics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog distinct-count sketch.
+ * Each value is hashed to 64 bits; the top {@code precision} bits pick one of
+ * 2^precision registers and the register keeps the longest run of leading zeros
+ * seen in the remaining bits. The estimate has a relative standard error of
+ * about 1.04 / sqrt(registers), and two sketches of the same precision merge by
+ * taking the larger of each register pair, so per-day sketches can be combined
+ * into any date range. Not thread-safe.
+ */
+public class HyperLogLog {
+    
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    
+    private final int precision;
+    private final byte[] registers;
+    
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+    
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The sentinel bit caps the rank when every remaining bit is zero
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+    
+    public void add(long value) {
+        addHash(hash(value));
+    }
+    
+    public void add(CharSequence value) {
+        addHash(hash(value));
+    }
+    
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) zeros++;
+        }
+        
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) return false;
+        }
+        return true;
+    }
+    
+    public int getPrecision() {
+        return precision;
+    }
+    
+    /**
+     * Relative standard error of estimates at a given precision
+     */
+    public static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+    
+    /**
+     * Encode as version and precision, then either every register (dense) or the
+     * non-zero registers as index/value pairs (sparse), whichever is smaller
+     */
+    public byte[] serialize() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) nonZero++;
+        }
+        
+        if (nonZero * 3 < registers.length) {
+            ByteBuffer buffer = ByteBuffer.allocate(3 + Integer.BYTES + nonZero * 3);
+            buffer.put(FORMAT_VERSION).put((byte) precision).put(SPARSE).putInt(nonZero);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    buffer.putChar((char) i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(3 + registers.length);
+        buffer.put(FORMAT_VERSION).put((byte) precision).put(DENSE).put(registers);
+        return buffer.array();
+    }
+    
+    public static HyperLogLog deserialize(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch format version: " + version);
+        }
+        
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        if (buffer.get() == SPARSE) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                sketch.registers[buffer.getChar()] = buffer.get();
+            }
+        } else {
+            buffer.get(sketch.registers);
+        }
+        return sketch;
+    }
+    
+    /**
+     * 64-bit finalizer from SplitMix64, spreading sequential ids across all bits
+     */
+    public static long hash(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * 64-bit FNV-1a over the characters, finished with the long hash
+     */
+    public static long hash(CharSequence value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return hash(h);
+    }
+}
@@ -0,0 +1,146 @@
+package com.xeno.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values with linear probing.
+ * Keys and values live in two parallel primitive arrays, so a million entries
+ * cost about 24 MB instead of the ~80 MB of a boxed HashMap. Not thread-safe.
+ */
+public class LongIntHashMap {
+    
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+    
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+    
+    // Key 0 marks an empty slot, so its value is kept on the side
+    private boolean hasZeroKey;
+    private int zeroValue;
+    
+    public LongIntHashMap() {
+        this(16);
+    }
+    
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+    
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+    
+    public boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return hasZeroKey;
+        }
+        return keys[slot(key)] == key;
+    }
+    
+    public int get(long key, int defaultValue) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = slot(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+    
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+    
+    /**
+     * Add to the value of a key, treating a missing key as 0, and return the new value
+     */
+    public int addTo(long key, int delta) {
+        int value = get(key, 0) + delta;
+        put(key, value);
+        return value;
+    }
+    
+    /**
+     * Call the consumer for every entry, in no particular order
+     */
+    public void forEach(LongIntConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(EMPTY, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    /**
+     * Approximate heap bytes used by the backing arrays
+     */
+    public long memoryBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasZeroKey = false;
+    }
+    
+    @FunctionalInterface
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+    
+    /**
+     * Slot holding the key, or the empty slot where it would be inserted
+     */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
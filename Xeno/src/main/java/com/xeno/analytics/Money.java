@@ -0,0 +1,62 @@
+package com.xeno.analytics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions and arithmetic for monetary amounts held as a long count of minor units.
+ * Amounts are stored in Postgres with two decimal places, so one minor unit is
+ * one hundredth whatever the currency. Analytics add and compare plain longs and
+ * convert to {@link BigDecimal} only when values cross the API or database boundary.
+ */
+public final class Money {
+    
+    /**
+     * Decimal places of a minor unit, matching the storage scale of money columns
+     */
+    public static final int SCALE = 2;
+    
+    private static final long PERCENT_SCALE = 10_000;
+    
+    private Money() {
+    }
+    
+    /**
+     * Minor units of an amount, rounding half up past the second decimal; null counts as zero
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+    
+    /**
+     * Percentage change from previous to current, rounded half up to two decimals.
+     * A change from zero is reported as 100% when current is positive and 0% otherwise.
+     */
+    public static double percentageChange(long previous, long current) {
+        if (previous == 0) {
+            return current > 0 ? 100.0 : 0.0;
+        }
+        // (current - previous) / previous as hundredths of a percent, in integer arithmetic
+        long basisPoints = divideHalfUp(Math.multiplyExact(current - previous, PERCENT_SCALE), previous);
+        return basisPoints / 100.0;
+    }
+    
+    /**
+     * Integer division rounding half away from zero, like {@link RoundingMode#HALF_UP}
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= Math.abs(divisor)) {
+            quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,67 @@
+package com.xeno.analytics;
+
+import java.math.BigDecimal;
+
+/**
+ * Mutable running sum, count and mean of amounts in minor units.
+ * Adding never allocates, so one accumulator can be reused across a scan of any
+ * size; results become {@link BigDecimal} only when read for a response.
+ * Not thread-safe.
+ */
+public class MoneyAccumulator {
+    
+    private long sum;
+    private long count;
+    
+    public void add(long minorUnits) {
+        sum = Math.addExact(sum, minorUnits);
+        count++;
+    }
+    
+    public void add(BigDecimal amount) {
+        add(Money.toMinorUnits(amount));
+    }
+    
+    /**
+     * Add a total that already covers several amounts
+     */
+    public void addTotal(long minorUnits, long amounts) {
+        sum = Math.addExact(sum, minorUnits);
+        count += amounts;
+    }
+    
+    public void reset() {
+        sum = 0;
+        count = 0;
+    }
+    
+    public long count() {
+        return count;
+    }
+    
+    public long sum() {
+        return sum;
+    }
+    
+    /**
+     * Mean in minor units rounded half up, or 0 when nothing was added
+     */
+    public long average() {
+        return count > 0 ? Money.divideHalfUp(sum, count) : 0;
+    }
+    
+    /**
+     * Percentage change of this sum relative to a previous period's accumulator
+     */
+    public double percentageChangeFrom(MoneyAccumulator previous) {
+        return Money.percentageChange(previous.sum, sum);
+    }
+    
+    public BigDecimal sumAsDecimal() {
+        return Money.toDecimal(sum);
+    }
+    
+    public BigDecimal averageAsDecimal() {
+        return Money.toDecimal(average());
+    }
+}
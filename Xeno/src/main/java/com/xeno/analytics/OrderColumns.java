@@ -0,0 +1,132 @@
+package com.xeno.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented copy of one tenant's orders held in parallel primitive arrays.
+ * Range aggregations are a single pass over contiguous arrays with no object
+ * dereferences, which keeps them well under a millisecond for hundreds of
+ * thousands of orders. Rows are updated in place by order id. Not thread-safe.
+ */
+public class OrderColumns {
+    
+    /**
+     * Stored in the processedAt column for orders without a processed date; never inside a range
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+    
+    private final LongIntHashMap rowByOrderId;
+    private long[] orderIds;
+    private long[] processedAt;
+    private long[] totalMinorUnits;
+    private byte[] statuses;
+    private long[] customerIds;
+    private int[] itemCounts;
+    private int size;
+    
+    /**
+     * Totals for the orders processed inside a time range
+     */
+    public record RangeTotals(long orders, long revenueMinorUnits, long items, long[] statusCounts) {
+    }
+    
+    public OrderColumns(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        rowByOrderId = new LongIntHashMap(capacity);
+        orderIds = new long[capacity];
+        processedAt = new long[capacity];
+        totalMinorUnits = new long[capacity];
+        statuses = new byte[capacity];
+        customerIds = new long[capacity];
+        itemCounts = new int[capacity];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean contains(long orderId) {
+        return rowByOrderId.containsKey(orderId);
+    }
+    
+    /**
+     * Insert an order or overwrite its row
+     *
+     * @param processedAtEpochSecond processed time in epoch seconds, or {@link #NO_TIME}
+     * @param status financial status ordinal
+     * @param customerId internal customer id, or 0 when unknown
+     */
+    public void upsert(long orderId, long processedAtEpochSecond, long totalMinorUnits,
+                       int status, long customerId, int itemCount) {
+        int row = rowByOrderId.get(orderId, -1);
+        if (row < 0) {
+            if (size == orderIds.length) {
+                grow();
+            }
+            row = size++;
+            rowByOrderId.put(orderId, row);
+            orderIds[row] = orderId;
+        }
+        processedAt[row] = processedAtEpochSecond;
+        this.totalMinorUnits[row] = totalMinorUnits;
+        statuses[row] = (byte) status;
+        customerIds[row] = customerId;
+        itemCounts[row] = itemCount;
+    }
+    
+    /**
+     * Number of orders per financial status ordinal
+     */
+    public long[] countByStatus(int statusCount) {
+        long[] counts = new long[statusCount];
+        byte[] status = statuses;
+        for (int i = 0; i < size; i++) {
+            counts[status[i]]++;
+        }
+        return counts;
+    }
+    
+    /**
+     * Aggregate the orders processed in [fromEpochSecond, toEpochSecond)
+     */
+    public RangeTotals summarize(long fromEpochSecond, long toEpochSecond, int statusCount) {
+        long[] time = processedAt;
+        long[] amounts = totalMinorUnits;
+        int[] items = itemCounts;
+        byte[] status = statuses;
+        long[] statusCounts = new long[statusCount];
+        long orders = 0;
+        long revenue = 0;
+        long itemTotal = 0;
+        
+        // Branch-free accumulation: rows outside the range add zero, so the loop
+        // does not stall on mispredicted branches when dates are unordered
+        for (int i = 0; i < size; i++) {
+            long t = time[i];
+            int in = (t >= fromEpochSecond & t < toEpochSecond) ? 1 : 0;
+            orders += in;
+            revenue += amounts[i] * in;
+            itemTotal += (long) items[i] * in;
+            statusCounts[status[i]] += in;
+        }
+        return new RangeTotals(orders, revenue, itemTotal, statusCounts);
+    }
+    
+    /**
+     * Approximate heap bytes used by the columns and the id index
+     */
+    public long memoryBytes() {
+        long perRow = Long.BYTES * 4L + Integer.BYTES + Byte.BYTES;
+        return orderIds.length * perRow + rowByOrderId.memoryBytes();
+    }
+    
+    private void grow() {
+        int capacity = orderIds.length + (orderIds.length >> 1);
+        orderIds = Arrays.copyOf(orderIds, capacity);
+        processedAt = Arrays.copyOf(processedAt, capacity);
+        totalMinorUnits = Arrays.copyOf(totalMinorUnits, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        itemCounts = Arrays.copyOf(itemCounts, capacity);
+    }
+}
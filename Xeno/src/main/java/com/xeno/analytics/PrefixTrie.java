@@ -0,0 +1,455 @@
+package com.xeno.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compressed prefix (radix) trie for top-K completions by score.
+ * Each value is added under a few keys, normalized like {@link TrigramIndex}, and carries
+ * a score such as units sold. Edges hold whole label strings, so chains of single-child
+ * nodes collapse into one. Every node whose subtree holds more than {@value #CACHE_SIZE}
+ * keys caches its best values, so a completion walks the prefix and reads one short
+ * list; smaller subtrees are collected on the fly.
+ * <p>
+ * Adding a value or raising its score offers it to the caches on its key paths. Lowering
+ * a score or removing a value rebuilds the caches it was in from their children's, bottom
+ * up. Not thread-safe.
+ */
+public class PrefixTrie<V> {
+    
+    public static final int CACHE_SIZE = 20;
+    
+    private static final Comparator<Handle<?>> RANKING = Comparator.<Handle<?>>comparingLong(h -> h.score).reversed()
+            .thenComparingLong(h -> h.order);
+    
+    private final Node<V> root = new Node<>("");
+    private int size;
+    private long added;
+    
+    /**
+     * A value in the trie, used to change its score or remove it
+     */
+    public static final class Handle<V> {
+        private final V value;
+        private final String[] keys;
+        private final long order;
+        private long score;
+        
+        private Handle(V value, String[] keys, long score, long order) {
+            this.value = value;
+            this.keys = keys;
+            this.score = score;
+            this.order = order;
+        }
+        
+        public V value() {
+            return value;
+        }
+        
+        public long score() {
+            return score;
+        }
+    }
+    
+    /**
+     * A value completing a prefix, best first
+     */
+    public record Completion<V>(V value, long score) {
+    }
+    
+    private static final class Node<V> {
+        private String label;
+        private Node<V>[] children;
+        private int childCount;
+        private Handle<V>[] handles;
+        private int handleCount;
+        // Keys ending in this subtree, counting a value once per key
+        private int count;
+        private Handle<V>[] top;
+        private int topCount;
+        
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+    
+    /**
+     * Keys starting at every word of a text, at most {@code maxWords} of them, so completions match any word
+     */
+    public static List<String> wordStarts(String text, int maxWords) {
+        String normalized = TrigramIndex.normalize(text);
+        List<String> keys = new ArrayList<>();
+        int start = 0;
+        while (start < normalized.length() && keys.size() < maxWords) {
+            keys.add(normalized.substring(start));
+            int space = normalized.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+        return keys;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Add a value under the given keys; blank and duplicate keys are skipped
+     */
+    public Handle<V> add(V value, long score, List<String> keys) {
+        String[] normalized = keys.stream().map(TrigramIndex::normalize).filter(key -> !key.isEmpty())
+                .distinct().toArray(String[]::new);
+        Handle<V> handle = new Handle<>(value, normalized, score, added++);
+        for (String key : normalized) {
+            insert(key, handle);
+        }
+        size++;
+        return handle;
+    }
+    
+    public void remove(Handle<V> handle) {
+        for (String key : handle.keys) {
+            delete(key, handle);
+        }
+        size--;
+    }
+    
+    public void setScore(Handle<V> handle, long score) {
+        long previous = handle.score;
+        if (previous == score) {
+            return;
+        }
+        handle.score = score;
+        // Nodes shared by several keys are visited once, after every child below them on any
+        // key path, so a rebuild never reads a child cache that still ranks the old score
+        Map<Node<V>, Integer> depths = new IdentityHashMap<>();
+        for (String key : handle.keys) {
+            List<Node<V>> path = path(key);
+            for (int i = 0; i < path.size(); i++) {
+                depths.put(path.get(i), i);
+            }
+        }
+        List<Node<V>> nodes = new ArrayList<>(depths.keySet());
+        nodes.sort(Comparator.<Node<V>>comparingInt(depths::get).reversed());
+        for (Node<V> node : nodes) {
+            if (node.top == null) {
+                continue;
+            }
+            if (score < previous && indexOf(node.top, node.topCount, handle) >= 0) {
+                rebuild(node);
+            } else {
+                offer(node, handle);
+            }
+        }
+    }
+    
+    /**
+     * The best {@code limit} values with a key starting with {@code prefix}, at most {@value #CACHE_SIZE}
+     */
+    public List<Completion<V>> complete(String prefix, int limit) {
+        String text = TrigramIndex.normalize(prefix);
+        Node<V> node = root;
+        int matched = 0;
+        while (matched < text.length()) {
+            Node<V> child = child(node, text.charAt(matched));
+            if (child == null) {
+                return List.of();
+            }
+            int common = commonPrefix(child.label, text, matched);
+            if (matched + common < text.length() && common < child.label.length()) {
+                return List.of();
+            }
+            matched += common;
+            node = child;
+        }
+        
+        List<Handle<V>> best = node.top != null ? Arrays.asList(node.top).subList(0, node.topCount) : collect(node);
+        return best.stream().limit(Math.max(0, limit)).map(h -> new Completion<>(h.value, h.score)).toList();
+    }
+    
+    /**
+     * Approximate heap held by the nodes, caches and handles
+     */
+    public long memoryBytes() {
+        long bytes = (long) size * 48;
+        List<Node<V>> stack = new ArrayList<>(List.of(root));
+        while (!stack.isEmpty()) {
+            Node<V> node = stack.remove(stack.size() - 1);
+            bytes += 56 + 40 + node.label.length();
+            bytes += node.children != null ? 16 + node.children.length * 4L : 0;
+            bytes += node.handles != null ? 16 + node.handles.length * 4L : 0;
+            bytes += node.top != null ? 16 + node.top.length * 4L : 0;
+            for (int i = 0; i < node.childCount; i++) {
+                stack.add(node.children[i]);
+            }
+        }
+        return bytes;
+    }
+    
+    private void insert(String key, Handle<V> handle) {
+        List<Node<V>> path = new ArrayList<>();
+        Node<V> node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            Node<V> child = child(node, key.charAt(matched));
+            if (child == null) {
+                child = new Node<>(key.substring(matched));
+                addChild(node, child);
+                matched = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, matched);
+                if (common < child.label.length()) {
+                    child = split(node, child, common);
+                }
+                matched += common;
+            }
+            node = child;
+            path.add(node);
+        }
+        
+        if (node.handles == null) {
+            node.handles = newHandles(1);
+        } else if (node.handleCount == node.handles.length) {
+            node.handles = Arrays.copyOf(node.handles, node.handleCount * 2);
+        }
+        node.handles[node.handleCount++] = handle;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node<V> step = path.get(i);
+            step.count++;
+            if (step.count > CACHE_SIZE) {
+                if (step.top == null) {
+                    rebuild(step);
+                } else {
+                    offer(step, handle);
+                }
+            }
+        }
+    }
+    
+    private void delete(String key, Handle<V> handle) {
+        List<Node<V>> path = path(key);
+        Node<V> node = path.get(path.size() - 1);
+        int i = indexOf(node.handles, node.handleCount, handle);
+        if (i < 0) {
+            return;
+        }
+        System.arraycopy(node.handles, i + 1, node.handles, i, node.handleCount - i - 1);
+        node.handles[--node.handleCount] = null;
+        
+        for (int j = path.size() - 1; j >= 0; j--) {
+            Node<V> step = path.get(j);
+            step.count--;
+            if (step.count <= CACHE_SIZE) {
+                step.top = null;
+                step.topCount = 0;
+            } else if (indexOf(step.top, step.topCount, handle) >= 0) {
+                rebuild(step);
+            }
+        }
+        
+        // Drop an emptied leaf, then merge a node left with one child and no values into that child
+        for (int j = path.size() - 1; j > 0; j--) {
+            Node<V> step = path.get(j);
+            Node<V> parent = path.get(j - 1);
+            if (step.handleCount == 0 && step.childCount == 0) {
+                removeChild(parent, step);
+            } else if (step.handleCount == 0 && step.childCount == 1) {
+                Node<V> only = step.children[0];
+                only.label = step.label + only.label;
+                replaceChild(parent, step, only);
+            }
+        }
+    }
+    
+    /**
+     * Nodes from the root to the one the key ends at; the key must be in the trie
+     */
+    private List<Node<V>> path(String key) {
+        List<Node<V>> path = new ArrayList<>();
+        Node<V> node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            node = child(node, key.charAt(matched));
+            if (node == null) {
+                throw new IllegalStateException("Key not in trie: " + key);
+            }
+            matched += node.label.length();
+            path.add(node);
+        }
+        return path;
+    }
+    
+    /**
+     * Put a handle into a node's cache, or move it to its new place if it is already there
+     */
+    private void offer(Node<V> node, Handle<V> handle) {
+        int i = indexOf(node.top, node.topCount, handle);
+        if (i < 0) {
+            if (node.topCount == CACHE_SIZE) {
+                if (RANKING.compare(handle, node.top[CACHE_SIZE - 1]) >= 0) {
+                    return;
+                }
+                i = CACHE_SIZE - 1;
+            } else {
+                i = node.topCount++;
+            }
+            node.top[i] = handle;
+        }
+        // Bubble towards whichever end the new score belongs
+        while (i > 0 && RANKING.compare(node.top[i], node.top[i - 1]) < 0) {
+            swap(node.top, i, i - 1);
+            i--;
+        }
+        while (i < node.topCount - 1 && RANKING.compare(node.top[i], node.top[i + 1]) > 0) {
+            swap(node.top, i, i + 1);
+            i++;
+        }
+    }
+    
+    /**
+     * Recompute a node's cache from its own values and its children's caches or contents
+     */
+    private void rebuild(Node<V> node) {
+        Set<Handle<V>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Handle<V>> candidates = new ArrayList<>();
+        for (int i = 0; i < node.handleCount; i++) {
+            if (seen.add(node.handles[i])) candidates.add(node.handles[i]);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            Node<V> child = node.children[i];
+            List<Handle<V>> best = child.top != null ? Arrays.asList(child.top).subList(0, child.topCount) : collect(child);
+            for (Handle<V> handle : best) {
+                if (seen.add(handle)) candidates.add(handle);
+            }
+        }
+        candidates.sort(RANKING);
+        node.topCount = Math.min(CACHE_SIZE, candidates.size());
+        node.top = candidates.subList(0, node.topCount).toArray(newHandles(CACHE_SIZE));
+    }
+    
+    /**
+     * Every distinct value in a small subtree, best first
+     */
+    private List<Handle<V>> collect(Node<V> node) {
+        Set<Handle<V>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Handle<V>> handles = new ArrayList<>();
+        List<Node<V>> stack = new ArrayList<>(List.of(node));
+        while (!stack.isEmpty()) {
+            Node<V> next = stack.remove(stack.size() - 1);
+            for (int i = 0; i < next.handleCount; i++) {
+                if (seen.add(next.handles[i])) handles.add(next.handles[i]);
+            }
+            for (int i = 0; i < next.childCount; i++) {
+                stack.add(next.children[i]);
+            }
+        }
+        handles.sort(RANKING);
+        return handles;
+    }
+    
+    /**
+     * Put a new node holding the first {@code common} characters of a child's label between it and its parent
+     */
+    private Node<V> split(Node<V> parent, Node<V> child, int common) {
+        Node<V> middle = new Node<>(child.label.substring(0, common));
+        replaceChild(parent, child, middle);
+        child.label = child.label.substring(common);
+        addChild(middle, child);
+        middle.count = child.count;
+        if (middle.count > CACHE_SIZE) {
+            rebuild(middle);
+        }
+        return middle;
+    }
+    
+    private Node<V> child(Node<V> node, char first) {
+        int i = childIndex(node, first);
+        return i >= 0 ? node.children[i] : null;
+    }
+    
+    /**
+     * Children are kept sorted by the first character of their label
+     */
+    private int childIndex(Node<V> node, char first) {
+        int low = 0;
+        int high = node.childCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label.charAt(0);
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    private void addChild(Node<V> node, Node<V> child) {
+        int i = -childIndex(node, child.label.charAt(0)) - 1;
+        if (node.children == null) {
+            node.children = newNodes(2);
+        } else if (node.childCount == node.children.length) {
+            node.children = Arrays.copyOf(node.children, node.childCount * 2);
+        }
+        System.arraycopy(node.children, i, node.children, i + 1, node.childCount - i);
+        node.children[i] = child;
+        node.childCount++;
+    }
+    
+    private void replaceChild(Node<V> node, Node<V> child, Node<V> replacement) {
+        node.children[childIndex(node, child.label.charAt(0))] = replacement;
+    }
+    
+    private void removeChild(Node<V> node, Node<V> child) {
+        int i = childIndex(node, child.label.charAt(0));
+        System.arraycopy(node.children, i + 1, node.children, i, node.childCount - i - 1);
+        node.children[--node.childCount] = null;
+    }
+    
+    private static int commonPrefix(String label, String text, int offset) {
+        int max = Math.min(label.length(), text.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == text.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+    
+    private static <T> int indexOf(T[] array, int length, T value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static void swap(Object[] array, int i, int j) {
+        Object value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <V> Handle<V>[] newHandles(int length) {
+        return (Handle<V>[]) new Handle<?>[length];
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V>[] newNodes(int length) {
+        return (Node<V>[]) new Node<?>[length];
+    }
+}
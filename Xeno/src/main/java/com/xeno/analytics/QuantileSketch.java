@@ -0,0 +1,210 @@
+package com.xeno.analytics;
+
+/**
+ * Mergeable quantile sketch over non-negative values with logarithmic buckets.
+ * Bucket {@code i} holds values in (gamma^(i-1), gamma^i], where
+ * gamma = (1 + accuracy) / (1 - accuracy), so every quantile it returns is within
+ * {@code accuracy} of the true value relative to that value. Values of zero or less
+ * share a separate bucket. Bucket counts are plain sums, so sketches merge exactly,
+ * counts can be taken back out when a value changes, and per-day bucket counts can
+ * be stored as rows and summed over any date range. Not thread-safe.
+ */
+public class QuantileSketch {
+    
+    /**
+     * Bucket index used for values of zero or less
+     */
+    public static final int ZERO_INDEX = Integer.MIN_VALUE;
+    
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+    
+    private long zeroCount;
+    private long[] counts = new long[0];
+    private int offset;
+    
+    public QuantileSketch(double accuracy) {
+        if (accuracy <= 0 || accuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + accuracy);
+        }
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+    
+    /**
+     * Index of the bucket a value falls in
+     */
+    public int indexOf(double value) {
+        if (value <= 0) {
+            return ZERO_INDEX;
+        }
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+    
+    public void add(double value) {
+        addToBucket(indexOf(value), 1);
+    }
+    
+    /**
+     * Add to a bucket's count; a negative count takes values back out
+     */
+    public void addToBucket(int index, long count) {
+        if (index == ZERO_INDEX) {
+            zeroCount += count;
+            return;
+        }
+        if (counts.length == 0) {
+            counts = new long[8];
+            offset = index - 4;
+        } else if (index < offset || index >= offset + counts.length) {
+            grow(index);
+        }
+        counts[index - offset] += count;
+    }
+    
+    public void merge(QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + other.accuracy + " into " + accuracy);
+        }
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                addToBucket(other.offset + i, other.counts[i]);
+            }
+        }
+    }
+    
+    public long count() {
+        long total = zeroCount;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+    
+    public boolean isEmpty() {
+        return count() <= 0;
+    }
+    
+    /**
+     * Value at quantile {@code q} in [0, 1], or NaN when the sketch is empty.
+     * Like SQL's percentile_cont, a rank falling between two values interpolates
+     * linearly between them, which keeps the result within the relative accuracy.
+     */
+    public double quantile(double q) {
+        long total = count();
+        if (total <= 0) {
+            return Double.NaN;
+        }
+        
+        double rank = Math.max(0, Math.min(1, q)) * (total - 1);
+        long below = (long) Math.floor(rank);
+        double lower = valueAtRank(below);
+        if (rank == below) {
+            return lower;
+        }
+        return lower + (rank - below) * (valueAtRank(below + 1) - lower);
+    }
+    
+    /**
+     * Value of the bucket holding the zero-based {@code rank}-th smallest value
+     */
+    private double valueAtRank(long rank) {
+        long seen = zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return valueOf(offset + i);
+            }
+        }
+        return valueOf(maxIndex());
+    }
+    
+    /**
+     * Value reported for a bucket, the point with equal relative error to both bounds
+     */
+    public double valueOf(int index) {
+        if (index == ZERO_INDEX) {
+            return 0;
+        }
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+    
+    /**
+     * Exclusive lower bound of a bucket's values
+     */
+    public double lowerBound(int index) {
+        return index == ZERO_INDEX ? 0 : Math.pow(gamma, index - 1);
+    }
+    
+    /**
+     * Inclusive upper bound of a bucket's values
+     */
+    public double upperBound(int index) {
+        return index == ZERO_INDEX ? 0 : Math.pow(gamma, index);
+    }
+    
+    public double getAccuracy() {
+        return accuracy;
+    }
+    
+    public long getZeroCount() {
+        return zeroCount;
+    }
+    
+    /**
+     * Lowest non-zero bucket holding values, or {@link #ZERO_INDEX} when there is none
+     */
+    public int minIndex() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) return offset + i;
+        }
+        return ZERO_INDEX;
+    }
+    
+    /**
+     * Highest non-zero bucket holding values, or {@link #ZERO_INDEX} when there is none
+     */
+    public int maxIndex() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) return offset + i;
+        }
+        return ZERO_INDEX;
+    }
+    
+    /**
+     * Visit every bucket with a non-zero count, the zero bucket first and then in ascending order
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        if (zeroCount != 0) {
+            consumer.accept(ZERO_INDEX, zeroCount);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(offset + i, counts[i]);
+            }
+        }
+    }
+    
+    private void grow(int index) {
+        int low = Math.min(offset, index);
+        int high = Math.max(offset + counts.length, index + 1);
+        // Leave headroom on both sides so neighbouring values don't copy again
+        int capacity = Math.max((high - low) * 3 / 2, counts.length * 2);
+        int newOffset = low - (capacity - (high - low)) / 2;
+        long[] grown = new long[capacity];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+    
+    @FunctionalInterface
+    public interface BucketConsumer {
+        void accept(int index, long count);
+    }
+}
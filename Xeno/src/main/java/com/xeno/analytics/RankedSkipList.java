@@ -0,0 +1,185 @@
+package com.xeno.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Indexable skip list of ids ordered by a long score, highest first, ties broken by ascending id.
+ * Every forward link records how many entries it skips, so inserts, removals and
+ * rank lookups are all O(log n) expected, and the top k entries are a walk of the bottom level.
+ * Not thread-safe; callers synchronize.
+ */
+public class RankedSkipList {
+    
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+    
+    private static final class Node {
+        final long id;
+        final long score;
+        final Node[] next;
+        final long[] span;
+        
+        Node(long id, long score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new long[level];
+        }
+    }
+    
+    private final Node head = new Node(Long.MIN_VALUE, Long.MAX_VALUE, MAX_LEVEL);
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private int level = 1;
+    
+    public int size() {
+        return nodes.size();
+    }
+    
+    public boolean contains(long id) {
+        return nodes.containsKey(id);
+    }
+    
+    /**
+     * Score of an id, or null when it is not in the list
+     */
+    public Long scoreOf(long id) {
+        Node node = nodes.get(id);
+        return node != null ? node.score : null;
+    }
+    
+    /**
+     * Insert an id, or move it if its score changed
+     */
+    public void put(long id, long score) {
+        Node existing = nodes.remove(id);
+        if (existing != null) {
+            if (existing.score == score) {
+                nodes.put(id, existing);
+                return;
+            }
+            unlink(existing);
+        }
+        nodes.put(id, insert(id, score));
+    }
+    
+    public boolean remove(long id) {
+        Node node = nodes.remove(id);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+    
+    /**
+     * 1-based position of an id, or 0 when it is not in the list
+     */
+    public long rankOf(long id) {
+        Node target = nodes.get(id);
+        if (target == null) {
+            return 0;
+        }
+        
+        long rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], target.score, target.id) <= 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == target) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Ids of the first {@code k} entries, highest score first
+     */
+    public long[] top(int k) {
+        long[] ids = new long[Math.min(k, size())];
+        Node x = head.next[0];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = x.id;
+            x = x.next[0];
+        }
+        return ids;
+    }
+    
+    /**
+     * Negative when the node sorts before (score, id), zero when it is that entry
+     */
+    private static int compare(Node node, long score, long id) {
+        if (node.score != score) {
+            return node.score > score ? -1 : 1;
+        }
+        return Long.compare(node.id, id);
+    }
+    
+    private Node insert(long id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        long[] rank = new long[MAX_LEVEL];
+        
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && compare(x.next[i], score, id) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size();
+            }
+            level = nodeLevel;
+        }
+        
+        Node node = new Node(id, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        return node;
+    }
+    
+    private void unlink(Node node) {
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], node.score, node.id) < 0) {
+                x = x.next[i];
+            }
+            if (x.next[i] == node) {
+                x.span[i] += node.span[i] - 1;
+                x.next[i] = node.next[i];
+            } else {
+                x.span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+    }
+    
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+}
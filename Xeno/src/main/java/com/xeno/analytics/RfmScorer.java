@@ -0,0 +1,92 @@
+package com.xeno.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Quantile scoring over primitive columns, run on a fork-join pool.
+ * Every dimension is sorted once, then each value is scored from 1 to {@link #SCORES}
+ * by the share of values strictly below it, so equal values always get equal scores
+ * and higher values never score lower. Ranges of rows are split recursively across
+ * the pool's workers.
+ */
+public final class RfmScorer {
+    
+    public static final int SCORES = 5;
+    
+    private static final int SPLIT_THRESHOLD = 8192;
+    
+    private RfmScorer() {
+    }
+    
+    /**
+     * Score the first {@code n} values of each dimension; higher values are better.
+     * Returns one score array per dimension.
+     */
+    public static byte[][] score(ForkJoinPool pool, int n, long[]... dimensions) {
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            long[][] sorted = new long[dimensions.length][];
+            for (int d = 0; d < dimensions.length; d++) {
+                sorted[d] = Arrays.copyOf(dimensions[d], n);
+                // Forks into the calling worker's pool
+                Arrays.parallelSort(sorted[d]);
+            }
+            
+            byte[][] scores = new byte[dimensions.length][n];
+            new ScoreTask(dimensions, sorted, scores, 0, n).invoke();
+            return scores;
+        }));
+    }
+    
+    private static byte scoreOf(long[] sorted, long value) {
+        int below = lowerBound(sorted, value);
+        return (byte) (1 + (int) ((long) SCORES * below / sorted.length));
+    }
+    
+    private static int lowerBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static class ScoreTask extends RecursiveAction {
+        private final long[][] values;
+        private final long[][] sorted;
+        private final byte[][] scores;
+        private final int from;
+        private final int to;
+        
+        ScoreTask(long[][] values, long[][] sorted, byte[][] scores, int from, int to) {
+            this.values = values;
+            this.sorted = sorted;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScoreTask(values, sorted, scores, from, mid),
+                          new ScoreTask(values, sorted, scores, mid, to));
+                return;
+            }
+            for (int d = 0; d < values.length; d++) {
+                for (int i = from; i < to; i++) {
+                    scores[d][i] = scoreOf(sorted[d], values[d][i]);
+                }
+            }
+        }
+    }
+}
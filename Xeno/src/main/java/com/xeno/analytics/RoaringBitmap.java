@@ -0,0 +1,589 @@
+package com.xeno.analytics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed set of non-negative ids in the style of Roaring bitmaps.
+ * Each id is split into a high key and a 16-bit low value. Every key owns a container:
+ * a sorted char array while it holds at most 4096 values, and a 65536-bit bitmap once
+ * it holds more. Intersections and differences walk the keys of both sets and combine
+ * matching containers directly, so their cost follows the number of populated chunks
+ * rather than the id range. Not thread-safe.
+ */
+public class RoaringBitmap {
+    
+    // High keys stay non-negative ints, so containers sort and decode in id order
+    public static final long MAX_ID = (1L << 47) - 1;
+    
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+    
+    private int[] keys = new int[4];
+    private Container[] containers = new Container[4];
+    private int size;
+    
+    /**
+     * Add an id, returning true if it was not already present
+     */
+    public boolean add(long id) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Id out of range: " + id);
+        }
+        int key = (int) (id >>> 16);
+        char low = (char) id;
+        
+        int i = indexOf(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertAt(i, key, new ArrayContainer(new char[4], 0));
+        }
+        
+        Container container = containers[i];
+        if (container instanceof ArrayContainer array && array.cardinality == ARRAY_MAX_SIZE && !array.contains(low)) {
+            container = containers[i] = array.toBitmap();
+        }
+        return container.add(low);
+    }
+    
+    /**
+     * Remove an id, returning true if it was present
+     */
+    public boolean remove(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int i = indexOf((int) (id >>> 16));
+        if (i < 0 || !containers[i].contains((char) id)) {
+            return false;
+        }
+        
+        if (containers[i] instanceof ArrayContainer array) {
+            array.remove((char) id);
+        } else {
+            BitmapContainer bitmap = (BitmapContainer) containers[i];
+            bitmap.remove((char) id);
+            if (bitmap.cardinality <= ARRAY_MAX_SIZE) {
+                containers[i] = bitmap.toArray();
+            }
+        }
+        if (containers[i].cardinality == 0) {
+            removeAt(i);
+        }
+        return true;
+    }
+    
+    public boolean contains(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int i = indexOf((int) (id >>> 16));
+        return i >= 0 && containers[i].contains((char) id);
+    }
+    
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality;
+        }
+        return total;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Call the consumer for every id, in ascending order
+     */
+    public void forEach(LongConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            long high = (long) keys[i] << 16;
+            if (containers[i] instanceof ArrayContainer array) {
+                for (int j = 0; j < array.cardinality; j++) {
+                    consumer.accept(high | array.values[j]);
+                }
+            } else {
+                long[] words = ((BitmapContainer) containers[i]).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(high | (w * 64L + Long.numberOfTrailingZeros(word)));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Up to {@code limit} ids in descending order, after the {@code skip} largest.
+     * Containers wholly inside the skipped range are passed over by their cardinality,
+     * so a page costs about the same wherever it falls.
+     */
+    public long[] descending(long skip, int limit) {
+        long[] ids = new long[(int) Math.max(0, Math.min(limit, cardinality() - skip))];
+        int n = 0;
+        long toSkip = skip;
+        for (int i = size - 1; i >= 0 && n < ids.length; i--) {
+            Container container = containers[i];
+            if (toSkip >= container.cardinality) {
+                toSkip -= container.cardinality;
+                continue;
+            }
+            long high = (long) keys[i] << 16;
+            if (container instanceof ArrayContainer array) {
+                for (int j = array.cardinality - 1 - (int) toSkip; j >= 0 && n < ids.length; j--) {
+                    ids[n++] = high | array.values[j];
+                }
+            } else {
+                long[] words = ((BitmapContainer) container).words;
+                for (int w = BITMAP_WORDS - 1; w >= 0 && n < ids.length; w--) {
+                    long word = words[w];
+                    int bits = Long.bitCount(word);
+                    if (toSkip >= bits) {
+                        toSkip -= bits;
+                        continue;
+                    }
+                    while (word != 0 && n < ids.length) {
+                        int bit = 63 - Long.numberOfLeadingZeros(word);
+                        word &= ~(1L << bit);
+                        if (toSkip > 0) {
+                            toSkip--;
+                        } else {
+                            ids[n++] = high | (w * 64L + bit);
+                        }
+                    }
+                }
+            }
+            toSkip = 0;
+        }
+        return ids;
+    }
+    
+    /**
+     * Number of ids present in both sets, without materialising the intersection
+     */
+    public long andCardinality(RoaringBitmap other) {
+        long total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int cmp = Integer.compare(keys[i], other.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                total += intersectionSize(containers[i++], other.containers[j++]);
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * New set of the ids present in both sets
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int cmp = Integer.compare(keys[i], other.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                Container common = intersection(containers[i], other.containers[j]);
+                if (common.cardinality > 0) {
+                    result.insertAt(result.size, keys[i], common);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Add every id of another set to this one
+     */
+    public void or(RoaringBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int i = indexOf(other.keys[j]);
+            if (i < 0) {
+                insertAt(-i - 1, other.keys[j], other.containers[j].copy());
+            } else {
+                containers[i] = union(containers[i], other.containers[j]);
+            }
+        }
+    }
+    
+    /**
+     * New set of the ids in this set that are not in another
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container remaining = j < other.size && other.keys[j] == keys[i]
+                    ? difference(containers[i], other.containers[j])
+                    : containers[i].copy();
+            if (remaining.cardinality > 0) {
+                result.insertAt(result.size, keys[i], remaining);
+            }
+        }
+        return result;
+    }
+    
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(size, 4));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+    
+    /**
+     * Approximate heap held by the containers
+     */
+    public long memoryBytes() {
+        long bytes = (long) keys.length * Integer.BYTES + (long) containers.length * 8;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof BitmapContainer
+                    ? (long) BITMAP_WORDS * Long.BYTES
+                    : (long) ((ArrayContainer) containers[i]).values.length * Character.BYTES;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Encode as a version, the container count, then each container's key, type,
+     * cardinality and values (array) or words (bitmap)
+     */
+    public byte[] serialize() {
+        int length = 2 * Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            length += Integer.BYTES + 1 + Integer.BYTES;
+            length += containers[i] instanceof BitmapContainer
+                    ? BITMAP_WORDS * Long.BYTES
+                    : containers[i].cardinality * Character.BYTES;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(FORMAT_VERSION).putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(keys[i]);
+            if (containers[i] instanceof BitmapContainer bitmap) {
+                buffer.put(BITMAP_CONTAINER).putInt(bitmap.cardinality);
+                buffer.asLongBuffer().put(bitmap.words);
+                buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+            } else {
+                ArrayContainer array = (ArrayContainer) containers[i];
+                buffer.put(ARRAY_CONTAINER).putInt(array.cardinality);
+                buffer.asCharBuffer().put(array.values, 0, array.cardinality);
+                buffer.position(buffer.position() + array.cardinality * Character.BYTES);
+            }
+        }
+        return buffer.array();
+    }
+    
+    public static RoaringBitmap deserialize(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported bitmap format version: " + version);
+        }
+        
+        int count = buffer.getInt();
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.keys = new int[Math.max(count, 4)];
+        bitmap.containers = new Container[Math.max(count, 4)];
+        for (int i = 0; i < count; i++) {
+            int key = buffer.getInt();
+            byte type = buffer.get();
+            int cardinality = buffer.getInt();
+            Container container;
+            if (type == BITMAP_CONTAINER) {
+                long[] words = new long[BITMAP_WORDS];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+                container = new BitmapContainer(words, cardinality);
+            } else {
+                char[] values = new char[Math.max(cardinality, 4)];
+                buffer.asCharBuffer().get(values, 0, cardinality);
+                buffer.position(buffer.position() + cardinality * Character.BYTES);
+                container = new ArrayContainer(values, cardinality);
+            }
+            bitmap.keys[i] = key;
+            bitmap.containers[i] = container;
+        }
+        bitmap.size = count;
+        return bitmap;
+    }
+    
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+    
+    private void insertAt(int i, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+    
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+    
+    private static long intersectionSize(Container a, Container b) {
+        if (a instanceof BitmapContainer x && b instanceof BitmapContainer y) {
+            long count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(x.words[w] & y.words[w]);
+            }
+            return count;
+        }
+        if (a instanceof ArrayContainer x && b instanceof ArrayContainer y) {
+            long count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < x.cardinality && j < y.cardinality) {
+                if (x.values[i] < y.values[j]) {
+                    i++;
+                } else if (x.values[i] > y.values[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        
+        ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+        Container bitmap = a instanceof ArrayContainer ? b : a;
+        long count = 0;
+        for (int i = 0; i < array.cardinality; i++) {
+            if (bitmap.contains(array.values[i])) count++;
+        }
+        return count;
+    }
+    
+    private static Container intersection(Container a, Container b) {
+        if (a instanceof BitmapContainer x && b instanceof BitmapContainer y) {
+            BitmapContainer result = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] = x.words[w] & y.words[w];
+                cardinality += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = cardinality;
+            return cardinality <= ARRAY_MAX_SIZE ? result.toArray() : result;
+        }
+        
+        // At least one side is an array, so the intersection fits in one
+        ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+        Container other = a instanceof ArrayContainer ? b : a;
+        char[] kept = new char[Math.max(array.cardinality, 4)];
+        int n = 0;
+        for (int i = 0; i < array.cardinality; i++) {
+            if (other.contains(array.values[i])) kept[n++] = array.values[i];
+        }
+        return new ArrayContainer(kept, n);
+    }
+    
+    private static Container union(Container a, Container b) {
+        if (a instanceof ArrayContainer x && b instanceof ArrayContainer y
+                && x.cardinality + y.cardinality <= ARRAY_MAX_SIZE) {
+            char[] merged = new char[Math.max(x.cardinality + y.cardinality, 4)];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < x.cardinality || j < y.cardinality) {
+                if (j == y.cardinality || (i < x.cardinality && x.values[i] < y.values[j])) {
+                    merged[n++] = x.values[i++];
+                } else if (i == x.cardinality || y.values[j] < x.values[i]) {
+                    merged[n++] = y.values[j++];
+                } else {
+                    merged[n++] = x.values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(merged, n);
+        }
+        
+        BitmapContainer result = a instanceof BitmapContainer bitmap ? bitmap : ((ArrayContainer) a).toBitmap();
+        if (b instanceof BitmapContainer other) {
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] |= other.words[w];
+                cardinality += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = cardinality;
+        } else {
+            ArrayContainer other = (ArrayContainer) b;
+            for (int i = 0; i < other.cardinality; i++) {
+                result.add(other.values[i]);
+            }
+        }
+        return result;
+    }
+    
+    private static Container difference(Container a, Container b) {
+        if (a instanceof ArrayContainer x) {
+            char[] kept = new char[Math.max(x.cardinality, 4)];
+            int n = 0;
+            for (int i = 0; i < x.cardinality; i++) {
+                if (!b.contains(x.values[i])) kept[n++] = x.values[i];
+            }
+            return new ArrayContainer(kept, n);
+        }
+        
+        BitmapContainer result = (BitmapContainer) a.copy();
+        if (b instanceof BitmapContainer y) {
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] &= ~y.words[w];
+                cardinality += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = cardinality;
+        } else {
+            ArrayContainer y = (ArrayContainer) b;
+            for (int i = 0; i < y.cardinality; i++) {
+                result.remove(y.values[i]);
+            }
+        }
+        return result.cardinality <= ARRAY_MAX_SIZE ? result.toArray() : result;
+    }
+    
+    private abstract static class Container {
+        int cardinality;
+        
+        abstract boolean add(char value);
+        
+        abstract boolean contains(char value);
+        
+        abstract Container copy();
+    }
+    
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+        
+        @Override
+        boolean add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return false;
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX_SIZE));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return true;
+        }
+        
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+        
+        void remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+        }
+        
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 4)), cardinality);
+        }
+        
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+    
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+        
+        @Override
+        boolean add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | (1L << value);
+            if (before == words[value >>> 6]) {
+                return false;
+            }
+            cardinality++;
+            return true;
+        }
+        
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+        
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+        
+        void remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) cardinality--;
+        }
+        
+        ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
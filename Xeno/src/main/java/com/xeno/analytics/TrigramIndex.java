@@ -0,0 +1,312 @@
+package com.xeno.analytics;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index from character trigrams to documents, for substring and fuzzy search.
+ * Each document is a few text fields, most important first. Text is lowercased,
+ * stripped of accents and reduced to letters and digits separated by single spaces,
+ * then padded with a space at each end so word starts and ends form their own trigrams.
+ * Every trigram maps to a {@link RoaringBitmap} of document slots, so a posting costs
+ * two bytes, or one bit for trigrams most documents share.
+ * <p>
+ * A query of three or more characters matches documents containing at least the
+ * given fraction of its trigrams; containing all of them is what a substring match
+ * needs. Only the rarest posting lists are scanned for candidates, so the cost follows
+ * the selectivity of the query rather than the number of documents. Two-character
+ * queries match word prefixes. Hits are ranked by the fraction of trigrams matched plus
+ * a bonus for an exact, prefix, word-prefix or substring match in the best field.
+ * <p>
+ * Updated documents take a new slot and the old one is left dead until enough slots
+ * are dead to rebuild the postings. Not thread-safe.
+ */
+public class TrigramIndex {
+    
+    public static final int MIN_QUERY_LENGTH = 2;
+    
+    private static final char FIELD_SEPARATOR = '\n';
+    private static final RoaringBitmap NO_SLOTS = new RoaringBitmap();
+    private static final int MIN_COMPACT_DEAD_SLOTS = 1024;
+    private static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingLong(Hit::id);
+    
+    private final LongIntHashMap slotsById = new LongIntHashMap();
+    private long[] ids = new long[16];
+    // Normalized fields joined by FIELD_SEPARATOR, null for a dead slot
+    private String[] documents = new String[16];
+    private int slotCount;
+    private int liveCount;
+    
+    private final LongIntHashMap postingsByTrigram = new LongIntHashMap();
+    private RoaringBitmap[] postings = new RoaringBitmap[64];
+    private int trigramCount;
+    
+    /**
+     * A matching document and its relevance, higher first
+     */
+    public record Hit(long id, double score) {
+    }
+    
+    public int size() {
+        return liveCount;
+    }
+    
+    public boolean contains(long id) {
+        int slot = slotsById.get(id, -1);
+        return slot >= 0 && documents[slot] != null;
+    }
+    
+    /**
+     * Index a document's fields, most important first, replacing any earlier version
+     */
+    public void put(long id, String... fields) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) joined.append(FIELD_SEPARATOR);
+            joined.append(normalize(fields[i]));
+        }
+        String document = joined.toString();
+        
+        int existing = slotsById.get(id, -1);
+        if (existing >= 0 && documents[existing] != null) {
+            if (documents[existing].equals(document)) {
+                return;
+            }
+            documents[existing] = null;
+            liveCount--;
+        }
+        add(id, document);
+        
+        int dead = slotCount - liveCount;
+        if (dead >= MIN_COMPACT_DEAD_SLOTS && dead > liveCount) {
+            compact();
+        }
+    }
+    
+    /**
+     * Whether a query has enough text to be searched
+     */
+    public static boolean accepts(String query) {
+        return normalize(query).length() >= MIN_QUERY_LENGTH;
+    }
+    
+    /**
+     * The best {@code limit} documents containing at least {@code minSimilarity} of the query's trigrams
+     */
+    public List<Hit> search(String query, double minSimilarity, int limit) {
+        String text = normalize(query);
+        if (text.length() < MIN_QUERY_LENGTH || limit <= 0) {
+            return List.of();
+        }
+        long[] trigrams = text.length() >= 3 ? trigrams(text) : new long[]{pack(' ', text.charAt(0), text.charAt(1))};
+        int k = trigrams.length;
+        int need = Math.max(1, Math.min(k, (int) Math.ceil(k * minSimilarity)));
+        
+        RoaringBitmap[] lists = new RoaringBitmap[k];
+        for (int i = 0; i < k; i++) {
+            int list = postingsByTrigram.get(trigrams[i], -1);
+            lists[i] = list >= 0 ? postings[list] : NO_SLOTS;
+        }
+        Arrays.sort(lists, Comparator.comparingLong(RoaringBitmap::cardinality));
+        
+        // A document holding `need` of the k trigrams is in at least one of the k - need + 1 shortest lists
+        RoaringBitmap candidates = lists[0];
+        if (need < k) {
+            candidates = candidates.copy();
+            for (int i = 1; i < k - need + 1; i++) {
+                candidates.or(lists[i]);
+            }
+        }
+        
+        // The worst of the best hits so far sits on top of the heap
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        candidates.forEach(slot -> {
+            String document = documents[(int) slot];
+            if (document == null) {
+                return;
+            }
+            int matched = 0;
+            for (int i = 0; i < k && matched + (k - i) >= need; i++) {
+                if (lists[i].contains(slot)) {
+                    matched++;
+                }
+            }
+            if (matched < need) {
+                return;
+            }
+            double score = (double) matched / k + matchBonus(document, text);
+            if (best.size() == limit && score < best.peek().score()) {
+                return;
+            }
+            best.add(new Hit(ids[(int) slot], score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(RANKING);
+        return hits;
+    }
+    
+    /**
+     * Approximate heap held by the documents and postings
+     */
+    public long memoryBytes() {
+        long bytes = slotsById.memoryBytes() + postingsByTrigram.memoryBytes()
+                + (long) ids.length * Long.BYTES + (long) documents.length * 8
+                + (long) postings.length * 8;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (documents[slot] != null) {
+                bytes += 40 + documents[slot].length();
+            }
+        }
+        for (int i = 0; i < trigramCount; i++) {
+            bytes += postings[i].memoryBytes();
+        }
+        return bytes;
+    }
+    
+    /**
+     * Lowercase letters and digits without accents, separated by single spaces
+     */
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * How closely the query's text appears in the document's best field: exact, prefix,
+     * word prefix or substring, weighted down for less important fields
+     */
+    private static double matchBonus(String document, String text) {
+        double best = 0;
+        int field = 0;
+        for (int start = 0; start <= document.length(); field++) {
+            int end = document.indexOf(FIELD_SEPARATOR, start);
+            if (end < 0) {
+                end = document.length();
+            }
+            best = Math.max(best, fieldMatch(document, start, end, text) / (field + 1));
+            start = end + 1;
+        }
+        return best;
+    }
+    
+    private static double fieldMatch(String document, int start, int end, String text) {
+        if (document.startsWith(text, start) && start + text.length() <= end) {
+            return start + text.length() == end ? 1.0 : 0.8;
+        }
+        double match = 0;
+        for (int i = document.indexOf(text, start + 1); i >= 0 && i + text.length() <= end; i = document.indexOf(text, i + 1)) {
+            if (document.charAt(i - 1) == ' ') {
+                return 0.6;
+            }
+            match = 0.4;
+        }
+        return match;
+    }
+    
+    private void add(long id, String document) {
+        int slot = slotCount++;
+        if (slot == ids.length) {
+            ids = Arrays.copyOf(ids, slot * 2);
+            documents = Arrays.copyOf(documents, slot * 2);
+        }
+        ids[slot] = id;
+        documents[slot] = document;
+        slotsById.put(id, slot);
+        liveCount++;
+        
+        int start = 0;
+        while (start <= document.length()) {
+            int end = document.indexOf(FIELD_SEPARATOR, start);
+            if (end < 0) {
+                end = document.length();
+            }
+            if (end > start) {
+                for (long trigram : trigrams(" " + document.substring(start, end) + " ")) {
+                    posting(trigram).add(slot);
+                }
+            }
+            start = end + 1;
+        }
+    }
+    
+    /**
+     * The distinct trigrams of a string
+     */
+    private static long[] trigrams(String text) {
+        long[] trigrams = new long[Math.max(0, text.length() - 2)];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = pack(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+        }
+        return Arrays.stream(trigrams).sorted().distinct().toArray();
+    }
+    
+    private static long pack(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+    
+    private RoaringBitmap posting(long trigram) {
+        int list = postingsByTrigram.get(trigram, -1);
+        if (list < 0) {
+            list = trigramCount++;
+            if (list == postings.length) {
+                postings = Arrays.copyOf(postings, list * 2);
+            }
+            postings[list] = new RoaringBitmap();
+            postingsByTrigram.put(trigram, list);
+        }
+        return postings[list];
+    }
+    
+    /**
+     * Rebuild the postings from the live documents only
+     */
+    private void compact() {
+        long[] oldIds = ids;
+        String[] oldDocuments = documents;
+        int oldCount = slotCount;
+        
+        slotsById.clear();
+        postingsByTrigram.clear();
+        ids = new long[Math.max(16, liveCount * 2)];
+        documents = new String[ids.length];
+        postings = new RoaringBitmap[64];
+        slotCount = 0;
+        liveCount = 0;
+        trigramCount = 0;
+        for (int slot = 0; slot < oldCount; slot++) {
+            if (oldDocuments[slot] != null) {
+                add(oldIds[slot], oldDocuments[slot]);
+            }
+        }
+    }
+}
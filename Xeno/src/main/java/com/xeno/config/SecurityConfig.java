@@ -1,6 +1,7 @@
 package com.xeno.config;
 
 import com.xeno.security.JwtAuthFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -52,6 +53,8 @@ public class SecurityConfig {
                 .requestMatchers("/webhooks/**").permitAll()
                 .requestMatchers("/health").permitAll()
                 .requestMatchers("/swagger-ui/**", "/api-docs/**", "/swagger-ui.html").permitAll()
+                // Async dispatches write to already-authorized streams (SSE); the JWT filter does not run on them
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // All other endpoints require authentication
                 .anyRequest().authenticated()
             )
@@ -3,19 +3,35 @@ package com.xeno.controller;
 import com.xeno.dto.ApiResponse;
 import com.xeno.dto.EntityDto;
 import com.xeno.entity.Customer;
+import com.xeno.event.TenantDataEvent.DataType;
 import com.xeno.repository.CustomerRepository;
+import com.xeno.repository.Keyset;
+import com.xeno.repository.RowQueryRepository;
+import com.xeno.repository.projection.CustomerListRow;
 import com.xeno.security.TenantContext;
+import com.xeno.service.CustomerLeaderboardService;
+import com.xeno.service.CustomerSegmentationService;
+import com.xeno.service.ExportService;
+import com.xeno.service.SearchIndexService;
+import com.xeno.service.TenantDataVersions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for customer data.
@@ -27,42 +43,166 @@ import java.util.List;
 @SecurityRequirement(name = "bearerAuth")
 public class CustomerController {
     
+    // Sorts with an index on (tenantId, column, id) to seek on
+    private static final Map<String, Keyset.SortKey<CustomerListRow>> CURSOR_SORTS = Map.of(
+            "createdAt", Keyset.SortKey.dateTime("createdAt", CustomerListRow::createdAt, false),
+            "totalSpent", Keyset.SortKey.decimal("totalSpent", CustomerListRow::totalSpent, true));
+    
     private final CustomerRepository customerRepository;
+    private final RowQueryRepository rowQueryRepository;
+    private final ExportService exportService;
+    private final SearchIndexService searchIndexService;
+    private final CustomerLeaderboardService customerLeaderboardService;
+    private final CustomerSegmentationService customerSegmentationService;
+    private final TenantDataVersions tenantDataVersions;
     
     @GetMapping
-    @Operation(summary = "Get all customers with pagination")
+    @Operation(summary = "Get all customers with pagination",
+               description = "With cursor, pages are cursor-based: pass an empty cursor for the first page and the " +
+                             "previous page's nextCursor to continue; they sort by createdAt or totalSpent, and set includeTotal for a total count. " +
+                             "Otherwise, offset pagination by page number with a total count and any sortBy. " +
+                             "With search, matches on name or email ranked by relevance, paged by page number")
     public ResponseEntity<ApiResponse<List<EntityDto.CustomerDto>>> getCustomers(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Customer.RfmSegment segment,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
-        Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
-        PageRequest pageRequest = PageRequest.of(page, size, sort);
-        
-        Page<Customer> customers;
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.CUSTOMERS)) {
+            return null;
+        }
+        boolean ascending = sortDir.equalsIgnoreCase("asc");
+        Specification<Customer> filter = CustomerRepository.ofTenant(tenantId);
+        if (segment != null) {
+            filter = filter.and(CustomerRepository.inSegment(segment));
+        }
         if (search != null && !search.isBlank()) {
-            customers = customerRepository.searchByTenantId(tenantId, search, pageRequest);
-        } else {
-            customers = customerRepository.findByTenantId(tenantId, pageRequest);
+            Optional<List<Long>> ranked = searchIndexService.searchCustomers(tenantId, search);
+            if (ranked.isPresent()) {
+                Page<CustomerListRow> customers = rowQueryRepository.findRanked(Customer.class, CustomerListRow.class, filter,
+                        ranked.get(), PageRequest.of(page, size));
+                return ResponseEntity.ok(ApiResponse.success(customers.map(this::toDto)));
+            }
+            filter = filter.and(CustomerRepository.matching(search));
         }
         
+        if (cursor != null) {
+            Keyset.Result<CustomerListRow> customers = rowQueryRepository.findKeyset(Customer.class, CustomerListRow.class,
+                    filter, CURSOR_SORTS, new Keyset.Request(sortBy, ascending, cursor, size, includeTotal));
+            return ResponseEntity.ok(ApiResponse.success(customers.map(this::toDto)));
+        }
+        
+        Sort sort = Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
+        Page<CustomerListRow> customers = rowQueryRepository.findPage(Customer.class, CustomerListRow.class, filter,
+                PageRequest.of(page, size, sort));
+        
         Page<EntityDto.CustomerDto> dtoPage = customers.map(this::toDto);
         return ResponseEntity.ok(ApiResponse.success(dtoPage));
     }
     
+    @GetMapping("/export")
+    @Operation(summary = "Export all customers as CSV or NDJSON", description = "Streams every row from a database cursor; gzip-compressed when the client sends Accept-Encoding: gzip")
+    public void exportCustomers(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Customer.RfmSegment segment,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        Long tenantId = TenantContext.getTenantId();
+        Specification<Customer> filter = CustomerRepository.ofTenant(tenantId);
+        if (segment != null) {
+            filter = filter.and(CustomerRepository.inSegment(segment));
+        }
+        exportService.export("customers", format, acceptEncoding, response, Customer.class, CustomerListRow.class, filter,
+                Sort.by("createdAt", "id"));
+    }
+    
+    @GetMapping("/segments")
+    @Operation(summary = "Get customer counts per RFM segment from the last segmentation run")
+    public ResponseEntity<ApiResponse<List<EntityDto.CustomerSegmentDto>>> getSegments(NativeWebRequest request) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.CUSTOMERS)) {
+            return null;
+        }
+        return ResponseEntity.ok(ApiResponse.success(customerSegmentationService.getSegmentCounts(tenantId)));
+    }
+    
+    @PostMapping("/segments/refresh")
+    @Operation(summary = "Recompute RFM segments for the current tenant")
+    public ResponseEntity<ApiResponse<List<EntityDto.CustomerSegmentDto>>> refreshSegments() {
+        Long tenantId = TenantContext.getTenantId();
+        customerSegmentationService.segmentTenant(tenantId);
+        return ResponseEntity.ok(ApiResponse.success(customerSegmentationService.getSegmentCounts(tenantId)));
+    }
+    
     @GetMapping("/{id}")
     @Operation(summary = "Get customer by ID")
-    public ResponseEntity<ApiResponse<EntityDto.CustomerDto>> getCustomer(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<EntityDto.CustomerDto>> getCustomer(@PathVariable Long id, NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.CUSTOMERS)) {
+            return null;
+        }
         
         return customerRepository.findByTenantIdAndId(tenantId, id)
                 .map(customer -> ResponseEntity.ok(ApiResponse.success(toDto(customer))))
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    @GetMapping("/{id}/rank")
+    @Operation(summary = "Get a customer's rank by total spend")
+    public ResponseEntity<ApiResponse<EntityDto.CustomerRankDto>> getCustomerRank(@PathVariable Long id, NativeWebRequest request) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.CUSTOMERS)) {
+            return null;
+        }
+        
+        return customerRepository.findByTenantIdAndId(tenantId, id)
+                .map(customer -> {
+                    CustomerLeaderboardService.Rank rank = customerLeaderboardService.getRank(
+                            tenantId, customer.getId(), customer.getTotalSpent());
+                    double percentile = rank.totalCustomers() > 0
+                            ? Math.round((1.0 - (double) (rank.rank() - 1) / rank.totalCustomers()) * 10000.0) / 100.0
+                            : 0.0;
+                    
+                    return ResponseEntity.ok(ApiResponse.success(EntityDto.CustomerRankDto.builder()
+                            .customerId(customer.getId())
+                            .rank(rank.rank())
+                            .totalCustomers(rank.totalCustomers())
+                            .totalSpent(customer.getTotalSpent())
+                            .percentile(percentile)
+                            .build()));
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    private EntityDto.CustomerDto toDto(CustomerListRow customer) {
+        return EntityDto.CustomerDto.builder()
+                .id(customer.id())
+                .shopifyCustomerId(customer.shopifyCustomerId())
+                .email(customer.email())
+                .firstName(customer.firstName())
+                .lastName(customer.lastName())
+                .fullName(customer.fullName())
+                .phone(customer.phone())
+                .address(customer.address())
+                .city(customer.city())
+                .state(customer.state())
+                .country(customer.country())
+                .totalSpent(customer.totalSpent())
+                .ordersCount(customer.ordersCount())
+                .acceptsMarketing(customer.acceptsMarketing())
+                .rfmScore(customer.rfmScore())
+                .rfmSegment(customer.rfmSegment() != null ? customer.rfmSegment().name() : null)
+                .createdAt(customer.createdAt())
+                .build();
+    }
+    
     private EntityDto.CustomerDto toDto(Customer customer) {
         return EntityDto.CustomerDto.builder()
                 .id(customer.getId())
@@ -79,6 +219,8 @@ public class CustomerController {
                 .totalSpent(customer.getTotalSpent())
                 .ordersCount(customer.getOrdersCount())
                 .acceptsMarketing(customer.getAcceptsMarketing())
+                .rfmScore(customer.getRfmScore())
+                .rfmSegment(customer.getRfmSegment() != null ? customer.getRfmSegment().name() : null)
                 .createdAt(customer.getCreatedAt())
                 .build();
     }
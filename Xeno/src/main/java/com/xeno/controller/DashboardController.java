@@ -2,15 +2,26 @@ package com.xeno.controller;
 
 import com.xeno.dto.ApiResponse;
 import com.xeno.dto.DashboardDto;
+import com.xeno.event.TenantDataEvent.DataType;
 import com.xeno.security.TenantContext;
+import com.xeno.service.AnomalyDetectionService;
+import com.xeno.service.CustomerCohortService;
 import com.xeno.service.DashboardService;
+import com.xeno.service.DashboardStreamService;
+import com.xeno.service.FunnelAnalyticsService;
+import com.xeno.service.OrderValueDistributionService;
+import com.xeno.service.TenantDataVersions;
+import com.xeno.service.UniqueCountService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -25,20 +36,45 @@ import java.util.List;
 @SecurityRequirement(name = "bearerAuth")
 public class DashboardController {
     
+    private static final int MAX_TOP_CUSTOMERS = 100;
+    private static final int MAX_TOP_PRODUCTS = 100;
+    private static final int MAX_ABANDONED_CARTS = 200;
+    
     private final DashboardService dashboardService;
+    private final FunnelAnalyticsService funnelAnalyticsService;
+    private final CustomerCohortService customerCohortService;
+    private final UniqueCountService uniqueCountService;
+    private final OrderValueDistributionService orderValueDistributionService;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final DashboardStreamService dashboardStreamService;
+    private final TenantDataVersions tenantDataVersions;
     
     @GetMapping
     @Operation(summary = "Get complete dashboard data")
-    public ResponseEntity<ApiResponse<DashboardDto.DashboardData>> getDashboard() {
+    public ResponseEntity<ApiResponse<DashboardDto.DashboardData>> getDashboard(NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.values())) {
+            return null;
+        }
         DashboardDto.DashboardData data = dashboardService.getDashboardData(tenantId);
         return ResponseEntity.ok(ApiResponse.success(data));
     }
     
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream live dashboard updates",
+               description = "Server-Sent Events: a \"snapshot\" event with the full dashboard, then \"order\" deltas as orders are ingested and \"anomaly\" alerts")
+    public SseEmitter streamDashboard() {
+        Long tenantId = TenantContext.getTenantId();
+        return dashboardStreamService.subscribe(tenantId);
+    }
+    
     @GetMapping("/stats")
     @Operation(summary = "Get overview statistics")
-    public ResponseEntity<ApiResponse<DashboardDto.OverviewStats>> getOverviewStats() {
+    public ResponseEntity<ApiResponse<DashboardDto.OverviewStats>> getOverviewStats(NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS, DataType.CUSTOMERS, DataType.PRODUCTS)) {
+            return null;
+        }
         DashboardDto.OverviewStats stats = dashboardService.getOverviewStats(tenantId);
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
@@ -47,29 +83,57 @@ public class DashboardController {
     @Operation(summary = "Get orders grouped by date")
     public ResponseEntity<ApiResponse<List<DashboardDto.OrdersByDate>>> getOrdersByDate(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
         List<DashboardDto.OrdersByDate> data = dashboardService.getOrdersByDate(tenantId, startDate, endDate);
         return ResponseEntity.ok(ApiResponse.success(data));
     }
     
+    @GetMapping("/range-summary")
+    @Operation(summary = "Get order totals and status counts for a date range")
+    public ResponseEntity<ApiResponse<DashboardDto.RangeSummary>> getRangeSummary(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
+        DashboardDto.RangeSummary summary = dashboardService.getRangeSummary(tenantId, startDate, endDate);
+        return ResponseEntity.ok(ApiResponse.success(summary));
+    }
+    
     @GetMapping("/top-customers")
     @Operation(summary = "Get top customers by spend")
     public ResponseEntity<ApiResponse<List<DashboardDto.TopCustomer>>> getTopCustomers(
-            @RequestParam(defaultValue = "5") int limit
+            @RequestParam(defaultValue = "5") int limit,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
-        List<DashboardDto.TopCustomer> customers = dashboardService.getTopCustomers(tenantId, limit);
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.CUSTOMERS)) {
+            return null;
+        }
+        List<DashboardDto.TopCustomer> customers = dashboardService.getTopCustomers(tenantId,
+                Math.max(1, Math.min(limit, MAX_TOP_CUSTOMERS)));
         return ResponseEntity.ok(ApiResponse.success(customers));
     }
     
     @GetMapping("/revenue-trends")
     @Operation(summary = "Get monthly revenue trends")
     public ResponseEntity<ApiResponse<List<DashboardDto.RevenueTrend>>> getRevenueTrends(
-            @RequestParam(defaultValue = "12") int months
+            @RequestParam(defaultValue = "12") int months,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
         List<DashboardDto.RevenueTrend> trends = dashboardService.getRevenueTrends(tenantId, months);
         return ResponseEntity.ok(ApiResponse.success(trends));
     }
@@ -77,26 +141,132 @@ public class DashboardController {
     @GetMapping("/top-products")
     @Operation(summary = "Get top selling products")
     public ResponseEntity<ApiResponse<List<DashboardDto.ProductPerformance>>> getTopProducts(
-            @RequestParam(defaultValue = "10") int limit
+            @RequestParam(defaultValue = "10") int limit,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
-        List<DashboardDto.ProductPerformance> products = dashboardService.getTopProducts(tenantId, limit);
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS, DataType.PRODUCTS)) {
+            return null;
+        }
+        List<DashboardDto.ProductPerformance> products = dashboardService.getTopProducts(tenantId,
+                Math.max(1, Math.min(limit, MAX_TOP_PRODUCTS)));
         return ResponseEntity.ok(ApiResponse.success(products));
     }
     
     @GetMapping("/order-status")
     @Operation(summary = "Get order status breakdown")
-    public ResponseEntity<ApiResponse<List<DashboardDto.OrderStatusBreakdown>>> getOrderStatusBreakdown() {
+    public ResponseEntity<ApiResponse<List<DashboardDto.OrderStatusBreakdown>>> getOrderStatusBreakdown(NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
         List<DashboardDto.OrderStatusBreakdown> breakdown = dashboardService.getOrderStatusBreakdown(tenantId);
         return ResponseEntity.ok(ApiResponse.success(breakdown));
     }
     
     @GetMapping("/events")
     @Operation(summary = "Get event statistics")
-    public ResponseEntity<ApiResponse<List<DashboardDto.EventStats>>> getEventStats() {
+    public ResponseEntity<ApiResponse<List<DashboardDto.EventStats>>> getEventStats(NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.EVENTS)) {
+            return null;
+        }
         List<DashboardDto.EventStats> stats = dashboardService.getEventStats(tenantId);
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
+    
+    @GetMapping("/funnel")
+    @Operation(summary = "Get checkout funnel conversion and recent abandoned carts")
+    public ResponseEntity<ApiResponse<DashboardDto.FunnelData>> getFunnel(
+            @RequestParam(defaultValue = "20") int abandonedLimit
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        DashboardDto.FunnelData funnel = funnelAnalyticsService.getFunnel(tenantId,
+                Math.max(0, Math.min(abandonedLimit, MAX_ABANDONED_CARTS)));
+        return ResponseEntity.ok(ApiResponse.success(funnel));
+    }
+    
+    @GetMapping("/unique-counts")
+    @Operation(summary = "Get approximate unique customers and sessions for a date range",
+               description = "Estimated from per-day HyperLogLog sketches; see standardError for the expected relative error")
+    public ResponseEntity<ApiResponse<DashboardDto.UniqueCounts>> getUniqueCounts(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS, DataType.EVENTS)) {
+            return null;
+        }
+        DashboardDto.UniqueCounts counts = uniqueCountService.getUniqueCounts(tenantId, startDate, endDate);
+        return ResponseEntity.ok(ApiResponse.success(counts));
+    }
+    
+    @GetMapping("/order-values")
+    @Operation(summary = "Get median, p90 and p99 order value for a date range",
+               description = "Merged from per-day quantile sketches; each value is within relativeAccuracy of the exact percentile")
+    public ResponseEntity<ApiResponse<DashboardDto.OrderValueDistribution>> getOrderValueDistribution(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
+        DashboardDto.OrderValueDistribution distribution =
+                orderValueDistributionService.getDistribution(tenantId, startDate, endDate);
+        return ResponseEntity.ok(ApiResponse.success(distribution));
+    }
+    
+    @GetMapping("/order-values/histogram")
+    @Operation(summary = "Get an order value histogram for a date range",
+               description = "Order counts in log-spaced value bins between the smallest and largest order")
+    public ResponseEntity<ApiResponse<DashboardDto.OrderValueHistogram>> getOrderValueHistogram(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "20") int bins,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
+        DashboardDto.OrderValueHistogram histogram =
+                orderValueDistributionService.getHistogram(tenantId, startDate, endDate, bins);
+        return ResponseEntity.ok(ApiResponse.success(histogram));
+    }
+    
+    @GetMapping("/cohorts")
+    @Operation(summary = "Get monthly customer retention cohorts",
+               description = "Share of customers first ordering in each month who ordered again 1..periods months later")
+    public ResponseEntity<ApiResponse<List<DashboardDto.CohortRetention>>> getCohorts(
+            @RequestParam(defaultValue = "12") int months,
+            @RequestParam(defaultValue = "6") int periods,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
+        List<DashboardDto.CohortRetention> cohorts = customerCohortService.getCohorts(tenantId, months, periods);
+        return ResponseEntity.ok(ApiResponse.success(cohorts));
+    }
+    
+    @GetMapping("/anomalies")
+    @Operation(summary = "Get recent hourly order and revenue anomaly alerts",
+               description = "Hours whose order count or revenue was far from the usual level for that hour of day; also pushed live as \"anomaly\" events on /dashboard/stream")
+    public ResponseEntity<ApiResponse<List<DashboardDto.AnomalyAlert>>> getAnomalies(
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        return ResponseEntity.ok(ApiResponse.success(anomalyDetectionService.getAlerts(tenantId, limit)));
+    }
+    
+    @GetMapping("/columnar")
+    @Operation(summary = "Get the in-memory columnar store footprint for the current tenant")
+    public ResponseEntity<ApiResponse<DashboardDto.ColumnarStats>> getColumnarStats() {
+        Long tenantId = TenantContext.getTenantId();
+        return ResponseEntity.ok(ApiResponse.success(dashboardService.getColumnarStats(tenantId)));
+    }
 }
@@ -4,22 +4,36 @@ import com.xeno.dto.ApiResponse;
 import com.xeno.dto.EntityDto;
 import com.xeno.entity.Order;
 import com.xeno.entity.OrderItem;
+import com.xeno.event.TenantDataEvent.DataType;
+import com.xeno.repository.Keyset;
+import com.xeno.repository.OrderItemRepository;
 import com.xeno.repository.OrderRepository;
+import com.xeno.repository.RowQueryRepository;
+import com.xeno.repository.projection.OrderListRow;
 import com.xeno.security.TenantContext;
+import com.xeno.service.ExportService;
+import com.xeno.service.TenantDataVersions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -32,77 +46,136 @@ import java.util.stream.Collectors;
 @SecurityRequirement(name = "bearerAuth")
 public class OrderController {
     
+    // Sorts with an index on (tenantId, column, id) to seek on
+    private static final Map<String, Keyset.SortKey<OrderListRow>> CURSOR_SORTS = Map.of(
+            "processedAt", Keyset.SortKey.dateTime("processedAt", OrderListRow::processedAt, true));
+    
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final RowQueryRepository rowQueryRepository;
+    private final ExportService exportService;
+    private final TenantDataVersions tenantDataVersions;
     
     @GetMapping
-    @Operation(summary = "Get all orders with pagination and date filtering")
+    @Operation(summary = "Get all orders with pagination and date filtering",
+               description = "With cursor, pages are cursor-based: pass an empty cursor for the first page and the " +
+                             "previous page's nextCursor to continue; they sort by processedAt, and set includeTotal for a total count. " +
+                             "Otherwise, offset pagination by page number with a total count and any sortBy. " +
+                             "Line items are left out unless include=items, which loads them for the whole page in one query")
     public ResponseEntity<ApiResponse<List<EntityDto.OrderDto>>> getOrders(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "processedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) Set<String> include,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
-        Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
-        PageRequest pageRequest = PageRequest.of(page, size, sort);
-        
-        Page<Order> orders;
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
+        boolean ascending = sortDir.equalsIgnoreCase("asc");
+        boolean withItems = include != null && include.contains("items");
+        Specification<Order> filter = OrderRepository.ofTenant(tenantId);
         if (startDate != null && endDate != null) {
-            orders = orderRepository.findByDateRange(
-                    tenantId, 
-                    startDate.atStartOfDay(), 
-                    endDate.atTime(LocalTime.MAX), 
-                    pageRequest
-            );
-        } else {
-            orders = orderRepository.findByTenantId(tenantId, pageRequest);
+            filter = filter.and(OrderRepository.processedBetween(startDate.atStartOfDay(), endDate.atTime(LocalTime.MAX)));
+        }
+        
+        if (cursor != null) {
+            Keyset.Result<OrderListRow> orders = rowQueryRepository.findKeyset(Order.class, OrderListRow.class, filter,
+                    CURSOR_SORTS, new Keyset.Request(sortBy, ascending, cursor, size, includeTotal));
+            Map<Long, List<EntityDto.OrderItemDto>> items = withItems ? loadItems(orders.content()) : Map.of();
+            return ResponseEntity.ok(ApiResponse.success(orders.map(order -> toDto(order, items.get(order.id())))));
         }
         
-        Page<EntityDto.OrderDto> dtoPage = orders.map(this::toDto);
+        Sort sort = Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
+        Page<OrderListRow> orders = rowQueryRepository.findPage(Order.class, OrderListRow.class, filter,
+                PageRequest.of(page, size, sort));
+        
+        Map<Long, List<EntityDto.OrderItemDto>> items = withItems ? loadItems(orders.getContent()) : Map.of();
+        Page<EntityDto.OrderDto> dtoPage = orders.map(order -> toDto(order, items.get(order.id())));
         return ResponseEntity.ok(ApiResponse.success(dtoPage));
     }
     
+    @GetMapping("/export")
+    @Operation(summary = "Export all orders as CSV or NDJSON", description = "Streams every row from a database cursor; gzip-compressed when the client sends Accept-Encoding: gzip")
+    public void exportOrders(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        Long tenantId = TenantContext.getTenantId();
+        Specification<Order> filter = OrderRepository.ofTenant(tenantId);
+        if (startDate != null && endDate != null) {
+            filter = filter.and(OrderRepository.processedBetween(startDate.atStartOfDay(), endDate.atTime(LocalTime.MAX)));
+        }
+        exportService.export("orders", format, acceptEncoding, response, Order.class, OrderListRow.class, filter,
+                Sort.by(Sort.Direction.DESC, "processedAt", "id"));
+    }
+    
     @GetMapping("/{id}")
     @Operation(summary = "Get order by ID")
-    public ResponseEntity<ApiResponse<EntityDto.OrderDto>> getOrder(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<EntityDto.OrderDto>> getOrder(@PathVariable Long id, NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.ORDERS)) {
+            return null;
+        }
         
         return orderRepository.findByTenantIdAndId(tenantId, id)
-                .map(order -> ResponseEntity.ok(ApiResponse.success(toDto(order))))
+                .map(order -> ResponseEntity.ok(ApiResponse.success(
+                        toDto(OrderListRow.of(order), order.getItems().stream().map(this::toItemDto).toList()))))
                 .orElse(ResponseEntity.notFound().build());
     }
     
-    private EntityDto.OrderDto toDto(Order order) {
-        List<EntityDto.OrderItemDto> items = order.getItems().stream()
-                .map(this::toItemDto)
-                .collect(Collectors.toList());
-        
+    /**
+     * Line items for a page of orders by order id, fetched together instead of one lazy load per order
+     */
+    private Map<Long, List<EntityDto.OrderItemDto>> loadItems(List<OrderListRow> orders) {
+        if (orders.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> orderIds = orders.stream().map(OrderListRow::id).toList();
+        Map<Long, List<EntityDto.OrderItemDto>> items = orderItemRepository.findByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(item -> item.getOrder().getId(),
+                        Collectors.mapping(this::toItemDto, Collectors.toList())));
+        orderIds.forEach(id -> items.putIfAbsent(id, List.of()));
+        return items;
+    }
+    
+    /**
+     * @param items the order's line items, or null to leave them out
+     */
+    private EntityDto.OrderDto toDto(OrderListRow order, List<EntityDto.OrderItemDto> items) {
         EntityDto.CustomerSummary customer = null;
-        if (order.getCustomerId() != null || order.getCustomerEmail() != null) {
+        if (order.customerId() != null || order.customerEmail() != null) {
             customer = EntityDto.CustomerSummary.builder()
-                    .id(order.getCustomerId())
-                    .email(order.getCustomerEmail())
+                    .id(order.customerId())
+                    .email(order.customerEmail())
                     .build();
         }
         
         return EntityDto.OrderDto.builder()
-                .id(order.getId())
-                .shopifyOrderId(order.getShopifyOrderId())
-                .orderNumber(order.getOrderNumber())
+                .id(order.id())
+                .shopifyOrderId(order.shopifyOrderId())
+                .orderNumber(order.orderNumber())
                 .customer(customer)
-                .totalPrice(order.getTotalPrice())
-                .subtotalPrice(order.getSubtotalPrice())
-                .totalTax(order.getTotalTax())
-                .totalDiscount(order.getTotalDiscount())
-                .currency(order.getCurrency())
-                .financialStatus(order.getFinancialStatus() != null ? order.getFinancialStatus().name() : null)
-                .fulfillmentStatus(order.getFulfillmentStatus() != null ? order.getFulfillmentStatus().name() : null)
-                .itemCount(order.getItemCount())
+                .totalPrice(order.totalPrice())
+                .subtotalPrice(order.subtotalPrice())
+                .totalTax(order.totalTax())
+                .totalDiscount(order.totalDiscount())
+                .currency(order.currency())
+                .financialStatus(order.financialStatus() != null ? order.financialStatus().name() : null)
+                .fulfillmentStatus(order.fulfillmentStatus() != null ? order.fulfillmentStatus().name() : null)
+                .itemCount(order.itemCount())
                 .items(items)
-                .processedAt(order.getProcessedAt())
-                .createdAt(order.getCreatedAt())
+                .processedAt(order.processedAt())
+                .createdAt(order.createdAt())
                 .build();
     }
     
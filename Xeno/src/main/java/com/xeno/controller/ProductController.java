@@ -3,19 +3,42 @@ package com.xeno.controller;
 import com.xeno.dto.ApiResponse;
 import com.xeno.dto.EntityDto;
 import com.xeno.entity.Product;
+import com.xeno.event.TenantDataEvent.DataType;
+import com.xeno.repository.Keyset;
 import com.xeno.repository.ProductRepository;
+import com.xeno.repository.RowQueryRepository;
+import com.xeno.repository.projection.ProductExportRow;
+import com.xeno.repository.projection.ProductListRow;
 import com.xeno.security.TenantContext;
+import com.xeno.service.ExportService;
+import com.xeno.service.SearchIndexService;
+import com.xeno.service.ProductAffinityService;
+import com.xeno.service.ProductFacetService;
+import com.xeno.service.ProductFacetService.Facet;
+import com.xeno.service.ProductSalesService;
+import com.xeno.service.TenantDataVersions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
+import java.io.IOException;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Controller for product data.
@@ -27,69 +50,240 @@ import java.util.List;
 @SecurityRequirement(name = "bearerAuth")
 public class ProductController {
     
+    // Sorts with an index on (tenantId, column, id) to seek on
+    private static final Map<String, Keyset.SortKey<ProductListRow>> CURSOR_SORTS = Map.of(
+            "createdAt", Keyset.SortKey.dateTime("createdAt", ProductListRow::createdAt, false),
+            "title", Keyset.SortKey.text("title", ProductListRow::title, false));
+    
+    private static final int MAX_FACET_VALUES = 500;
+    
     private final ProductRepository productRepository;
+    private final RowQueryRepository rowQueryRepository;
+    private final ExportService exportService;
+    private final SearchIndexService searchIndexService;
+    private final ProductAffinityService productAffinityService;
+    private final ProductFacetService productFacetService;
+    private final ProductSalesService productSalesService;
+    private final TenantDataVersions tenantDataVersions;
     
     @GetMapping
-    @Operation(summary = "Get all products with pagination")
+    @Operation(summary = "Get all products with pagination",
+               description = "With cursor, pages are cursor-based: pass an empty cursor for the first page and the " +
+                             "previous page's nextCursor to continue; they sort by createdAt or title, and set includeTotal for a total count. " +
+                             "Otherwise, offset pagination by page number with a total count and any sortBy. " +
+                             "With search, matches on title or vendor ranked by relevance, paged by page number. " +
+                             "Descriptions are only returned by the single product endpoint")
     public ResponseEntity<ApiResponse<List<EntityDto.ProductDto>>> getProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String search,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
-        Sort sort = Sort.by(sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
-        PageRequest pageRequest = PageRequest.of(page, size, sort);
-        
-        Page<Product> products;
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
+        boolean ascending = sortDir.equalsIgnoreCase("asc");
+        Specification<Product> filter = ProductRepository.ofTenant(tenantId);
         if (search != null && !search.isBlank()) {
-            products = productRepository.searchByTenantId(tenantId, search, pageRequest);
-        } else {
-            products = productRepository.findByTenantId(tenantId, pageRequest);
+            Optional<List<Long>> ranked = searchIndexService.searchProducts(tenantId, search);
+            if (ranked.isPresent()) {
+                Page<ProductListRow> products = rowQueryRepository.findRanked(Product.class, ProductListRow.class, filter,
+                        ranked.get(), PageRequest.of(page, size));
+                return ResponseEntity.ok(ApiResponse.success(products.map(this::toDto)));
+            }
+            filter = filter.and(ProductRepository.matching(search));
+        }
+        
+        if (cursor != null) {
+            Keyset.Result<ProductListRow> products = rowQueryRepository.findKeyset(Product.class, ProductListRow.class,
+                    filter, CURSOR_SORTS, new Keyset.Request(sortBy, ascending, cursor, size, includeTotal));
+            return ResponseEntity.ok(ApiResponse.success(products.map(this::toDto)));
         }
         
+        Sort sort = Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
+        Page<ProductListRow> products = rowQueryRepository.findPage(Product.class, ProductListRow.class, filter,
+                PageRequest.of(page, size, sort));
+        
         Page<EntityDto.ProductDto> dtoPage = products.map(this::toDto);
         return ResponseEntity.ok(ApiResponse.success(dtoPage));
     }
     
+    @GetMapping("/export")
+    @Operation(summary = "Export all products as CSV or NDJSON", description = "Streams every row from a database cursor; gzip-compressed when the client sends Accept-Encoding: gzip")
+    public void exportProducts(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        Long tenantId = TenantContext.getTenantId();
+        exportService.export("products", format, acceptEncoding, response, Product.class, ProductExportRow.class,
+                ProductRepository.ofTenant(tenantId), Sort.by("createdAt", "id"));
+    }
+    
     @GetMapping("/{id}")
     @Operation(summary = "Get product by ID")
-    public ResponseEntity<ApiResponse<EntityDto.ProductDto>> getProduct(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<EntityDto.ProductDto>> getProduct(@PathVariable Long id, NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
         
         return productRepository.findByTenantIdAndId(tenantId, id)
                 .map(product -> ResponseEntity.ok(ApiResponse.success(toDto(product))))
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    @GetMapping("/{id}/affinities")
+    @Operation(summary = "Get products frequently bought together with a product",
+               description = "From the last affinity run, ranked by orders containing both products")
+    public ResponseEntity<ApiResponse<List<EntityDto.ProductAffinityDto>>> getAffinities(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
+        
+        return productRepository.findByTenantIdAndId(tenantId, id)
+                .map(product -> ResponseEntity.ok(ApiResponse.success(
+                        productAffinityService.getAffinities(tenantId, product.getShopifyProductId(), limit))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/affinities/refresh")
+    @Operation(summary = "Recompute frequently-bought-together products for the current tenant")
+    public ResponseEntity<ApiResponse<Integer>> refreshAffinities() {
+        Long tenantId = TenantContext.getTenantId();
+        return ResponseEntity.ok(ApiResponse.success(productAffinityService.computeAffinities(tenantId)));
+    }
+    
+    @GetMapping("/browse")
+    @Operation(summary = "Browse products by vendor, type, status and tag with facet counts",
+               description = "Repeat a filter to match any of its values; products must match every filter given. " +
+                             "Returns a page of matching products, newest first, and for each facet its values with " +
+                             "the number of products each would match under the other filters")
+    public ResponseEntity<ApiResponse<EntityDto.ProductBrowseDto>> browseProducts(
+            @RequestParam(required = false) Set<String> vendor,
+            @RequestParam(required = false) Set<String> productType,
+            @RequestParam(required = false) Set<String> status,
+            @RequestParam(required = false) Set<String> tag,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "50") int facetLimit,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
+        
+        Map<Facet, Set<String>> selected = new EnumMap<>(Facet.class);
+        selected.put(Facet.VENDOR, vendor != null ? vendor : Set.of());
+        selected.put(Facet.PRODUCT_TYPE, productType != null ? productType : Set.of());
+        selected.put(Facet.STATUS, status != null
+                ? status.stream().map(s -> s.toUpperCase(Locale.ROOT)).collect(Collectors.toSet()) : Set.of());
+        selected.put(Facet.TAG, tag != null ? tag : Set.of());
+        
+        ProductFacetService.Browse browse = productFacetService.browse(tenantId, selected, PageRequest.of(page, size),
+                Math.max(1, Math.min(facetLimit, MAX_FACET_VALUES)));
+        Page<EntityDto.ProductDto> products = browse.products().map(this::toDto);
+        EntityDto.ProductBrowseDto dto = EntityDto.ProductBrowseDto.builder()
+                .products(products.getContent())
+                .vendors(toDtos(browse.facets().get(Facet.VENDOR)))
+                .productTypes(toDtos(browse.facets().get(Facet.PRODUCT_TYPE)))
+                .statuses(toDtos(browse.facets().get(Facet.STATUS)))
+                .tags(toDtos(browse.facets().get(Facet.TAG)))
+                .build();
+        return ResponseEntity.ok(ApiResponse.<EntityDto.ProductBrowseDto>builder()
+                .success(true)
+                .data(dto)
+                .pagination(ApiResponse.PageInfo.from(products))
+                .build());
+    }
+    
     @GetMapping("/vendors")
     @Operation(summary = "Get list of distinct vendors")
-    public ResponseEntity<ApiResponse<List<String>>> getVendors() {
+    public ResponseEntity<ApiResponse<List<String>>> getVendors(NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
-        List<String> vendors = productRepository.findDistinctVendors(tenantId);
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
+        List<String> vendors = productFacetService.getValues(tenantId, Facet.VENDOR)
+                .orElseGet(() -> productRepository.findDistinctVendors(tenantId));
         return ResponseEntity.ok(ApiResponse.success(vendors));
     }
     
     @GetMapping("/types")
     @Operation(summary = "Get list of distinct product types")
-    public ResponseEntity<ApiResponse<List<String>>> getProductTypes() {
+    public ResponseEntity<ApiResponse<List<String>>> getProductTypes(NativeWebRequest request) {
         Long tenantId = TenantContext.getTenantId();
-        List<String> types = productRepository.findDistinctProductTypes(tenantId);
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
+        List<String> types = productFacetService.getValues(tenantId, Facet.PRODUCT_TYPE)
+                .orElseGet(() -> productRepository.findDistinctProductTypes(tenantId));
         return ResponseEntity.ok(ApiResponse.success(types));
     }
     
     @GetMapping("/low-inventory")
     @Operation(summary = "Get products with low inventory")
     public ResponseEntity<ApiResponse<List<EntityDto.ProductDto>>> getLowInventory(
-            @RequestParam(defaultValue = "10") int threshold
+            @RequestParam(defaultValue = "10") int threshold,
+            NativeWebRequest request
     ) {
         Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS)) {
+            return null;
+        }
         List<Product> products = productRepository.findLowInventory(tenantId, threshold);
         List<EntityDto.ProductDto> dtos = products.stream().map(this::toDto).toList();
         return ResponseEntity.ok(ApiResponse.success(dtos));
     }
     
+    @GetMapping("/stock-out-risk")
+    @Operation(summary = "Get products ranked by stock-out risk",
+               description = "Days of stock remaining at the recent sales rate, from the maintained 7- and 30-day unit sales")
+    public ResponseEntity<ApiResponse<List<EntityDto.StockOutRiskDto>>> getStockOutRisk(
+            @RequestParam(defaultValue = "20") int limit,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS, DataType.ORDERS)) {
+            return null;
+        }
+        return ResponseEntity.ok(ApiResponse.success(productSalesService.getStockOutRisk(tenantId, limit)));
+    }
+    
+    private static List<EntityDto.FacetValueDto> toDtos(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> EntityDto.FacetValueDto.builder().value(entry.getKey()).count(entry.getValue()).build())
+                .toList();
+    }
+    
+    private EntityDto.ProductDto toDto(ProductListRow product) {
+        return EntityDto.ProductDto.builder()
+                .id(product.id())
+                .shopifyProductId(product.shopifyProductId())
+                .title(product.title())
+                .vendor(product.vendor())
+                .productType(product.productType())
+                .price(product.price())
+                .compareAtPrice(product.compareAtPrice())
+                .sku(product.sku())
+                .inventoryQuantity(product.inventoryQuantity())
+                .status(product.status() != null ? product.status().name() : null)
+                .imageUrl(product.imageUrl())
+                .createdAt(product.createdAt())
+                .build();
+    }
+    
     private EntityDto.ProductDto toDto(Product product) {
         return EntityDto.ProductDto.builder()
                 .id(product.getId())
@@ -0,0 +1,76 @@
+package com.xeno.controller;
+
+import com.xeno.dto.ApiResponse;
+import com.xeno.dto.EntityDto;
+import com.xeno.event.TenantDataEvent.DataType;
+import com.xeno.security.TenantContext;
+import com.xeno.service.TenantDataVersions;
+import com.xeno.service.TypeaheadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Controller for search across products and customers.
+ */
+@RestController
+@RequestMapping("/search")
+@RequiredArgsConstructor
+@Tag(name = "Search", description = "Search across products and customers")
+@SecurityRequirement(name = "bearerAuth")
+public class SearchController {
+    
+    private static final int MAX_SUGGESTIONS = 20;
+    
+    private final TypeaheadService typeaheadService;
+    private final TenantDataVersions tenantDataVersions;
+    
+    @GetMapping("/suggest")
+    @Operation(summary = "Get search-as-you-type suggestions",
+               description = "Products, SKUs and vendors starting with the typed text, best selling first, and " +
+                             "customers whose name or email starts with it, highest spend first. " +
+                             "Matches the start of any title or name word, ignoring case and accents. " +
+                             "type narrows the result to products or customers")
+    public ResponseEntity<ApiResponse<EntityDto.SuggestionsDto>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit,
+            @RequestParam(defaultValue = "all") String type,
+            NativeWebRequest request
+    ) {
+        Long tenantId = TenantContext.getTenantId();
+        boolean products = type.equalsIgnoreCase("all") || type.equalsIgnoreCase("products");
+        boolean customers = type.equalsIgnoreCase("all") || type.equalsIgnoreCase("customers");
+        if (!products && !customers) {
+            throw new RuntimeException("Unsupported suggestion type: " + type + "; use all, products or customers");
+        }
+        if (tenantDataVersions.checkNotModified(request, tenantId, DataType.PRODUCTS, DataType.CUSTOMERS, DataType.ORDERS)) {
+            return null;
+        }
+        
+        int size = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        boolean blank = q.isBlank();
+        EntityDto.SuggestionsDto suggestions = EntityDto.SuggestionsDto.builder()
+                .products(products && !blank ? toDtos(typeaheadService.suggestProducts(tenantId, q, size)) : List.of())
+                .customers(customers && !blank ? toDtos(typeaheadService.suggestCustomers(tenantId, q, size)) : List.of())
+                .build();
+        return ResponseEntity.ok(ApiResponse.success(suggestions));
+    }
+    
+    private static List<EntityDto.SuggestionDto> toDtos(List<TypeaheadService.Suggestion> suggestions) {
+        return suggestions.stream()
+                .map(s -> EntityDto.SuggestionDto.builder()
+                        .type(s.kind().name().toLowerCase(Locale.ROOT))
+                        .id(s.id())
+                        .text(s.text())
+                        .detail(s.detail())
+                        .build())
+                .toList();
+    }
+}
@@ -169,6 +169,28 @@ public class WebhookController {
         return ResponseEntity.ok("OK");
     }
     
+    @PostMapping("/events")
+    @Operation(summary = "Handle storefront tracking event (product view, cart, checkout)")
+    public ResponseEntity<String> handleStorefrontEvent(
+            @RequestHeader("X-Shopify-Shop-Domain") String shopDomain,
+            @RequestBody JsonNode payload
+    ) {
+        log.debug("Received storefront event from {}", shopDomain);
+        
+        Optional<Tenant> tenant = tenantRepository.findByShopifyDomain(shopDomain);
+        if (tenant.isEmpty()) {
+            return ResponseEntity.ok("OK");
+        }
+        
+        try {
+            dataIngestionService.saveEvent(tenant.get().getId(), payload);
+        } catch (Exception e) {
+            log.error("Failed to process storefront event: {}", e.getMessage());
+        }
+        
+        return ResponseEntity.ok("OK");
+    }
+    
     /**
      * Verify webhook HMAC signature
      */
@@ -1,6 +1,7 @@
 package com.xeno.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.xeno.repository.Keyset;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,6 +20,7 @@ public class ApiResponse<T> {
     private String message;
     private T data;
     private PageInfo pagination;
+    private CursorInfo cursor;
     private Object errors;
     
     public static <T> ApiResponse<T> success(T data) {
@@ -44,6 +46,14 @@ public class ApiResponse<T> {
                 .build();
     }
     
+    public static <T> ApiResponse<List<T>> success(Keyset.Result<T> result) {
+        return ApiResponse.<List<T>>builder()
+                .success(true)
+                .data(result.content())
+                .cursor(CursorInfo.from(result))
+                .build();
+    }
+    
     public static <T> ApiResponse<T> error(String message) {
         return ApiResponse.<T>builder()
                 .success(false)
@@ -82,4 +92,25 @@ public class ApiResponse<T> {
                     .build();
         }
     }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class CursorInfo {
+        private int size;
+        private String nextCursor;
+        private boolean hasMore;
+        private Long totalElements;
+        
+        public static CursorInfo from(Keyset.Result<?> result) {
+            return CursorInfo.builder()
+                    .size(result.size())
+                    .nextCursor(result.nextCursor())
+                    .hasMore(result.hasMore())
+                    .totalElements(result.totalElements())
+                    .build();
+        }
+    }
 }
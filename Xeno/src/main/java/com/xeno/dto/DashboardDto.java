@@ -6,8 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public class DashboardDto {
     
@@ -68,6 +70,8 @@ public class DashboardDto {
     @NoArgsConstructor
     @AllArgsConstructor
     public static class ProductPerformance {
+        private Long productId;
+        private Long shopifyProductId;
         private String productTitle;
         private Long quantitySold;
         private BigDecimal revenue;
@@ -92,6 +96,137 @@ public class DashboardDto {
         private Long count;
     }
     
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RangeSummary {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Long orderCount;
+        private BigDecimal revenue;
+        private Long itemCount;
+        private BigDecimal averageOrderValue;
+        private Map<String, Long> statusCounts;
+        private String source;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ColumnarStats {
+        private Boolean enabled;
+        private Boolean loaded;
+        private Integer orders;
+        private Long memoryBytes;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CohortRetention {
+        private String cohortMonth;
+        private Long customers;
+        // Index 0 is the month after acquisition
+        private List<Long> retainedCustomers;
+        private List<Double> retentionRates;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UniqueCounts {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Long uniqueCustomers;
+        private Long uniqueSessions;
+        private Map<String, Long> uniqueSessionsByEventType;
+        private List<DailyUniqueCounts> daily;
+        // Relative standard error of each estimate
+        private Double standardError;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DailyUniqueCounts {
+        private LocalDate date;
+        private Long uniqueCustomers;
+        private Long uniqueSessions;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OrderValueDistribution {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Long orderCount;
+        private BigDecimal p50;
+        private BigDecimal p90;
+        private BigDecimal p99;
+        private BigDecimal min;
+        private BigDecimal max;
+        // Maximum error of each value relative to the exact percentile
+        private Double relativeAccuracy;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OrderValueHistogram {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Long orderCount;
+        private List<HistogramBin> bins;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HistogramBin {
+        private BigDecimal lowerBound;
+        private BigDecimal upperBound;
+        private Long orderCount;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AnomalyAlert {
+        private Long id;
+        private String metric;
+        private String direction;
+        private LocalDateTime hourStart;
+        private BigDecimal observed;
+        private BigDecimal expected;
+        private Double zScore;
+        private LocalDateTime createdAt;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OrderDelta {
+        private Long orderId;
+        private Boolean created;
+        private LocalDateTime processedAt;
+        private BigDecimal totalPrice;
+        private String financialStatus;
+        private String previousFinancialStatus;
+        private Long orderCountDelta;
+        private BigDecimal revenueDelta;
+    }
+    
     @Data
     @Builder
     @NoArgsConstructor
@@ -105,4 +240,41 @@ public class DashboardDto {
         private List<OrderStatusBreakdown> orderStatusBreakdown;
         private List<EventStats> eventStats;
     }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FunnelStep {
+        private String step;
+        private Long sessions;
+        private Double conversionFromPrevious;
+        private Double conversionFromStart;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AbandonedCart {
+        private String sessionId;
+        private Long customerId;
+        private String customerEmail;
+        private String lastStep;
+        private List<Long> productIds;
+        private LocalDateTime startedAt;
+        private LocalDateTime lastActivityAt;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FunnelData {
+        private LocalDateTime since;
+        private Integer activeSessions;
+        private Long abandonedCarts;
+        private List<FunnelStep> steps;
+        private List<AbandonedCart> recentAbandonedCarts;
+    }
 }
@@ -1,11 +1,13 @@
 package com.xeno.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -30,9 +32,33 @@ public class EntityDto {
         private BigDecimal totalSpent;
         private Integer ordersCount;
         private Boolean acceptsMarketing;
+        private String rfmScore;
+        private String rfmSegment;
         private LocalDateTime createdAt;
     }
     
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CustomerRankDto {
+        private Long customerId;
+        private Long rank;
+        private Long totalCustomers;
+        private BigDecimal totalSpent;
+        private Double percentile;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CustomerSegmentDto {
+        private String segment;
+        private Long customers;
+        private Double percentage;
+    }
+    
     @Data
     @Builder
     @NoArgsConstructor
@@ -41,6 +67,8 @@ public class EntityDto {
         private Long id;
         private Long shopifyProductId;
         private String title;
+        // Left out of product listings
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         private String description;
         private String vendor;
         private String productType;
@@ -53,6 +81,84 @@ public class EntityDto {
         private LocalDateTime createdAt;
     }
     
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetValueDto {
+        private String value;
+        // Products with this value that match the filters on the other facets
+        private Long count;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductBrowseDto {
+        private List<ProductDto> products;
+        private List<FacetValueDto> vendors;
+        private List<FacetValueDto> productTypes;
+        private List<FacetValueDto> statuses;
+        private List<FacetValueDto> tags;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SuggestionDto {
+        // product, sku, vendor, customer or email
+        private String type;
+        // The product or customer to open; null for a vendor
+        private Long id;
+        private String text;
+        private String detail;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SuggestionsDto {
+        private List<SuggestionDto> products;
+        private List<SuggestionDto> customers;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductAffinityDto {
+        private Long productId;
+        private Long shopifyProductId;
+        private String title;
+        private Integer rank;
+        private Integer coOccurrences;
+        // Share of this product's orders that also contain the related product
+        private Double confidence;
+        // How much more often they are bought together than if orders were independent
+        private Double lift;
+    }
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StockOutRiskDto {
+        private Long productId;
+        private Long shopifyProductId;
+        private String title;
+        private String sku;
+        private Integer inventoryQuantity;
+        private Long unitsLast7Days;
+        private Long unitsLast30Days;
+        // Units per day, the faster of the 7- and 30-day rates
+        private Double dailyVelocity;
+        private Double daysOfStockRemaining;
+        private LocalDate projectedStockOutDate;
+    }
+    
     @Data
     @Builder
     @NoArgsConstructor
@@ -70,6 +176,8 @@ public class EntityDto {
         private String financialStatus;
         private String fulfillmentStatus;
         private Integer itemCount;
+        // Left out of order listings unless requested
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         private List<OrderItemDto> items;
         private LocalDateTime processedAt;
         private LocalDateTime createdAt;
@@ -0,0 +1,60 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Per-tenant, per-day HyperLogLog sketch of one distinct-count metric.
+ * Days are merged at read time, so unique counts for any date range come
+ * from these rows instead of COUNT(DISTINCT) over orders or events.
+ */
+@Entity
+@Table(name = "analytics_sketches", indexes = {
+    @Index(name = "idx_sketch_tenant_metric_date", columnList = "tenantId, metric, dimension, sketchDate", unique = true),
+    @Index(name = "idx_sketch_tenant_date", columnList = "tenantId, sketchDate")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsSketch {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private Metric metric;
+    
+    // Breakdown value such as an event type, or empty for the metric as a whole
+    @Column(nullable = false, length = 50)
+    @Builder.Default
+    private String dimension = "";
+    
+    @Column(nullable = false)
+    private LocalDate sketchDate;
+    
+    // Distinct count estimate for this day alone
+    @Builder.Default
+    private Long estimate = 0L;
+    
+    // HyperLogLog serialized form
+    @Column(nullable = false)
+    private byte[] sketch;
+    
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+    
+    public enum Metric {
+        UNIQUE_CUSTOMERS,
+        UNIQUE_SESSIONS
+    }
+}
@@ -0,0 +1,61 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An hour whose order count or revenue was far from the tenant's usual level for that hour of day.
+ */
+@Entity
+@Table(name = "anomaly_alerts", indexes = {
+    @Index(name = "idx_anomaly_alert_tenant_hour", columnList = "tenantId, hourStart")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyAlert {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Metric metric;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Direction direction;
+    
+    @Column(nullable = false)
+    private LocalDateTime hourStart;
+    
+    @Column(precision = 12, scale = 2)
+    private BigDecimal observed;
+    
+    @Column(precision = 12, scale = 2)
+    private BigDecimal expected;
+    
+    private Double zScore;
+    
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+    
+    public enum Metric {
+        ORDER_COUNT,
+        REVENUE
+    }
+    
+    public enum Direction {
+        DROP,
+        SPIKE
+    }
+}
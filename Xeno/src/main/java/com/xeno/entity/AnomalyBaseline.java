@@ -0,0 +1,46 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Moving mean and variance of one hourly metric at one hour of day for a tenant.
+ * Saved as each hour closes so the anomaly detector resumes after a restart
+ * without reading order history.
+ */
+@Entity
+@Table(name = "anomaly_baselines", indexes = {
+    @Index(name = "idx_anomaly_baseline_slot", columnList = "tenantId, metric, hourOfDay", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyBaseline {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AnomalyAlert.Metric metric;
+    
+    @Column(nullable = false)
+    private Integer hourOfDay;
+    
+    private Double mean;
+    
+    private Double variance;
+    
+    private Long observations;
+    
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
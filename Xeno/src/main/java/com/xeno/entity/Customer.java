@@ -17,7 +17,9 @@ import java.time.LocalDateTime;
     @Index(name = "idx_customer_tenant", columnList = "tenantId"),
     @Index(name = "idx_customer_shopify_id", columnList = "tenantId, shopifyCustomerId", unique = true),
     @Index(name = "idx_customer_email", columnList = "tenantId, email"),
-    @Index(name = "idx_customer_total_spent", columnList = "tenantId, totalSpent DESC")
+    @Index(name = "idx_customer_total_spent_id", columnList = "tenantId, totalSpent, id"),
+    @Index(name = "idx_customer_created_at_id", columnList = "tenantId, createdAt, id"),
+    @Index(name = "idx_customer_rfm_segment", columnList = "tenantId, rfmSegment")
 })
 @Data
 @Builder
@@ -67,6 +69,16 @@ public class Customer {
     
     private String note;
     
+    // Recency, frequency and monetary quintile scores from the last segmentation run, e.g. "545"
+    @Column(length = 3)
+    private String rfmScore;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private RfmSegment rfmSegment;
+    
+    private LocalDateTime rfmScoredAt;
+    
     @CreationTimestamp
     private LocalDateTime createdAt;
     
@@ -77,6 +89,17 @@ public class Customer {
     
     private LocalDateTime shopifyUpdatedAt;
     
+    public enum RfmSegment {
+        CHAMPIONS,
+        LOYAL,
+        NEW,
+        POTENTIAL,
+        AT_RISK,
+        HIBERNATING,
+        LOST,
+        PROSPECT
+    }
+    
     /**
      * Get customer's full name
      */
@@ -0,0 +1,45 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Compressed bitmap of the customer ids that ordered in one calendar month.
+ * Written by the cohort service so retention matrices survive a restart
+ * without rescanning orders.
+ */
+@Entity
+@Table(name = "customer_activity_bitmaps", indexes = {
+    @Index(name = "idx_activity_bitmap_tenant_month", columnList = "tenantId, activityMonth", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerActivityBitmap {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    // First day of the month
+    @Column(nullable = false)
+    private LocalDate activityMonth;
+    
+    @Builder.Default
+    private Long customerCount = 0L;
+    
+    // RoaringBitmap serialized form
+    @Column(nullable = false)
+    private byte[] bitmap;
+    
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
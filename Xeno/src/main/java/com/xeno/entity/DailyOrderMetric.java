@@ -0,0 +1,70 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Per-tenant, per-day order totals.
+ * Maintained incrementally as orders are ingested so dashboard date-range
+ * and trend queries read a handful of rows instead of scanning orders.
+ */
+@Entity
+@Table(name = "daily_order_metrics", indexes = {
+    @Index(name = "idx_daily_metric_tenant_date", columnList = "tenantId, metricDate", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyOrderMetric {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Column(nullable = false)
+    private LocalDate metricDate;
+    
+    @Builder.Default
+    private Long orderCount = 0L;
+    
+    @Builder.Default
+    private BigDecimal grossRevenue = BigDecimal.ZERO;
+    
+    @Builder.Default
+    private BigDecimal totalTax = BigDecimal.ZERO;
+    
+    @Builder.Default
+    private BigDecimal totalDiscounts = BigDecimal.ZERO;
+    
+    @Builder.Default
+    private Long itemCount = 0L;
+    
+    // Order counts per financial status
+    @Builder.Default
+    private Long pendingCount = 0L;
+    
+    @Builder.Default
+    private Long authorizedCount = 0L;
+    
+    @Builder.Default
+    private Long partiallyPaidCount = 0L;
+    
+    @Builder.Default
+    private Long paidCount = 0L;
+    
+    @Builder.Default
+    private Long partiallyRefundedCount = 0L;
+    
+    @Builder.Default
+    private Long refundedCount = 0L;
+    
+    @Builder.Default
+    private Long voidedCount = 0L;
+}
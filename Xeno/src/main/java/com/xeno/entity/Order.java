@@ -19,7 +19,7 @@ import java.util.List;
     @Index(name = "idx_order_tenant", columnList = "tenantId"),
     @Index(name = "idx_order_shopify_id", columnList = "tenantId, shopifyOrderId", unique = true),
     @Index(name = "idx_order_customer", columnList = "tenantId, customerId"),
-    @Index(name = "idx_order_processed_at", columnList = "tenantId, processedAt DESC"),
+    @Index(name = "idx_order_processed_at_id", columnList = "tenantId, processedAt, id"),
     @Index(name = "idx_order_financial_status", columnList = "tenantId, financialStatus")
 })
 @Data
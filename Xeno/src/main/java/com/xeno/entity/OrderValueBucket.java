@@ -0,0 +1,38 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Number of a tenant's orders on one day whose total falls in one bucket of
+ * the order value quantile sketch. Summing the counts per bucket over a date
+ * range gives the merged sketch for that range.
+ */
+@Entity
+@Table(name = "order_value_buckets", indexes = {
+    @Index(name = "idx_order_value_tenant_date_bucket", columnList = "tenantId, bucketDate, bucketIndex", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderValueBucket {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Column(nullable = false)
+    private LocalDate bucketDate;
+    
+    @Column(nullable = false)
+    private Integer bucketIndex;
+    
+    @Builder.Default
+    private Long orderCount = 0L;
+}
@@ -17,7 +17,10 @@ import java.time.LocalDateTime;
     @Index(name = "idx_product_tenant", columnList = "tenantId"),
     @Index(name = "idx_product_shopify_id", columnList = "tenantId, shopifyProductId", unique = true),
     @Index(name = "idx_product_vendor", columnList = "tenantId, vendor"),
-    @Index(name = "idx_product_type", columnList = "tenantId, productType")
+    @Index(name = "idx_product_type", columnList = "tenantId, productType"),
+    @Index(name = "idx_product_inventory", columnList = "tenantId, inventoryQuantity"),
+    @Index(name = "idx_product_created_at_id", columnList = "tenantId, createdAt, id"),
+    @Index(name = "idx_product_title_id", columnList = "tenantId, title, id")
 })
 @Data
 @Builder
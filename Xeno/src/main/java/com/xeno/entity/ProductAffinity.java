@@ -0,0 +1,46 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One of a product's top partners in orders, from the last affinity run.
+ * Confidence is the share of the product's orders that also contain the related
+ * product; lift is that share divided by the related product's share of all orders.
+ */
+@Entity
+@Table(name = "product_affinities", indexes = {
+    @Index(name = "idx_affinity_tenant_product_rank", columnList = "tenantId, shopifyProductId, rank", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductAffinity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Column(nullable = false)
+    private Long shopifyProductId;
+    
+    @Column(nullable = false)
+    private Long relatedShopifyProductId;
+    
+    @Column(nullable = false)
+    private Integer rank;
+    
+    private Integer coOccurrences;
+    
+    private Double confidence;
+    
+    private Double lift;
+    
+    private LocalDateTime computedAt;
+}
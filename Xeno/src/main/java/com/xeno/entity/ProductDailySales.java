@@ -0,0 +1,39 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Units of one product sold by a tenant on one day.
+ * Maintained incrementally as orders are ingested and summed over the last
+ * days to roll product_sales' sales velocity windows forward.
+ */
+@Entity
+@Table(name = "product_daily_sales", indexes = {
+    @Index(name = "idx_product_daily_sales_product_date", columnList = "tenantId, shopifyProductId, saleDate", unique = true),
+    @Index(name = "idx_product_daily_sales_date", columnList = "tenantId, saleDate")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductDailySales {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Column(nullable = false)
+    private Long shopifyProductId;
+    
+    @Column(nullable = false)
+    private LocalDate saleDate;
+    
+    @Builder.Default
+    private Long quantity = 0L;
+}
@@ -0,0 +1,50 @@
+package com.xeno.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Per-tenant, per-product sales totals across all orders.
+ * Keyed by Shopify product id so a product renamed in Shopify keeps a single row,
+ * and maintained incrementally as orders are ingested. The rolling unit counts
+ * cover the days up to today and are re-rolled from product_daily_sales as days age out.
+ */
+@Entity
+@Table(name = "product_sales", indexes = {
+    @Index(name = "idx_product_sales_product", columnList = "tenantId, shopifyProductId", unique = true),
+    @Index(name = "idx_product_sales_revenue", columnList = "tenantId, revenue DESC"),
+    @Index(name = "idx_product_sales_velocity", columnList = "tenantId, unitsLast30Days")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSales {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long tenantId;
+    
+    @Column(nullable = false)
+    private Long shopifyProductId;
+    
+    // Title from the most recent line item, used when the product itself has not been synced
+    private String productTitle;
+    
+    @Builder.Default
+    private Long quantitySold = 0L;
+    
+    @Builder.Default
+    private BigDecimal revenue = BigDecimal.ZERO;
+    
+    @Builder.Default
+    private Long unitsLast7Days = 0L;
+    
+    @Builder.Default
+    private Long unitsLast30Days = 0L;
+}
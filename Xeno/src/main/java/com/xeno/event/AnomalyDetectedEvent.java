@@ -0,0 +1,12 @@
+package com.xeno.event;
+
+import com.xeno.dto.DashboardDto;
+
+/**
+ * Published when the anomaly detector has recorded an alert for a tenant.
+ */
+public record AnomalyDetectedEvent(
+        Long tenantId,
+        DashboardDto.AnomalyAlert alert
+) {
+}
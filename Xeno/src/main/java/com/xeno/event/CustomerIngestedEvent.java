@@ -0,0 +1,21 @@
+package com.xeno.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Published when a customer is created or updated from Shopify.
+ */
+public record CustomerIngestedEvent(
+        Long tenantId,
+        Long customerId,
+        BigDecimal totalSpent,
+        String firstName,
+        String lastName,
+        String email
+) implements TenantDataEvent {
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.CUSTOMERS;
+    }
+}
@@ -0,0 +1,14 @@
+package com.xeno.event;
+
+/**
+ * Published when a segmentation run has rewritten a tenant's customer RFM segments.
+ */
+public record CustomerSegmentsUpdatedEvent(
+        Long tenantId
+) implements TenantDataEvent {
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.CUSTOMERS;
+    }
+}
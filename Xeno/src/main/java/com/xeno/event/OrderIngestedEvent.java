@@ -0,0 +1,22 @@
+package com.xeno.event;
+
+/**
+ * Published when an order is created or updated from Shopify.
+ * {@code previous} is null for a newly created order.
+ */
+public record OrderIngestedEvent(
+        Long tenantId,
+        Long orderId,
+        OrderSnapshot previous,
+        OrderSnapshot current
+) implements TenantDataEvent {
+    
+    public boolean isNew() {
+        return previous == null;
+    }
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.ORDERS;
+    }
+}
@@ -0,0 +1,65 @@
+package com.xeno.event;
+
+import com.xeno.entity.Order;
+import com.xeno.entity.OrderItem;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable copy of the order fields that derived aggregates are built from.
+ * Ingestion captures one before and one after applying a Shopify payload so
+ * listeners can take the old values out and put the new values in.
+ */
+public record OrderSnapshot(
+        Long orderId,
+        Long customerId,
+        LocalDateTime processedAt,
+        BigDecimal totalPrice,
+        BigDecimal totalTax,
+        BigDecimal totalDiscount,
+        int itemCount,
+        Order.FinancialStatus financialStatus,
+        String currency,
+        List<LineSnapshot> lines
+) {
+    
+    /**
+     * Line item values that product-level aggregates are built from
+     */
+    public record LineSnapshot(Long shopifyProductId, String title, int quantity, BigDecimal price) {
+        
+        static LineSnapshot of(OrderItem item) {
+            return new LineSnapshot(
+                    item.getShopifyProductId(),
+                    item.getProductTitle(),
+                    item.getQuantity() != null ? item.getQuantity() : 0,
+                    zeroIfNull(item.getPrice())
+            );
+        }
+        
+        public BigDecimal revenue() {
+            return price.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+    
+    public static OrderSnapshot of(Order order) {
+        return new OrderSnapshot(
+                order.getId(),
+                order.getCustomerId(),
+                order.getProcessedAt(),
+                zeroIfNull(order.getTotalPrice()),
+                zeroIfNull(order.getTotalTax()),
+                zeroIfNull(order.getTotalDiscount()),
+                order.getItemCount() != null ? order.getItemCount() : 0,
+                order.getFinancialStatus() != null ? order.getFinancialStatus() : Order.FinancialStatus.PENDING,
+                order.getCurrency(),
+                order.getItems().stream().map(LineSnapshot::of).toList()
+        );
+    }
+    
+    private static BigDecimal zeroIfNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
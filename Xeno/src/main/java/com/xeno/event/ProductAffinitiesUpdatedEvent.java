@@ -0,0 +1,14 @@
+package com.xeno.event;
+
+/**
+ * Published when an affinity run has rewritten a tenant's frequently-bought-together products.
+ */
+public record ProductAffinitiesUpdatedEvent(
+        Long tenantId
+) implements TenantDataEvent {
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.PRODUCTS;
+    }
+}
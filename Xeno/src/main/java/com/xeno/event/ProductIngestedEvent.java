@@ -0,0 +1,24 @@
+package com.xeno.event;
+
+import com.xeno.entity.Product;
+
+/**
+ * Published when a product is created or updated from Shopify.
+ */
+public record ProductIngestedEvent(
+        Long tenantId,
+        Long productId,
+        Long shopifyProductId,
+        String title,
+        String vendor,
+        String sku,
+        String productType,
+        Product.ProductStatus status,
+        String tags
+) implements TenantDataEvent {
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.PRODUCTS;
+    }
+}
@@ -0,0 +1,14 @@
+package com.xeno.event;
+
+/**
+ * Published when a tenant's rolling product unit sales have been rolled forward to a new day.
+ */
+public record ProductSalesRolledEvent(
+        Long tenantId
+) implements TenantDataEvent {
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.PRODUCTS;
+    }
+}
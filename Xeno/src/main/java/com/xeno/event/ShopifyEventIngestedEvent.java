@@ -0,0 +1,39 @@
+package com.xeno.event;
+
+import com.xeno.entity.ShopifyEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by the ingestion service after a storefront event has been stored.
+ * Listeners receive it once the surrounding transaction has committed.
+ */
+public record ShopifyEventIngestedEvent(
+        Long tenantId,
+        Long eventId,
+        ShopifyEvent.EventType eventType,
+        String sessionId,
+        Long customerId,
+        String customerEmail,
+        Long productId,
+        LocalDateTime occurredAt
+) implements TenantDataEvent {
+    
+    public static ShopifyEventIngestedEvent from(ShopifyEvent event) {
+        return new ShopifyEventIngestedEvent(
+                event.getTenantId(),
+                event.getId(),
+                event.getEventType(),
+                event.getSessionId(),
+                event.getCustomerId(),
+                event.getCustomerEmail(),
+                event.getProductId(),
+                event.getOccurredAt()
+        );
+    }
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return dataType == DataType.EVENTS;
+    }
+}
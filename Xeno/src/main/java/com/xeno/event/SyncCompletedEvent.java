@@ -0,0 +1,14 @@
+package com.xeno.event;
+
+/**
+ * Published when a full Shopify sync for a tenant has finished.
+ */
+public record SyncCompletedEvent(
+        Long tenantId
+) implements TenantDataEvent {
+    
+    @Override
+    public boolean affects(DataType dataType) {
+        return true;
+    }
+}
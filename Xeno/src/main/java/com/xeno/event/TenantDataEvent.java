@@ -0,0 +1,22 @@
+package com.xeno.event;
+
+/**
+ * Common type for events published when ingestion changes a tenant's data.
+ * Read-side caches and in-memory aggregates listen for these after commit.
+ */
+public interface TenantDataEvent {
+    
+    Long tenantId();
+    
+    /**
+     * Whether this change touches the given kind of data
+     */
+    boolean affects(DataType dataType);
+    
+    enum DataType {
+        ORDERS,
+        CUSTOMERS,
+        PRODUCTS,
+        EVENTS
+    }
+}
@@ -0,0 +1,45 @@
+package com.xeno.repository;
+
+import com.xeno.entity.AnalyticsSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AnalyticsSketchRepository extends JpaRepository<AnalyticsSketch, Long> {
+    
+    @Query("SELECT s FROM AnalyticsSketch s WHERE s.tenantId = :tenantId " +
+           "AND s.sketchDate >= :startDate AND s.sketchDate <= :endDate")
+    List<AnalyticsSketch> findInRange(@Param("tenantId") Long tenantId,
+                                      @Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate);
+    
+    Optional<AnalyticsSketch> findByTenantIdAndMetricAndDimensionAndSketchDate(Long tenantId,
+                                                                             AnalyticsSketch.Metric metric,
+                                                                             String dimension,
+                                                                             LocalDate sketchDate);
+    
+    @Query("SELECT MAX(s.updatedAt) FROM AnalyticsSketch s WHERE s.tenantId = :tenantId")
+    Optional<LocalDateTime> findLastUpdatedAt(@Param("tenantId") Long tenantId);
+    
+    boolean existsByTenantId(Long tenantId);
+    
+    /**
+     * Take the tenant's sketch lock for the rest of the transaction, so merges
+     * into a stored sketch from different flushes or a rebuild do not overwrite each other
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(" +
+                   "hashtext('analytics_sketches'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lock(@Param("tenantId") Long tenantId);
+    
+    @Modifying
+    @Query("DELETE FROM AnalyticsSketch s WHERE s.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+}
@@ -0,0 +1,14 @@
+package com.xeno.repository;
+
+import com.xeno.entity.AnomalyAlert;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AnomalyAlertRepository extends JpaRepository<AnomalyAlert, Long> {
+    
+    List<AnomalyAlert> findByTenantIdOrderByHourStartDescIdDesc(Long tenantId, Pageable pageable);
+}
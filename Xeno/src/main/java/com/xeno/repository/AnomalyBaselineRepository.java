@@ -0,0 +1,28 @@
+package com.xeno.repository;
+
+import com.xeno.entity.AnomalyBaseline;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AnomalyBaselineRepository extends JpaRepository<AnomalyBaseline, Long> {
+    
+    /**
+     * Replace one hour-of-day baseline, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO anomaly_baselines (tenant_id, metric, hour_of_day, mean, variance, observations, updated_at) " +
+                   "VALUES (:tenantId, :metric, :hourOfDay, :mean, :variance, :observations, NOW()) " +
+                   "ON CONFLICT (tenant_id, metric, hour_of_day) DO UPDATE SET " +
+                   "mean = EXCLUDED.mean, variance = EXCLUDED.variance, " +
+                   "observations = EXCLUDED.observations, updated_at = NOW()", nativeQuery = true)
+    void upsert(@Param("tenantId") Long tenantId,
+                @Param("metric") String metric,
+                @Param("hourOfDay") int hourOfDay,
+                @Param("mean") double mean,
+                @Param("variance") double variance,
+                @Param("observations") long observations);
+}
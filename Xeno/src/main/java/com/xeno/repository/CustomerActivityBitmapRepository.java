@@ -0,0 +1,37 @@
+package com.xeno.repository;
+
+import com.xeno.entity.CustomerActivityBitmap;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface CustomerActivityBitmapRepository extends JpaRepository<CustomerActivityBitmap, Long> {
+    
+    List<CustomerActivityBitmap> findByTenantId(Long tenantId);
+    
+    boolean existsByTenantId(Long tenantId);
+    
+    /**
+     * Replace one month's bitmap, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO customer_activity_bitmaps (tenant_id, activity_month, customer_count, bitmap, updated_at) " +
+                   "VALUES (:tenantId, :activityMonth, :customerCount, :bitmap, NOW()) " +
+                   "ON CONFLICT (tenant_id, activity_month) DO UPDATE SET " +
+                   "customer_count = EXCLUDED.customer_count, bitmap = EXCLUDED.bitmap, updated_at = NOW()",
+           nativeQuery = true)
+    void upsert(@Param("tenantId") Long tenantId,
+                @Param("activityMonth") LocalDate activityMonth,
+                @Param("customerCount") long customerCount,
+                @Param("bitmap") byte[] bitmap);
+    
+    @Modifying
+    @Query("DELETE FROM CustomerActivityBitmap b WHERE b.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+}
@@ -1,21 +1,50 @@
 package com.xeno.repository;
 
 import com.xeno.entity.Customer;
+import com.xeno.repository.projection.CustomerOverviewTotals;
+import com.xeno.repository.projection.CustomerRfmRow;
+import com.xeno.repository.projection.CustomerSearchRow;
+import com.xeno.repository.projection.CustomerSpend;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     
+    static Specification<Customer> ofTenant(Long tenantId) {
+        return (root, query, cb) -> cb.equal(root.get("tenantId"), tenantId);
+    }
+    
+    static Specification<Customer> inSegment(Customer.RfmSegment segment) {
+        return (root, query, cb) -> cb.equal(root.get("rfmSegment"), segment);
+    }
+    
+    /**
+     * Same match as {@link #searchByTenantId}, for tenants the search index does not hold
+     */
+    static Specification<Customer> matching(String search) {
+        String pattern = "%" + search.toLowerCase() + "%";
+        return (root, query, cb) -> cb.or(cb.like(cb.lower(root.get("firstName")), pattern),
+                                          cb.like(cb.lower(root.get("lastName")), pattern),
+                                          cb.like(cb.lower(root.get("email")), pattern));
+    }
+    
     Page<Customer> findByTenantId(Long tenantId, Pageable pageable);
     
     Optional<Customer> findByTenantIdAndShopifyCustomerId(Long tenantId, Long shopifyCustomerId);
@@ -30,6 +59,23 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query("SELECT c FROM Customer c WHERE c.tenantId = :tenantId ORDER BY c.totalSpent DESC")
     List<Customer> findTopCustomersBySpend(@Param("tenantId") Long tenantId, Pageable pageable);
     
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.CustomerSpend(c.id, c.totalSpent) " +
+           "FROM Customer c WHERE c.tenantId = :tenantId")
+    Stream<CustomerSpend> streamSpendByTenantId(@Param("tenantId") Long tenantId);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.CustomerSearchRow(c.id, c.firstName, c.lastName, c.email, " +
+           "c.totalSpent) " +
+           "FROM Customer c WHERE c.tenantId = :tenantId")
+    Stream<CustomerSearchRow> streamSearchRowsByTenantId(@Param("tenantId") Long tenantId);
+    
+    @Query("SELECT COUNT(c) + 1 FROM Customer c WHERE c.tenantId = :tenantId " +
+           "AND (COALESCE(c.totalSpent, 0) > :totalSpent OR (COALESCE(c.totalSpent, 0) = :totalSpent AND c.id < :customerId))")
+    Long getSpendRank(@Param("tenantId") Long tenantId,
+                      @Param("customerId") Long customerId,
+                      @Param("totalSpent") BigDecimal totalSpent);
+    
     @Query("SELECT c FROM Customer c WHERE c.tenantId = :tenantId " +
            "AND (LOWER(c.firstName) LIKE LOWER(CONCAT('%', :search, '%')) " +
            "OR LOWER(c.lastName) LIKE LOWER(CONCAT('%', :search, '%')) " +
@@ -47,8 +93,39 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query("SELECT COUNT(c) FROM Customer c WHERE c.tenantId = :tenantId AND c.createdAt >= :since")
     Long countNewCustomersSince(@Param("tenantId") Long tenantId, @Param("since") LocalDateTime since);
     
+    @Query("SELECT new com.xeno.repository.projection.CustomerOverviewTotals(COUNT(c), " +
+           "COUNT(c) FILTER (WHERE c.createdAt >= :monthStart), " +
+           "COUNT(c) FILTER (WHERE c.createdAt >= :lastMonthStart AND c.createdAt < :monthStart)) " +
+           "FROM Customer c WHERE c.tenantId = :tenantId")
+    CustomerOverviewTotals getOverviewTotals(@Param("tenantId") Long tenantId,
+                                             @Param("lastMonthStart") LocalDateTime lastMonthStart,
+                                             @Param("monthStart") LocalDateTime monthStart);
+    
     @Query("SELECT COUNT(c) FROM Customer c WHERE c.tenantId = :tenantId AND c.ordersCount > 1")
     Long countReturningCustomers(@Param("tenantId") Long tenantId);
     
     boolean existsByTenantIdAndShopifyCustomerId(Long tenantId, Long shopifyCustomerId);
+    
+    /**
+     * Next chunk of customers after the given id, with the time of each one's latest order
+     */
+    @Query("SELECT new com.xeno.repository.projection.CustomerRfmRow(c.id, c.totalSpent, c.ordersCount, " +
+           "(SELECT MAX(o.processedAt) FROM Order o WHERE o.tenantId = c.tenantId AND o.customerId = c.id)) " +
+           "FROM Customer c WHERE c.tenantId = :tenantId AND c.id > :afterId ORDER BY c.id")
+    List<CustomerRfmRow> findRfmRowsAfter(@Param("tenantId") Long tenantId,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE Customer c SET c.rfmScore = :rfmScore, c.rfmSegment = :rfmSegment, c.rfmScoredAt = :scoredAt " +
+           "WHERE c.tenantId = :tenantId AND c.id IN :ids")
+    int updateRfmSegment(@Param("tenantId") Long tenantId,
+                         @Param("ids") Collection<Long> ids,
+                         @Param("rfmScore") String rfmScore,
+                         @Param("rfmSegment") Customer.RfmSegment rfmSegment,
+                         @Param("scoredAt") LocalDateTime scoredAt);
+    
+    @Query("SELECT c.rfmSegment, COUNT(c) FROM Customer c WHERE c.tenantId = :tenantId " +
+           "AND c.rfmSegment IS NOT NULL GROUP BY c.rfmSegment")
+    List<Object[]> countByRfmSegment(@Param("tenantId") Long tenantId);
 }
@@ -0,0 +1,112 @@
+package com.xeno.repository;
+
+import com.xeno.entity.DailyOrderMetric;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyOrderMetricRepository extends JpaRepository<DailyOrderMetric, Long> {
+    
+    @Query("SELECT m FROM DailyOrderMetric m WHERE m.tenantId = :tenantId " +
+           "AND m.metricDate >= :startDate AND m.metricDate <= :endDate AND m.orderCount > 0 " +
+           "ORDER BY m.metricDate")
+    List<DailyOrderMetric> findActiveDays(@Param("tenantId") Long tenantId,
+                                          @Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate);
+    
+    @Query(value = "SELECT TO_CHAR(m.metric_date, 'YYYY-MM') as month, " +
+                   "SUM(m.order_count) as orderCount, SUM(m.gross_revenue) as revenue " +
+                   "FROM daily_order_metrics m WHERE m.tenant_id = :tenantId " +
+                   "AND m.metric_date >= :startDate " +
+                   "GROUP BY TO_CHAR(m.metric_date, 'YYYY-MM') " +
+                   "HAVING SUM(m.order_count) > 0 " +
+                   "ORDER BY month", nativeQuery = true)
+    List<Object[]> getMonthlyTrends(@Param("tenantId") Long tenantId,
+                                    @Param("startDate") LocalDate startDate);
+    
+    boolean existsByTenantId(Long tenantId);
+    
+    /**
+     * Take the tenant's metrics lock in shared mode for the rest of the transaction.
+     * Incremental updates share it; a rebuild takes it exclusively so no delta lands
+     * between clearing a tenant's rows and recomputing them.
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock_shared(" +
+                   "hashtext('daily_order_metrics'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lockShared(@Param("tenantId") Long tenantId);
+    
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(" +
+                   "hashtext('daily_order_metrics'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lockExclusive(@Param("tenantId") Long tenantId);
+    
+    /**
+     * Add a delta to one day's row, creating it if needed. Counts and amounts are
+     * added to the stored values, so concurrent ingestion for the same day does not lose updates.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_order_metrics (tenant_id, metric_date, order_count, gross_revenue, " +
+                   "total_tax, total_discounts, item_count, pending_count, authorized_count, " +
+                   "partially_paid_count, paid_count, partially_refunded_count, refunded_count, voided_count) " +
+                   "VALUES (:tenantId, :metricDate, :orderCount, :grossRevenue, :totalTax, :totalDiscounts, " +
+                   ":itemCount, :pending, :authorized, :partiallyPaid, :paid, :partiallyRefunded, :refunded, :voided) " +
+                   "ON CONFLICT (tenant_id, metric_date) DO UPDATE SET " +
+                   "order_count = daily_order_metrics.order_count + EXCLUDED.order_count, " +
+                   "gross_revenue = daily_order_metrics.gross_revenue + EXCLUDED.gross_revenue, " +
+                   "total_tax = daily_order_metrics.total_tax + EXCLUDED.total_tax, " +
+                   "total_discounts = daily_order_metrics.total_discounts + EXCLUDED.total_discounts, " +
+                   "item_count = daily_order_metrics.item_count + EXCLUDED.item_count, " +
+                   "pending_count = daily_order_metrics.pending_count + EXCLUDED.pending_count, " +
+                   "authorized_count = daily_order_metrics.authorized_count + EXCLUDED.authorized_count, " +
+                   "partially_paid_count = daily_order_metrics.partially_paid_count + EXCLUDED.partially_paid_count, " +
+                   "paid_count = daily_order_metrics.paid_count + EXCLUDED.paid_count, " +
+                   "partially_refunded_count = daily_order_metrics.partially_refunded_count + EXCLUDED.partially_refunded_count, " +
+                   "refunded_count = daily_order_metrics.refunded_count + EXCLUDED.refunded_count, " +
+                   "voided_count = daily_order_metrics.voided_count + EXCLUDED.voided_count",
+           nativeQuery = true)
+    void applyDelta(@Param("tenantId") Long tenantId,
+                    @Param("metricDate") LocalDate metricDate,
+                    @Param("orderCount") long orderCount,
+                    @Param("grossRevenue") BigDecimal grossRevenue,
+                    @Param("totalTax") BigDecimal totalTax,
+                    @Param("totalDiscounts") BigDecimal totalDiscounts,
+                    @Param("itemCount") long itemCount,
+                    @Param("pending") long pending,
+                    @Param("authorized") long authorized,
+                    @Param("partiallyPaid") long partiallyPaid,
+                    @Param("paid") long paid,
+                    @Param("partiallyRefunded") long partiallyRefunded,
+                    @Param("refunded") long refunded,
+                    @Param("voided") long voided);
+    
+    @Modifying
+    @Query("DELETE FROM DailyOrderMetric m WHERE m.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+    
+    /**
+     * Recompute every day for a tenant from the orders table
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_order_metrics (tenant_id, metric_date, order_count, gross_revenue, " +
+                   "total_tax, total_discounts, item_count, pending_count, authorized_count, " +
+                   "partially_paid_count, paid_count, partially_refunded_count, refunded_count, voided_count) " +
+                   "SELECT o.tenant_id, CAST(o.processed_at AS date), COUNT(*), " +
+                   "COALESCE(SUM(o.total_price), 0), COALESCE(SUM(o.total_tax), 0), " +
+                   "COALESCE(SUM(o.total_discount), 0), COALESCE(SUM(o.item_count), 0), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'PENDING' OR o.financial_status IS NULL), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'AUTHORIZED'), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'PARTIALLY_PAID'), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'PAID'), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'PARTIALLY_REFUNDED'), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'REFUNDED'), " +
+                   "COUNT(*) FILTER (WHERE o.financial_status = 'VOIDED') " +
+                   "FROM orders o WHERE o.tenant_id = :tenantId AND o.processed_at IS NOT NULL " +
+                   "GROUP BY o.tenant_id, CAST(o.processed_at AS date)", nativeQuery = true)
+    int rebuildFromOrders(@Param("tenantId") Long tenantId);
+}
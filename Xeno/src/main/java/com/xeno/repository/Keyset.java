@@ -0,0 +1,224 @@
+package com.xeno.repository;
+
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Keyset (seek) pagination over an indexed sort column with the id as tie-breaker.
+ * Each page continues from the last row of the previous one, which an index on
+ * (tenantId, column, id) answers with a seek rather than by skipping an offset,
+ * so deep pages cost the same as the first and no count query is needed.
+ * <p>
+ * The seek is written as {@code column <= v AND (column < v OR id < lastId)} (or the
+ * ascending mirror) so its first term bounds the index scan. Rows with a null sort
+ * value are paged separately by id, where PostgreSQL orders them by default:
+ * before all values when descending and after them when ascending.
+ * <p>
+ * Continuation tokens are opaque to clients; they carry the sort, direction and
+ * the last row's sort value and id. Running the queries is left to the caller,
+ * see {@link RowQueryRepository}.
+ */
+public final class Keyset {
+    
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    private static final String ID = "id";
+    private static final String SEPARATOR = "|";
+    
+    private Keyset() {
+    }
+    
+    /**
+     * A row that can be paged, identified by its entity's id
+     */
+    public interface Row {
+        Long id();
+    }
+    
+    /**
+     * A column that pages can be sorted by with a cursor, read back from the last row of a page
+     */
+    public record SortKey<R>(String property, Function<String, Comparable<?>> parser,
+                             Function<R, Comparable<?>> extractor, boolean nullable) {
+        
+        public static <R> SortKey<R> dateTime(String property, Function<R, LocalDateTime> extractor, boolean nullable) {
+            return new SortKey<>(property, LocalDateTime::parse, extractor::apply, nullable);
+        }
+        
+        public static <R> SortKey<R> decimal(String property, Function<R, BigDecimal> extractor, boolean nullable) {
+            return new SortKey<>(property, BigDecimal::new, extractor::apply, nullable);
+        }
+        
+        public static <R> SortKey<R> text(String property, Function<R, String> extractor, boolean nullable) {
+            return new SortKey<>(property, value -> value, extractor::apply, nullable);
+        }
+    }
+    
+    /**
+     * What a client asked for: the sort, and the cursor of the previous page if any
+     */
+    public record Request(String sortBy, boolean ascending, String cursor, int size, boolean withTotal) {
+    }
+    
+    /**
+     * Runs one segment of a page: the filter narrowed by {@code position}, in {@code sort} order
+     */
+    @FunctionalInterface
+    public interface Fetcher<T, R> {
+        List<R> fetch(Specification<T> position, Sort sort, int limit);
+    }
+    
+    /**
+     * One page of rows, with the token for the next page when there is one
+     */
+    public record Result<T>(List<T> content, int size, String nextCursor, Long totalElements) {
+        
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+        
+        public <R> Result<R> map(Function<T, R> mapper) {
+            return new Result<>(content.stream().map(mapper).toList(), size, nextCursor, totalElements);
+        }
+    }
+    
+    private enum Group { NULLS, VALUES }
+    
+    private record Cursor(String sortBy, boolean ascending, long id, String value) {
+        
+        String encode() {
+            String raw = sortBy + SEPARATOR + (ascending ? "a" : "d") + SEPARATOR + id
+                    + (value != null ? SEPARATOR + value : "");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\" + SEPARATOR, 4);
+                if (parts.length < 3 || !(parts[1].equals("a") || parts[1].equals("d"))) {
+                    throw new IllegalArgumentException(raw);
+                }
+                return new Cursor(parts[0], parts[1].equals("a"), Long.parseLong(parts[2]), parts.length == 4 ? parts[3] : null);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid cursor");
+            }
+        }
+    }
+    
+    /**
+     * Fetch the page after the request's cursor, or the first page when it has none.
+     * Only the columns in {@code sorts} can be paged by; the cursor must come from a
+     * page with the same sort and direction.
+     */
+    public static <T, R extends Row> Result<R> fetch(Map<String, SortKey<R>> sorts, Request request,
+                                                     Fetcher<T, R> fetcher, LongSupplier counter) {
+        SortKey<R> key = sorts.get(request.sortBy());
+        if (key == null) {
+            throw new RuntimeException("Cannot page by " + request.sortBy() + " with a cursor; sort by one of "
+                    + new TreeSet<>(sorts.keySet()) + " or page by number without a cursor");
+        }
+        boolean ascending = request.ascending();
+        int pageSize = Math.max(1, Math.min(request.size(), MAX_PAGE_SIZE));
+        Cursor after = null;
+        if (request.cursor() != null && !request.cursor().isBlank()) {
+            after = Cursor.decode(request.cursor());
+            if (!after.sortBy().equals(request.sortBy()) || after.ascending() != ascending) {
+                throw new RuntimeException("Cursor was issued for a different sort");
+            }
+        }
+        
+        // A nullable column's null group comes before the values when descending, after them when ascending
+        List<Group> groups = new ArrayList<>(List.of(Group.VALUES));
+        if (key.nullable()) {
+            groups.add(ascending ? 1 : 0, Group.NULLS);
+        }
+        int start = after == null ? 0 : groups.indexOf(after.value() == null ? Group.NULLS : Group.VALUES);
+        if (start < 0) {
+            throw new RuntimeException("Invalid cursor");
+        }
+        
+        List<R> rows = new ArrayList<>(pageSize + 1);
+        for (int i = start; i < groups.size() && rows.size() <= pageSize; i++) {
+            Cursor from = i == start ? after : null;
+            Specification<T> position;
+            Sort sort;
+            if (groups.get(i) == Group.NULLS) {
+                position = nulls(key, ascending, from);
+                sort = idSort(ascending);
+            } else {
+                position = from != null ? seek(key, ascending, from) : notNull(key);
+                sort = valueSort(key, ascending);
+            }
+            rows.addAll(fetcher.fetch(position, sort, pageSize + 1 - rows.size()));
+        }
+        
+        String next = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            R last = rows.get(pageSize - 1);
+            Comparable<?> value = key.extractor().apply(last);
+            next = new Cursor(request.sortBy(), ascending, last.id(), value != null ? value.toString() : null).encode();
+        }
+        Long total = request.withTotal() ? counter.getAsLong() : null;
+        return new Result<>(List.copyOf(rows), pageSize, next, total);
+    }
+    
+    /**
+     * Rows strictly after the cursor in (column, id) order
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Specification<T> seek(SortKey<?> key, boolean ascending, Cursor after) {
+        Comparable value;
+        try {
+            value = key.parser().apply(after.value());
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+        return (root, query, cb) -> {
+            Path<Comparable> column = root.get(key.property());
+            Path<Long> id = root.get(ID);
+            return ascending
+                    ? cb.and(cb.greaterThanOrEqualTo(column, value),
+                             cb.or(cb.greaterThan(column, value), cb.greaterThan(id, after.id())))
+                    : cb.and(cb.lessThanOrEqualTo(column, value),
+                             cb.or(cb.lessThan(column, value), cb.lessThan(id, after.id())));
+        };
+    }
+    
+    private static <T> Specification<T> notNull(SortKey<?> key) {
+        return key.nullable() ? (root, query, cb) -> cb.isNotNull(root.get(key.property())) : Specification.where(null);
+    }
+    
+    private static <T> Specification<T> nulls(SortKey<?> key, boolean ascending, Cursor after) {
+        return (root, query, cb) -> {
+            Path<Long> id = root.get(ID);
+            if (after == null) {
+                return cb.isNull(root.get(key.property()));
+            }
+            return cb.and(cb.isNull(root.get(key.property())),
+                          ascending ? cb.greaterThan(id, after.id()) : cb.lessThan(id, after.id()));
+        };
+    }
+    
+    private static Sort valueSort(SortKey<?> key, boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, key.property()).and(Sort.by(direction, ID));
+    }
+    
+    private static Sort idSort(boolean ascending) {
+        return Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, ID);
+    }
+}
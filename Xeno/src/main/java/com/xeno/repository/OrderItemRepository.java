@@ -1,27 +1,43 @@
 package com.xeno.repository;
 
 import com.xeno.entity.OrderItem;
+import com.xeno.repository.projection.OrderProductRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     
     List<OrderItem> findByOrderId(Long orderId);
     
-    @Query("SELECT oi.productTitle, SUM(oi.quantity) as totalQuantity, SUM(oi.price * oi.quantity) as totalRevenue " +
-           "FROM OrderItem oi JOIN oi.order o WHERE o.tenantId = :tenantId " +
-           "GROUP BY oi.productTitle ORDER BY totalRevenue DESC")
-    List<Object[]> getTopSellingProducts(@Param("tenantId") Long tenantId);
+    /**
+     * Line items of a page of orders in one query, grouped by order
+     */
+    @Query("SELECT oi FROM OrderItem oi WHERE oi.order.id IN :orderIds ORDER BY oi.order.id, oi.id")
+    List<OrderItem> findByOrderIds(@Param("orderIds") Collection<Long> orderIds);
     
     @Query("SELECT oi.productTitle, SUM(oi.quantity) as totalQuantity " +
            "FROM OrderItem oi JOIN oi.order o WHERE o.tenantId = :tenantId " +
            "GROUP BY oi.productTitle ORDER BY totalQuantity DESC")
     List<Object[]> getProductsByQuantitySold(@Param("tenantId") Long tenantId);
     
+    /**
+     * A tenant's line items grouped by order, so each basket arrives as consecutive rows
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.OrderProductRow(o.id, oi.shopifyProductId) " +
+           "FROM OrderItem oi JOIN oi.order o WHERE o.tenantId = :tenantId AND oi.shopifyProductId IS NOT NULL " +
+           "ORDER BY o.id")
+    Stream<OrderProductRow> streamOrderProductsByTenantId(@Param("tenantId") Long tenantId);
+    
     void deleteByOrderId(Long orderId);
 }
@@ -1,10 +1,17 @@
 package com.xeno.repository;
 
 import com.xeno.entity.Order;
+import com.xeno.repository.projection.CustomerActivityRow;
+import com.xeno.repository.projection.OrderColumnRow;
+import com.xeno.repository.projection.OrderOverviewTotals;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,10 +19,20 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     
+    static Specification<Order> ofTenant(Long tenantId) {
+        return (root, query, cb) -> cb.equal(root.get("tenantId"), tenantId);
+    }
+    
+    static Specification<Order> processedBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        return (root, query, cb) -> cb.and(cb.greaterThanOrEqualTo(root.get("processedAt"), startDate),
+                                           cb.lessThan(root.get("processedAt"), endDate));
+    }
+    
     Page<Order> findByTenantId(Long tenantId, Pageable pageable);
     
     Optional<Order> findByTenantIdAndShopifyOrderId(Long tenantId, Long shopifyOrderId);
@@ -56,6 +73,18 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
                                           @Param("startDate") LocalDateTime startDate,
                                           @Param("endDate") LocalDateTime endDate);
     
+    @Query("SELECT new com.xeno.repository.projection.OrderOverviewTotals(" +
+           "COUNT(o), SUM(o.totalPrice), COUNT(o.totalPrice), " +
+           "COUNT(o) FILTER (WHERE o.processedAt >= :monthStart AND o.processedAt < :nextMonthStart), " +
+           "SUM(o.totalPrice) FILTER (WHERE o.processedAt >= :monthStart AND o.processedAt < :nextMonthStart), " +
+           "COUNT(o) FILTER (WHERE o.processedAt >= :lastMonthStart AND o.processedAt < :monthStart), " +
+           "SUM(o.totalPrice) FILTER (WHERE o.processedAt >= :lastMonthStart AND o.processedAt < :monthStart)) " +
+           "FROM Order o WHERE o.tenantId = :tenantId")
+    OrderOverviewTotals getOverviewTotals(@Param("tenantId") Long tenantId,
+                                          @Param("lastMonthStart") LocalDateTime lastMonthStart,
+                                          @Param("monthStart") LocalDateTime monthStart,
+                                          @Param("nextMonthStart") LocalDateTime nextMonthStart);
+    
     @Query("SELECT AVG(o.totalPrice) FROM Order o WHERE o.tenantId = :tenantId")
     BigDecimal getAverageOrderValue(@Param("tenantId") Long tenantId);
     
@@ -63,6 +92,31 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "GROUP BY o.financialStatus")
     List<Object[]> getOrderCountByFinancialStatus(@Param("tenantId") Long tenantId);
     
+    @Query("SELECT o.financialStatus, COUNT(o), SUM(o.totalPrice), SUM(o.itemCount) FROM Order o " +
+           "WHERE o.tenantId = :tenantId AND o.processedAt >= :startDate AND o.processedAt < :endDate " +
+           "GROUP BY o.financialStatus")
+    List<Object[]> getRangeTotalsByFinancialStatus(@Param("tenantId") Long tenantId,
+                                                   @Param("startDate") LocalDateTime startDate,
+                                                   @Param("endDate") LocalDateTime endDate);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.OrderColumnRow(" +
+           "o.id, o.processedAt, o.totalPrice, o.financialStatus, o.customerId, o.itemCount) " +
+           "FROM Order o WHERE o.tenantId = :tenantId")
+    Stream<OrderColumnRow> streamColumnRowsByTenantId(@Param("tenantId") Long tenantId);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.CustomerActivityRow(o.customerId, o.processedAt) " +
+           "FROM Order o WHERE o.tenantId = :tenantId AND o.customerId IS NOT NULL AND o.processedAt IS NOT NULL")
+    Stream<CustomerActivityRow> streamCustomerActivityByTenantId(@Param("tenantId") Long tenantId);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.CustomerActivityRow(o.customerId, o.processedAt) " +
+           "FROM Order o WHERE o.tenantId = :tenantId AND o.customerId IS NOT NULL " +
+           "AND o.processedAt IS NOT NULL AND o.updatedAt >= :since")
+    Stream<CustomerActivityRow> streamCustomerActivitySince(@Param("tenantId") Long tenantId,
+                                                            @Param("since") LocalDateTime since);
+    
     @Query("SELECT o.fulfillmentStatus, COUNT(o) FROM Order o WHERE o.tenantId = :tenantId " +
            "AND o.fulfillmentStatus IS NOT NULL GROUP BY o.fulfillmentStatus")
     List<Object[]> getOrderCountByFulfillmentStatus(@Param("tenantId") Long tenantId);
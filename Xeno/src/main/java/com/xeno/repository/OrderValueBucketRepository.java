@@ -0,0 +1,55 @@
+package com.xeno.repository;
+
+import com.xeno.entity.OrderValueBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface OrderValueBucketRepository extends JpaRepository<OrderValueBucket, Long> {
+    
+    /**
+     * Order counts per sketch bucket summed over a date range, as bucket index and count pairs
+     */
+    @Query("SELECT b.bucketIndex, SUM(b.orderCount) FROM OrderValueBucket b WHERE b.tenantId = :tenantId " +
+           "AND b.bucketDate >= :startDate AND b.bucketDate <= :endDate " +
+           "GROUP BY b.bucketIndex HAVING SUM(b.orderCount) > 0")
+    List<Object[]> sumByBucket(@Param("tenantId") Long tenantId,
+                               @Param("startDate") LocalDate startDate,
+                               @Param("endDate") LocalDate endDate);
+    
+    boolean existsByTenantId(Long tenantId);
+    
+    /**
+     * Take the tenant's order value lock in shared mode for the rest of the transaction
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock_shared(" +
+                   "hashtext('order_value_buckets'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lockShared(@Param("tenantId") Long tenantId);
+    
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(" +
+                   "hashtext('order_value_buckets'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lockExclusive(@Param("tenantId") Long tenantId);
+    
+    /**
+     * Add to one day's count for a bucket, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO order_value_buckets (tenant_id, bucket_date, bucket_index, order_count) " +
+                   "VALUES (:tenantId, :bucketDate, :bucketIndex, :orderCount) " +
+                   "ON CONFLICT (tenant_id, bucket_date, bucket_index) DO UPDATE SET " +
+                   "order_count = order_value_buckets.order_count + EXCLUDED.order_count", nativeQuery = true)
+    void applyDelta(@Param("tenantId") Long tenantId,
+                    @Param("bucketDate") LocalDate bucketDate,
+                    @Param("bucketIndex") int bucketIndex,
+                    @Param("orderCount") long orderCount);
+    
+    @Modifying
+    @Query("DELETE FROM OrderValueBucket b WHERE b.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+}
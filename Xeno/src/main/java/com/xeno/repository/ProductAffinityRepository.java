@@ -0,0 +1,30 @@
+package com.xeno.repository;
+
+import com.xeno.entity.ProductAffinity;
+import com.xeno.repository.projection.ProductAffinityRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductAffinityRepository extends JpaRepository<ProductAffinity, Long> {
+    
+    @Query("SELECT new com.xeno.repository.projection.ProductAffinityRow(" +
+           "p.id, a.relatedShopifyProductId, p.title, a.rank, a.coOccurrences, a.confidence, a.lift) " +
+           "FROM ProductAffinity a LEFT JOIN Product p " +
+           "ON p.tenantId = a.tenantId AND p.shopifyProductId = a.relatedShopifyProductId " +
+           "WHERE a.tenantId = :tenantId AND a.shopifyProductId = :shopifyProductId " +
+           "ORDER BY a.rank")
+    List<ProductAffinityRow> findTopRelated(@Param("tenantId") Long tenantId,
+                                            @Param("shopifyProductId") Long shopifyProductId,
+                                            Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM ProductAffinity a WHERE a.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+}
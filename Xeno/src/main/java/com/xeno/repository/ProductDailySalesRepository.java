@@ -0,0 +1,44 @@
+package com.xeno.repository;
+
+import com.xeno.entity.ProductDailySales;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface ProductDailySalesRepository extends JpaRepository<ProductDailySales, Long> {
+    
+    boolean existsByTenantId(Long tenantId);
+    
+    /**
+     * Add to one product's units for a day, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_daily_sales (tenant_id, shopify_product_id, sale_date, quantity) " +
+                   "VALUES (:tenantId, :shopifyProductId, :saleDate, :quantity) " +
+                   "ON CONFLICT (tenant_id, shopify_product_id, sale_date) DO UPDATE SET " +
+                   "quantity = product_daily_sales.quantity + EXCLUDED.quantity", nativeQuery = true)
+    void applyDelta(@Param("tenantId") Long tenantId,
+                    @Param("shopifyProductId") Long shopifyProductId,
+                    @Param("saleDate") LocalDate saleDate,
+                    @Param("quantity") long quantity);
+    
+    @Modifying
+    @Query("DELETE FROM ProductDailySales d WHERE d.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+    
+    /**
+     * Recompute every product's daily units for a tenant from its order items
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_daily_sales (tenant_id, shopify_product_id, sale_date, quantity) " +
+                   "SELECT o.tenant_id, oi.shopify_product_id, CAST(o.processed_at AS date), COALESCE(SUM(oi.quantity), 0) " +
+                   "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                   "WHERE o.tenant_id = :tenantId AND oi.shopify_product_id IS NOT NULL AND o.processed_at IS NOT NULL " +
+                   "GROUP BY o.tenant_id, oi.shopify_product_id, CAST(o.processed_at AS date)", nativeQuery = true)
+    int rebuildFromOrderItems(@Param("tenantId") Long tenantId);
+}
@@ -1,19 +1,39 @@
 package com.xeno.repository;
 
 import com.xeno.entity.Product;
+import com.xeno.repository.projection.ProductFacetRow;
+import com.xeno.repository.projection.ProductSearchRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     
+    static Specification<Product> ofTenant(Long tenantId) {
+        return (root, query, cb) -> cb.equal(root.get("tenantId"), tenantId);
+    }
+    
+    /**
+     * Same match as {@link #searchByTenantId}, for tenants the search index does not hold
+     */
+    static Specification<Product> matching(String search) {
+        String pattern = "%" + search.toLowerCase() + "%";
+        return (root, query, cb) -> cb.or(cb.like(cb.lower(root.get("title")), pattern),
+                                          cb.like(cb.lower(root.get("vendor")), pattern));
+    }
+    
     Page<Product> findByTenantId(Long tenantId, Pageable pageable);
     
     Optional<Product> findByTenantIdAndShopifyProductId(Long tenantId, Long shopifyProductId);
@@ -30,6 +50,17 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                                     @Param("search") String search, 
                                     Pageable pageable);
     
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.repository.projection.ProductSearchRow(p.id, p.shopifyProductId, p.title, " +
+           "p.vendor, p.sku, ps.quantitySold) FROM Product p LEFT JOIN ProductSales ps " +
+           "ON ps.tenantId = p.tenantId AND ps.shopifyProductId = p.shopifyProductId WHERE p.tenantId = :tenantId")
+    Stream<ProductSearchRow> streamSearchRowsByTenantId(@Param("tenantId") Long tenantId);
+    
+    @Query("SELECT new com.xeno.repository.projection.ProductFacetRow(p.id, p.vendor, p.productType, p.status, p.tags) " +
+           "FROM Product p WHERE p.tenantId = :tenantId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<ProductFacetRow> streamFacetRowsByTenantId(@Param("tenantId") Long tenantId);
+    
     @Query("SELECT p FROM Product p WHERE p.tenantId = :tenantId AND p.status = 'ACTIVE'")
     Page<Product> findActiveByTenantId(@Param("tenantId") Long tenantId, Pageable pageable);
     
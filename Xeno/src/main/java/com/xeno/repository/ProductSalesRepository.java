@@ -0,0 +1,112 @@
+package com.xeno.repository;
+
+import com.xeno.entity.ProductSales;
+import com.xeno.repository.projection.ProductSalesTotals;
+import com.xeno.repository.projection.StockOutRiskRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductSalesRepository extends JpaRepository<ProductSales, Long> {
+    
+    @Query("SELECT new com.xeno.repository.projection.ProductSalesTotals(" +
+           "p.id, ps.shopifyProductId, COALESCE(p.title, ps.productTitle), ps.quantitySold, ps.revenue) " +
+           "FROM ProductSales ps LEFT JOIN Product p " +
+           "ON p.tenantId = ps.tenantId AND p.shopifyProductId = ps.shopifyProductId " +
+           "WHERE ps.tenantId = :tenantId AND ps.quantitySold > 0 " +
+           "ORDER BY ps.revenue DESC, ps.shopifyProductId")
+    List<ProductSalesTotals> findTopByRevenue(@Param("tenantId") Long tenantId, Pageable pageable);
+    
+    boolean existsByTenantId(Long tenantId);
+    
+    @Query("SELECT ps.quantitySold FROM ProductSales ps WHERE ps.tenantId = :tenantId AND ps.shopifyProductId = :shopifyProductId")
+    Optional<Long> findQuantitySold(@Param("tenantId") Long tenantId, @Param("shopifyProductId") Long shopifyProductId);
+    
+    /**
+     * Take the tenant's product sales lock in shared mode for the rest of the transaction
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock_shared(" +
+                   "hashtext('product_sales'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lockShared(@Param("tenantId") Long tenantId);
+    
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(" +
+                   "hashtext('product_sales'), CAST(:tenantId AS int))) l", nativeQuery = true)
+    Long lockExclusive(@Param("tenantId") Long tenantId);
+    
+    /**
+     * Add a delta to one product's totals and rolling unit counts, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_sales (tenant_id, shopify_product_id, product_title, quantity_sold, revenue, " +
+                   "units_last7days, units_last30days) " +
+                   "VALUES (:tenantId, :shopifyProductId, :productTitle, :quantity, :revenue, :unitsLast7Days, :unitsLast30Days) " +
+                   "ON CONFLICT (tenant_id, shopify_product_id) DO UPDATE SET " +
+                   "product_title = COALESCE(EXCLUDED.product_title, product_sales.product_title), " +
+                   "quantity_sold = product_sales.quantity_sold + EXCLUDED.quantity_sold, " +
+                   "revenue = product_sales.revenue + EXCLUDED.revenue, " +
+                   "units_last7days = COALESCE(product_sales.units_last7days, 0) + EXCLUDED.units_last7days, " +
+                   "units_last30days = COALESCE(product_sales.units_last30days, 0) + EXCLUDED.units_last30days",
+           nativeQuery = true)
+    void applyDelta(@Param("tenantId") Long tenantId,
+                    @Param("shopifyProductId") Long shopifyProductId,
+                    @Param("productTitle") String productTitle,
+                    @Param("quantity") long quantity,
+                    @Param("revenue") BigDecimal revenue,
+                    @Param("unitsLast7Days") long unitsLast7Days,
+                    @Param("unitsLast30Days") long unitsLast30Days);
+    
+    /**
+     * Recompute every product's rolling unit counts from its daily units up to {@code today},
+     * touching only rows whose counts change
+     */
+    @Modifying
+    @Query(value = "UPDATE product_sales ps SET units_last7days = w.units7, units_last30days = w.units30 " +
+                   "FROM (SELECT s.id, " +
+                   "COALESCE(SUM(d.quantity) FILTER (WHERE d.sale_date > CAST(:today AS date) - 7), 0) AS units7, " +
+                   "COALESCE(SUM(d.quantity), 0) AS units30 " +
+                   "FROM product_sales s LEFT JOIN product_daily_sales d " +
+                   "ON d.tenant_id = s.tenant_id AND d.shopify_product_id = s.shopify_product_id " +
+                   "AND d.sale_date > CAST(:today AS date) - 30 AND d.sale_date <= :today " +
+                   "WHERE s.tenant_id = :tenantId GROUP BY s.id) w " +
+                   "WHERE ps.id = w.id AND (ps.units_last7days IS DISTINCT FROM w.units7 " +
+                   "OR ps.units_last30days IS DISTINCT FROM w.units30)", nativeQuery = true)
+    int rollWindows(@Param("tenantId") Long tenantId, @Param("today") LocalDate today);
+    
+    /**
+     * Synced products that sold in the last 30 days, fewest days of stock first.
+     * Days of stock divide inventory by the faster of the 7- and 30-day daily sales rates.
+     */
+    @Query("SELECT new com.xeno.repository.projection.StockOutRiskRow(" +
+           "p.id, p.shopifyProductId, p.title, p.sku, p.inventoryQuantity, ps.unitsLast7Days, ps.unitsLast30Days) " +
+           "FROM ProductSales ps JOIN Product p " +
+           "ON p.tenantId = ps.tenantId AND p.shopifyProductId = ps.shopifyProductId " +
+           "WHERE ps.tenantId = :tenantId AND ps.unitsLast30Days > 0 " +
+           "ORDER BY COALESCE(p.inventoryQuantity, 0) / GREATEST(COALESCE(ps.unitsLast7Days, 0) / 7.0, ps.unitsLast30Days / 30.0), p.id")
+    List<StockOutRiskRow> findStockOutRisk(@Param("tenantId") Long tenantId, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM ProductSales ps WHERE ps.tenantId = :tenantId")
+    int deleteByTenantId(@Param("tenantId") Long tenantId);
+    
+    /**
+     * Recompute every product's totals for a tenant from its order items
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_sales (tenant_id, shopify_product_id, product_title, quantity_sold, revenue) " +
+                   "SELECT o.tenant_id, oi.shopify_product_id, " +
+                   "(ARRAY_AGG(oi.product_title ORDER BY o.processed_at DESC NULLS LAST, oi.id DESC))[1], " +
+                   "COALESCE(SUM(oi.quantity), 0), COALESCE(SUM(oi.price * oi.quantity), 0) " +
+                   "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                   "WHERE o.tenant_id = :tenantId AND oi.shopify_product_id IS NOT NULL " +
+                   "GROUP BY o.tenant_id, oi.shopify_product_id", nativeQuery = true)
+    int rebuildFromOrderItems(@Param("tenantId") Long tenantId);
+}
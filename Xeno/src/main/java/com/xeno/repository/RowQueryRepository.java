@@ -0,0 +1,159 @@
+package com.xeno.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Read-only listings selected straight into record projections.
+ * A row record's components name the entity attributes it selects, in constructor
+ * order, so only those columns are read and each row is built with one constructor
+ * call: no entity is hydrated, enters the persistence context or is snapshotted
+ * for dirty checking. Filters are the entity's {@link Specification}s.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RowQueryRepository {
+    
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final String ID = "id";
+    
+    private final EntityManager entityManager;
+    
+    private final Map<Class<?>, String[]> columns = new ConcurrentHashMap<>();
+    
+    /**
+     * One offset page of rows, with its total count
+     */
+    public <T, R> Page<R> findPage(Class<T> entityType, Class<R> rowType, Specification<T> filter, Pageable pageable) {
+        List<R> content = select(entityType, rowType, filter, pageable.getSort(),
+                (int) pageable.getOffset(), pageable.getPageSize());
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(entityType, filter));
+    }
+    
+    /**
+     * The page of rows after a cursor, see {@link Keyset}
+     */
+    public <T, R extends Keyset.Row> Keyset.Result<R> findKeyset(Class<T> entityType, Class<R> rowType, Specification<T> filter,
+                                                                 Map<String, Keyset.SortKey<R>> sorts, Keyset.Request request) {
+        return Keyset.fetch(sorts, request,
+                (Specification<T> position, Sort sort, int limit) ->
+                        select(entityType, rowType, Specification.where(filter).and(position), sort, 0, limit),
+                () -> count(entityType, filter));
+    }
+    
+    /**
+     * One offset page of rows in the order of {@code rankedIds}, such as search results,
+     * keeping only the ids that still match {@code filter}. The total is the number kept.
+     */
+    public <T, R extends Keyset.Row> Page<R> findRanked(Class<T> entityType, Class<R> rowType, Specification<T> filter,
+                                                        List<Long> rankedIds, Pageable pageable) {
+        if (rankedIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        Set<Long> matching = new HashSet<>(ids(entityType, Specification.where(filter).and(withIds(rankedIds))));
+        List<Long> ranked = rankedIds.stream().filter(matching::contains).toList();
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        List<Long> pageIds = ranked.subList(from, Math.min(from + pageable.getPageSize(), ranked.size()));
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, ranked.size());
+        }
+        
+        Map<Long, R> rows = select(entityType, rowType, withIds(pageIds), Sort.unsorted(), 0, pageIds.size()).stream()
+                .collect(Collectors.toMap(Keyset.Row::id, row -> row));
+        List<R> content = pageIds.stream().map(rows::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, ranked.size());
+    }
+    
+    /**
+     * All matching rows from a server-side cursor, fetched {@value #STREAM_FETCH_SIZE} at a time.
+     * Must be consumed and closed within a transaction.
+     */
+    public <T, R> Stream<R> stream(Class<T> entityType, Class<R> rowType, Specification<T> filter, Sort sort) {
+        return query(entityType, rowType, filter, sort)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream();
+    }
+    
+    private <T, R> List<R> select(Class<T> entityType, Class<R> rowType, Specification<T> filter,
+                                  Sort sort, int offset, int limit) {
+        return query(entityType, rowType, filter, sort)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
+    private <T, R> TypedQuery<R> query(Class<T> entityType, Class<R> rowType, Specification<T> filter, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<R> query = cb.createQuery(rowType);
+        Root<T> root = query.from(entityType);
+        Selection<?>[] selections = Arrays.stream(columnsOf(rowType)).map(root::get).toArray(Selection[]::new);
+        query.select(cb.construct(rowType, selections));
+        Predicate predicate = filter != null ? filter.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query);
+    }
+    
+    private <T> List<Long> ids(Class<T> entityType, Specification<T> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        query.select(root.get(ID));
+        query.where(filter.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getResultList();
+    }
+    
+    private static <T> Specification<T> withIds(Collection<Long> ids) {
+        return (root, query, cb) -> root.get(ID).in(ids);
+    }
+    
+    private <T> long count(Class<T> entityType, Specification<T> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        query.select(cb.count(root));
+        Predicate predicate = filter != null ? filter.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+    
+    private String[] columnsOf(Class<?> rowType) {
+        return columns.computeIfAbsent(rowType, type -> {
+            if (!type.isRecord()) {
+                throw new IllegalArgumentException(type.getName() + " is not a record");
+            }
+            return Arrays.stream(type.getRecordComponents()).map(RecordComponent::getName).toArray(String[]::new);
+        });
+    }
+}
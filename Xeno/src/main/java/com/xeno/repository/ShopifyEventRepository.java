@@ -1,15 +1,21 @@
 package com.xeno.repository;
 
 import com.xeno.entity.ShopifyEvent;
+import com.xeno.event.ShopifyEventIngestedEvent;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ShopifyEventRepository extends JpaRepository<ShopifyEvent, Long> {
@@ -50,4 +56,26 @@ public interface ShopifyEventRepository extends JpaRepository<ShopifyEvent, Long
                                   @Param("eventType") ShopifyEvent.EventType eventType,
                                   @Param("startDate") LocalDateTime startDate,
                                   @Param("endDate") LocalDateTime endDate);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.xeno.event.ShopifyEventIngestedEvent(e.tenantId, e.id, e.eventType, e.sessionId, " +
+           "e.customerId, e.customerEmail, e.productId, e.occurredAt) FROM ShopifyEvent e " +
+           "WHERE e.tenantId = :tenantId AND e.eventType IN :eventTypes AND e.occurredAt >= :since " +
+           "ORDER BY e.occurredAt")
+    Stream<ShopifyEventIngestedEvent> streamEventsSince(@Param("tenantId") Long tenantId,
+                                                         @Param("eventTypes") Collection<ShopifyEvent.EventType> eventTypes,
+                                                         @Param("since") LocalDateTime since);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.event.ShopifyEventIngestedEvent(e.tenantId, e.id, e.eventType, e.sessionId, " +
+           "e.customerId, e.customerEmail, e.productId, e.occurredAt) FROM ShopifyEvent e " +
+           "WHERE e.tenantId = :tenantId")
+    Stream<ShopifyEventIngestedEvent> streamAllByTenantId(@Param("tenantId") Long tenantId);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.xeno.event.ShopifyEventIngestedEvent(e.tenantId, e.id, e.eventType, e.sessionId, " +
+           "e.customerId, e.customerEmail, e.productId, e.occurredAt) FROM ShopifyEvent e " +
+           "WHERE e.tenantId = :tenantId AND e.createdAt >= :since")
+    Stream<ShopifyEventIngestedEvent> streamCreatedSince(@Param("tenantId") Long tenantId,
+                                                          @Param("since") LocalDateTime since);
 }
@@ -0,0 +1,9 @@
+package com.xeno.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * The customer and time of an order, as read when building cohort bitmaps.
+ */
+public record CustomerActivityRow(Long customerId, LocalDateTime processedAt) {
+}
@@ -0,0 +1,43 @@
+package com.xeno.repository.projection;
+
+import com.xeno.entity.Customer;
+import com.xeno.repository.Keyset;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The customer fields shown in customer listings.
+ */
+public record CustomerListRow(
+        Long id,
+        Long shopifyCustomerId,
+        String email,
+        String firstName,
+        String lastName,
+        String phone,
+        String address,
+        String city,
+        String state,
+        String country,
+        BigDecimal totalSpent,
+        Integer ordersCount,
+        Boolean acceptsMarketing,
+        String rfmScore,
+        Customer.RfmSegment rfmSegment,
+        LocalDateTime createdAt
+) implements Keyset.Row {
+    
+    /**
+     * Same as {@link Customer#getFullName()}
+     */
+    public String fullName() {
+        StringBuilder name = new StringBuilder();
+        if (firstName != null) name.append(firstName);
+        if (lastName != null) {
+            if (name.length() > 0) name.append(" ");
+            name.append(lastName);
+        }
+        return name.length() > 0 ? name.toString() : email;
+    }
+}
@@ -0,0 +1,11 @@
+package com.xeno.repository.projection;
+
+/**
+ * Customer counts for the overview widget, computed in a single scan.
+ */
+public record CustomerOverviewTotals(
+        Long totalCustomers,
+        Long newThisMonth,
+        Long newLastMonth
+) {
+}
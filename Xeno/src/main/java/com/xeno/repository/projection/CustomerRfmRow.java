@@ -0,0 +1,15 @@
+package com.xeno.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The customer values that recency, frequency and monetary scores are computed from.
+ */
+public record CustomerRfmRow(
+        Long id,
+        BigDecimal totalSpent,
+        Integer ordersCount,
+        LocalDateTime lastOrderAt
+) {
+}
@@ -0,0 +1,16 @@
+package com.xeno.repository.projection;
+
+
+import java.math.BigDecimal;
+
+/**
+ * The customer fields held in the in-memory search indexes.
+ */
+public record CustomerSearchRow(
+        Long id,
+        String firstName,
+        String lastName,
+        String email,
+        BigDecimal totalSpent
+) {
+}
@@ -0,0 +1,12 @@
+package com.xeno.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * A customer's id and lifetime spend, used to load the spend leaderboard.
+ */
+public record CustomerSpend(
+        Long id,
+        BigDecimal totalSpent
+) {
+}
@@ -0,0 +1,19 @@
+package com.xeno.repository.projection;
+
+import com.xeno.entity.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The order fields held by the columnar analytics store.
+ */
+public record OrderColumnRow(
+        Long id,
+        LocalDateTime processedAt,
+        BigDecimal totalPrice,
+        Order.FinancialStatus financialStatus,
+        Long customerId,
+        Integer itemCount
+) {
+}
@@ -0,0 +1,39 @@
+package com.xeno.repository.projection;
+
+import com.xeno.entity.Order;
+import com.xeno.repository.Keyset;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The order fields shown in order listings.
+ */
+public record OrderListRow(
+        Long id,
+        Long shopifyOrderId,
+        String orderNumber,
+        Long customerId,
+        String customerEmail,
+        BigDecimal totalPrice,
+        BigDecimal subtotalPrice,
+        BigDecimal totalTax,
+        BigDecimal totalDiscount,
+        String currency,
+        Order.FinancialStatus financialStatus,
+        Order.FulfillmentStatus fulfillmentStatus,
+        Integer itemCount,
+        LocalDateTime processedAt,
+        LocalDateTime createdAt
+) implements Keyset.Row {
+    
+    /**
+     * The same fields read from a loaded order
+     */
+    public static OrderListRow of(Order order) {
+        return new OrderListRow(order.getId(), order.getShopifyOrderId(), order.getOrderNumber(),
+                order.getCustomerId(), order.getCustomerEmail(), order.getTotalPrice(), order.getSubtotalPrice(),
+                order.getTotalTax(), order.getTotalDiscount(), order.getCurrency(), order.getFinancialStatus(),
+                order.getFulfillmentStatus(), order.getItemCount(), order.getProcessedAt(), order.getCreatedAt());
+    }
+}
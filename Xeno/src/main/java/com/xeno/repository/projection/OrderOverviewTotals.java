@@ -0,0 +1,24 @@
+package com.xeno.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * All-time, this-month and last-month order totals for a tenant, computed in a single scan.
+ * Sums are null when no order matched, so they are normalised to zero here.
+ */
+public record OrderOverviewTotals(
+        Long totalOrders,
+        BigDecimal totalRevenue,
+        Long pricedOrders,
+        Long ordersThisMonth,
+        BigDecimal revenueThisMonth,
+        Long ordersLastMonth,
+        BigDecimal revenueLastMonth
+) {
+    
+    public OrderOverviewTotals {
+        if (totalRevenue == null) totalRevenue = BigDecimal.ZERO;
+        if (revenueThisMonth == null) revenueThisMonth = BigDecimal.ZERO;
+        if (revenueLastMonth == null) revenueLastMonth = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,7 @@
+package com.xeno.repository.projection;
+
+/**
+ * One product in one order, as read when building product affinities.
+ */
+public record OrderProductRow(Long orderId, Long shopifyProductId) {
+}
@@ -0,0 +1,15 @@
+package com.xeno.repository.projection;
+
+/**
+ * A product bought together with another, with the title taken from the synced product when present.
+ */
+public record ProductAffinityRow(
+        Long productId,
+        Long shopifyProductId,
+        String productTitle,
+        Integer rank,
+        Integer coOccurrences,
+        Double confidence,
+        Double lift
+) {
+}
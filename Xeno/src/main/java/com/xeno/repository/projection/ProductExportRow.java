@@ -0,0 +1,30 @@
+package com.xeno.repository.projection;
+
+import com.xeno.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The product fields written to product exports.
+ */
+public record ProductExportRow(
+        Long id,
+        Long shopifyProductId,
+        Long shopifyVariantId,
+        String title,
+        String description,
+        String vendor,
+        String productType,
+        String handle,
+        BigDecimal price,
+        BigDecimal compareAtPrice,
+        String sku,
+        Integer inventoryQuantity,
+        Product.ProductStatus status,
+        String imageUrl,
+        String tags,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+}
@@ -0,0 +1,15 @@
+package com.xeno.repository.projection;
+
+import com.xeno.entity.Product;
+
+/**
+ * The product fields held in the in-memory facet index. Tags are Shopify's comma-separated list.
+ */
+public record ProductFacetRow(
+        Long id,
+        String vendor,
+        String productType,
+        Product.ProductStatus status,
+        String tags
+) {
+}
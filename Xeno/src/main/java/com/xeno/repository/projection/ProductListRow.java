@@ -0,0 +1,26 @@
+package com.xeno.repository.projection;
+
+import com.xeno.entity.Product;
+import com.xeno.repository.Keyset;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The product fields shown in product listings, without the description.
+ */
+public record ProductListRow(
+        Long id,
+        Long shopifyProductId,
+        String title,
+        String vendor,
+        String productType,
+        BigDecimal price,
+        BigDecimal compareAtPrice,
+        String sku,
+        Integer inventoryQuantity,
+        Product.ProductStatus status,
+        String imageUrl,
+        LocalDateTime createdAt
+) implements Keyset.Row {
+}
@@ -0,0 +1,15 @@
+package com.xeno.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Sales totals for one product, with the title taken from the synced product when present.
+ */
+public record ProductSalesTotals(
+        Long productId,
+        Long shopifyProductId,
+        String productTitle,
+        Long quantitySold,
+        BigDecimal revenue
+) {
+}
@@ -0,0 +1,14 @@
+package com.xeno.repository.projection;
+
+/**
+ * The product fields held in the in-memory search indexes, with lifetime units sold.
+ */
+public record ProductSearchRow(
+        Long id,
+        Long shopifyProductId,
+        String title,
+        String vendor,
+        String sku,
+        Long unitsSold
+) {
+}
@@ -0,0 +1,15 @@
+package com.xeno.repository.projection;
+
+/**
+ * A synced product's inventory next to its rolling unit sales.
+ */
+public record StockOutRiskRow(
+        Long productId,
+        Long shopifyProductId,
+        String title,
+        String sku,
+        Integer inventoryQuantity,
+        Long unitsLast7Days,
+        Long unitsLast30Days
+) {
+}
@@ -0,0 +1,40 @@
+package com.xeno.scheduler;
+
+import com.xeno.entity.Tenant;
+import com.xeno.repository.TenantRepository;
+import com.xeno.service.CustomerSegmentationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job that recomputes RFM segments for every active tenant.
+ * Runs nightly by default, one tenant at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "rfm.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerSegmentationJob {
+    
+    private final TenantRepository tenantRepository;
+    private final CustomerSegmentationService customerSegmentationService;
+    
+    @Scheduled(cron = "${rfm.cron:0 30 2 * * *}")
+    public void segmentAllTenants() {
+        log.info("Starting RFM segmentation for all tenants");
+        
+        int customers = 0;
+        for (Tenant tenant : tenantRepository.findByActiveTrue()) {
+            try {
+                customers += customerSegmentationService.segmentTenant(tenant.getId());
+            } catch (Exception e) {
+                log.error("Failed to segment customers for tenant {}: {}", tenant.getId(), e.getMessage());
+            }
+        }
+        
+        log.info("RFM segmentation completed for {} customers", customers);
+    }
+}
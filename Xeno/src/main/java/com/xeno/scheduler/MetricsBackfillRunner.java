@@ -0,0 +1,87 @@
+package com.xeno.scheduler;
+
+import com.xeno.entity.Tenant;
+import com.xeno.repository.TenantRepository;
+import com.xeno.service.CustomerCohortService;
+import com.xeno.service.DailyOrderMetricsService;
+import com.xeno.service.OrderValueDistributionService;
+import com.xeno.service.ProductSalesService;
+import com.xeno.service.UniqueCountService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Backfills the order metric rollups at startup.
+ * Tenants with orders but no rollup rows are rebuilt automatically; pass
+ * {@code --rebuild-daily-metrics}, {@code --rebuild-product-sales},
+ * {@code --rebuild-customer-cohorts}, {@code --rebuild-unique-counts} or
+ * {@code --rebuild-order-values} to rebuild that rollup for every tenant from scratch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MetricsBackfillRunner implements ApplicationRunner {
+    
+    private final TenantRepository tenantRepository;
+    private final DailyOrderMetricsService dailyOrderMetricsService;
+    private final ProductSalesService productSalesService;
+    private final CustomerCohortService customerCohortService;
+    private final UniqueCountService uniqueCountService;
+    private final OrderValueDistributionService orderValueDistributionService;
+    
+    @Value("${metrics.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+    
+    private record Rollup(String name, String rebuildOption, LongPredicate needsBackfill, LongToIntFunction rebuild) {
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Rollup> rollups = List.of(
+                new Rollup("daily order metrics", "rebuild-daily-metrics",
+                        dailyOrderMetricsService::needsBackfill, dailyOrderMetricsService::rebuild),
+                new Rollup("product sales", "rebuild-product-sales",
+                        productSalesService::needsBackfill, productSalesService::rebuild),
+                new Rollup("customer cohorts", "rebuild-customer-cohorts",
+                        customerCohortService::needsBackfill, customerCohortService::rebuild),
+                new Rollup("unique count sketches", "rebuild-unique-counts",
+                        uniqueCountService::needsBackfill, uniqueCountService::rebuild),
+                new Rollup("order value buckets", "rebuild-order-values",
+                        orderValueDistributionService::needsBackfill, orderValueDistributionService::rebuild)
+        );
+        
+        List<Tenant> tenants = tenantRepository.findAll();
+        for (Rollup rollup : rollups) {
+            boolean rebuildAll = args.containsOption(rollup.rebuildOption());
+            if (rebuildAll || backfillOnStartup) {
+                backfill(rollup, tenants, rebuildAll);
+            }
+        }
+    }
+    
+    private void backfill(Rollup rollup, List<Tenant> tenants, boolean rebuildAll) {
+        int rebuilt = 0;
+        for (Tenant tenant : tenants) {
+            try {
+                if (rebuildAll || rollup.needsBackfill().test(tenant.getId())) {
+                    rollup.rebuild().applyAsInt(tenant.getId());
+                    rebuilt++;
+                }
+            } catch (Exception e) {
+                log.error("Failed to rebuild {} for tenant {}: {}", rollup.name(), tenant.getId(), e.getMessage());
+            }
+        }
+        
+        if (rebuilt > 0) {
+            log.info("Rebuilt {} for {} tenants", rollup.name(), rebuilt);
+        }
+    }
+}
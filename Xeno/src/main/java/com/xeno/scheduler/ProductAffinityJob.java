@@ -0,0 +1,40 @@
+package com.xeno.scheduler;
+
+import com.xeno.entity.Tenant;
+import com.xeno.repository.TenantRepository;
+import com.xeno.service.ProductAffinityService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job that recomputes frequently-bought-together products for every active tenant.
+ * Runs nightly by default, one tenant at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "affinity.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductAffinityJob {
+    
+    private final TenantRepository tenantRepository;
+    private final ProductAffinityService productAffinityService;
+    
+    @Scheduled(cron = "${affinity.cron:0 0 3 * * *}")
+    public void computeAllTenants() {
+        log.info("Starting product affinity analysis for all tenants");
+        
+        int affinities = 0;
+        for (Tenant tenant : tenantRepository.findByActiveTrue()) {
+            try {
+                affinities += productAffinityService.computeAffinities(tenant.getId());
+            } catch (Exception e) {
+                log.error("Failed to compute product affinities for tenant {}: {}", tenant.getId(), e.getMessage());
+            }
+        }
+        
+        log.info("Product affinity analysis completed with {} affinities", affinities);
+    }
+}
@@ -0,0 +1,43 @@
+package com.xeno.scheduler;
+
+import com.xeno.entity.Tenant;
+import com.xeno.event.ProductSalesRolledEvent;
+import com.xeno.repository.TenantRepository;
+import com.xeno.service.ProductSalesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rolls every tenant's 7- and 30-day product unit sales forward once a day,
+ * dropping the day that left each window. Also runs at startup in case the
+ * application was down over midnight.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSalesRollJob {
+    
+    private final TenantRepository tenantRepository;
+    private final ProductSalesService productSalesService;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${inventory.velocity-roll-cron:0 5 0 * * *}")
+    public void rollAllTenants() {
+        int products = 0;
+        for (Tenant tenant : tenantRepository.findAll()) {
+            try {
+                products += productSalesService.rollWindows(tenant.getId());
+                eventPublisher.publishEvent(new ProductSalesRolledEvent(tenant.getId()));
+            } catch (Exception e) {
+                log.error("Failed to roll product sales windows for tenant {}: {}", tenant.getId(), e.getMessage());
+            }
+        }
+        log.info("Rolled product sales windows, {} products changed", products);
+    }
+}
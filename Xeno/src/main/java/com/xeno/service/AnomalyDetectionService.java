@@ -0,0 +1,312 @@
+package com.xeno.service;
+
+import com.xeno.analytics.EwmaStats;
+import com.xeno.analytics.Money;
+import com.xeno.dto.DashboardDto;
+import com.xeno.entity.AnomalyAlert;
+import com.xeno.entity.AnomalyBaseline;
+import com.xeno.event.AnomalyDetectedEvent;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.repository.AnomalyAlertRepository;
+import com.xeno.repository.AnomalyBaselineRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hourly order count and revenue anomaly detection.
+ * Each tenant keeps an exponentially weighted mean and variance of both metrics
+ * for every hour of day, so quiet nights are compared with other nights rather
+ * than with the afternoon peak. Newly created orders are counted into their hour
+ * as they commit. An hour stays open for a close lag after it ends, so orders that
+ * the polling sync picks up late still count; it is then scored against its baseline,
+ * alerted on when it lies more than the threshold number of standard deviations
+ * away and by at least a minimum number of orders, and folded into the baseline.
+ * Hours with no orders are scored as zero,
+ * so an outage shows up as a drop. The baselines are saved as each hour closes
+ * and read back at startup; order history is never scanned.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnomalyDetectionService {
+    
+    private static final int HOURS_PER_DAY = 24;
+    private static final int MAX_ALERTS = 200;
+    private static final double ORDER_VALUE_ALPHA = 0.01;
+    private static final long MIN_ORDER_VALUES = 30;
+    
+    private final AnomalyAlertRepository alertRepository;
+    private final AnomalyBaselineRepository baselineRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    private final Map<Long, TenantMonitor> monitors = new ConcurrentHashMap<>();
+    
+    // Weight of each new day in an hour-of-day baseline
+    @Value("${anomaly.alpha:0.1}")
+    private double alpha;
+    
+    @Value("${anomaly.z-threshold:4.0}")
+    private double zThreshold;
+    
+    // Smallest change worth an alert, in orders or average orders' worth of revenue
+    @Value("${anomaly.min-order-change:5}")
+    private double minOrderChange;
+    
+    // Days an hour-of-day baseline must have seen before it can alert
+    @Value("${anomaly.min-observations:7}")
+    private long minObservations;
+    
+    // How long an hour stays open after it ends; longer than the sync interval so polled orders land in time
+    @Value("${anomaly.close-lag:20m}")
+    private Duration closeLag;
+    
+    private TransactionTemplate transaction;
+    
+    // Hours that started before this were only partly observed
+    private volatile LocalDateTime monitoringSince = LocalDateTime.now();
+    
+    private record ClosedHour(List<AnomalyAlert> alerts, List<BaselineSnapshot> baselines, long lateOrders) {
+    }
+    
+    private record BaselineSnapshot(AnomalyAlert.Metric metric, int hourOfDay, double mean, double variance, long observations) {
+    }
+    
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Restore saved baselines after startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadBaselines() {
+        monitoringSince = LocalDateTime.now();
+        LocalDateTime hour = firstOpenHour();
+        List<AnomalyBaseline> rows = baselineRepository.findAll();
+        for (AnomalyBaseline row : rows) {
+            monitors.computeIfAbsent(row.getTenantId(), id -> new TenantMonitor(hour))
+                    .restore(row.getMetric(), row.getHourOfDay(),
+                            new EwmaStats(alpha, row.getMean(), row.getVariance(), row.getObservations()));
+        }
+        log.info("Loaded {} anomaly baselines for {} tenants", rows.size(), monitors.size());
+    }
+    
+    /**
+     * Count a newly created order into the hour it was processed in
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @org.springframework.core.annotation.Order(0)
+    public void onOrderIngested(OrderIngestedEvent event) {
+        OrderSnapshot order = event.current();
+        if (!event.isNew() || order.processedAt() == null) {
+            return;
+        }
+        LocalDateTime hour = order.processedAt().truncatedTo(ChronoUnit.HOURS);
+        if (hour.isAfter(currentHour())) {
+            return;
+        }
+        monitors.computeIfAbsent(event.tenantId(), id -> new TenantMonitor(firstOpenHour()))
+                .record(hour, Money.toMinorUnits(order.totalPrice()));
+    }
+    
+    /**
+     * Score every hour that ended more than the close lag ago, save alerts and baselines
+     * and push alerts to live dashboards
+     */
+    @Scheduled(fixedDelayString = "${anomaly.check-interval-ms:60000}")
+    public void closeHours() {
+        LocalDateTime firstOpen = firstOpenHour();
+        monitors.forEach((tenantId, monitor) -> {
+            ClosedHour closed = monitor.closeBefore(firstOpen);
+            if (closed.lateOrders() > 0) {
+                log.warn("Ignored {} orders of tenant {} that arrived after their hour was scored; " +
+                         "anomaly.close-lag ({}) may be shorter than the sync interval",
+                        closed.lateOrders(), tenantId, closeLag);
+            }
+            if (closed.baselines().isEmpty()) {
+                return;
+            }
+            try {
+                transaction.executeWithoutResult(status -> {
+                    alertRepository.saveAll(closed.alerts());
+                    closed.baselines().forEach(b -> baselineRepository.upsert(tenantId, b.metric().name(),
+                            b.hourOfDay(), b.mean(), b.variance(), b.observations()));
+                });
+            } catch (Exception e) {
+                log.error("Failed to save anomaly state for tenant {}: {}", tenantId, e.getMessage());
+                return;
+            }
+            for (AnomalyAlert alert : closed.alerts()) {
+                log.warn("Anomaly for tenant {}: {} {} at {} (observed {}, expected {}, z {})", tenantId,
+                        alert.getMetric(), alert.getDirection(), alert.getHourStart(),
+                        alert.getObserved(), alert.getExpected(), alert.getZScore());
+                eventPublisher.publishEvent(new AnomalyDetectedEvent(tenantId, toDto(alert)));
+            }
+        });
+    }
+    
+    /**
+     * Most recent alerts for a tenant, newest first
+     */
+    @Transactional(readOnly = true)
+    public List<DashboardDto.AnomalyAlert> getAlerts(Long tenantId, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_ALERTS));
+        return alertRepository.findByTenantIdOrderByHourStartDescIdDesc(tenantId, PageRequest.of(0, size)).stream()
+                .map(AnomalyDetectionService::toDto)
+                .toList();
+    }
+    
+    private static LocalDateTime currentHour() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    }
+    
+    /**
+     * Earliest hour still open: hours before it ended more than the close lag ago
+     */
+    private LocalDateTime firstOpenHour() {
+        return LocalDateTime.now().minus(closeLag).truncatedTo(ChronoUnit.HOURS);
+    }
+    
+    private static DashboardDto.AnomalyAlert toDto(AnomalyAlert alert) {
+        return DashboardDto.AnomalyAlert.builder()
+                .id(alert.getId())
+                .metric(alert.getMetric().name())
+                .direction(alert.getDirection().name())
+                .hourStart(alert.getHourStart())
+                .observed(alert.getObserved())
+                .expected(alert.getExpected())
+                .zScore(alert.getZScore())
+                .createdAt(alert.getCreatedAt())
+                .build();
+    }
+    
+    /**
+     * One tenant's hour-of-day baselines and the counts of hours not yet scored
+     */
+    private class TenantMonitor {
+        private final EwmaStats[][] baselines = new EwmaStats[AnomalyAlert.Metric.values().length][HOURS_PER_DAY];
+        // Values of individual orders, for the spread of hourly revenue; relearned after a restart
+        private final EwmaStats orderValues = new EwmaStats(ORDER_VALUE_ALPHA);
+        // Order count and revenue in minor units of each open hour, the current one and those within the close lag
+        private final Map<LocalDateTime, long[]> openHours = new HashMap<>(4);
+        private LocalDateTime nextHour;
+        // Orders for hours already scored since the last close
+        private long lateOrders;
+        
+        TenantMonitor(LocalDateTime firstHour) {
+            this.nextHour = firstHour;
+        }
+        
+        synchronized void restore(AnomalyAlert.Metric metric, int hourOfDay, EwmaStats stats) {
+            baselines[metric.ordinal()][hourOfDay] = stats;
+        }
+        
+        synchronized void record(LocalDateTime hour, long revenue) {
+            if (hour.isBefore(nextHour)) {
+                lateOrders++;
+                return;
+            }
+            long[] totals = openHours.computeIfAbsent(hour, h -> new long[2]);
+            totals[0]++;
+            totals[1] += revenue;
+            orderValues.update(revenue);
+        }
+        
+        synchronized ClosedHour closeBefore(LocalDateTime firstOpenHour) {
+            List<AnomalyAlert> alerts = new ArrayList<>();
+            List<BaselineSnapshot> snapshots = new ArrayList<>();
+            
+            while (nextHour.isBefore(firstOpenHour)) {
+                LocalDateTime hour = nextHour;
+                long[] totals = openHours.remove(hour);
+                if (!hour.isBefore(monitoringSince)) {
+                    score(hour, totals != null ? totals : new long[2], alerts, snapshots);
+                }
+                nextHour = hour.plusHours(1);
+            }
+            long late = lateOrders;
+            lateOrders = 0;
+            return new ClosedHour(alerts, snapshots, late);
+        }
+        
+        private void score(LocalDateTime hour, long[] totals, List<AnomalyAlert> alerts, List<BaselineSnapshot> snapshots) {
+            int hourOfDay = hour.getHour();
+            EwmaStats orders = baseline(AnomalyAlert.Metric.ORDER_COUNT, hourOfDay);
+            EwmaStats revenue = baseline(AnomalyAlert.Metric.REVENUE, hourOfDay);
+            
+            // Order arrivals are roughly Poisson, so the count deviates by at least sqrt(mean)
+            // and revenue by at least sqrt(mean * E[order value^2]); until enough order values
+            // have been seen the average order value stands in for the root mean square
+            double expectedOrders = Math.max(orders.getMean(), 1);
+            double orderFloor = Math.sqrt(expectedOrders);
+            double revenueFloor = orderValues.getObservations() >= MIN_ORDER_VALUES
+                    ? Math.sqrt(expectedOrders * (orderValues.getMean() * orderValues.getMean() + orderValues.getVariance()))
+                    : revenue.getMean() / orderFloor;
+            double averageOrderValue = orders.getMean() > 0 ? revenue.getMean() / orders.getMean() : 0;
+            
+            check(AnomalyAlert.Metric.ORDER_COUNT, hour, orders, totals[0], orderFloor, minOrderChange,
+                    BigDecimal.valueOf(totals[0]),
+                    BigDecimal.valueOf(orders.getMean()).setScale(Money.SCALE, RoundingMode.HALF_UP), alerts);
+            check(AnomalyAlert.Metric.REVENUE, hour, revenue, totals[1], revenueFloor, minOrderChange * averageOrderValue,
+                    Money.toDecimal(totals[1]), Money.toDecimal(Math.round(revenue.getMean())), alerts);
+            
+            orders.update(totals[0]);
+            revenue.update(totals[1]);
+            snapshots.add(new BaselineSnapshot(AnomalyAlert.Metric.ORDER_COUNT, hourOfDay,
+                    orders.getMean(), orders.getVariance(), orders.getObservations()));
+            snapshots.add(new BaselineSnapshot(AnomalyAlert.Metric.REVENUE, hourOfDay,
+                    revenue.getMean(), revenue.getVariance(), revenue.getObservations()));
+        }
+        
+        private void check(AnomalyAlert.Metric metric, LocalDateTime hour, EwmaStats stats, double value, double floor,
+                           double minChange, BigDecimal observed, BigDecimal expected, List<AnomalyAlert> alerts) {
+            if (stats.getObservations() < minObservations || Math.abs(value - stats.getMean()) < minChange) {
+                return;
+            }
+            double z = stats.zScore(value, floor);
+            if (Math.abs(z) < zThreshold) {
+                return;
+            }
+            alerts.add(AnomalyAlert.builder()
+                    .metric(metric)
+                    .direction(z < 0 ? AnomalyAlert.Direction.DROP : AnomalyAlert.Direction.SPIKE)
+                    .hourStart(hour)
+                    .observed(observed)
+                    .expected(expected)
+                    .zScore(Math.round(z * 100.0) / 100.0)
+                    .build());
+        }
+        
+        private EwmaStats baseline(AnomalyAlert.Metric metric, int hourOfDay) {
+            EwmaStats[] slots = baselines[metric.ordinal()];
+            if (slots[hourOfDay] == null) {
+                slots[hourOfDay] = new EwmaStats(alpha);
+            }
+            return slots[hourOfDay];
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.xeno.service;
+
+import com.xeno.analytics.RoaringBitmap;
+import com.xeno.dto.DashboardDto;
+import com.xeno.entity.CustomerActivityBitmap;
+import com.xeno.entity.Tenant;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.repository.CustomerActivityBitmapRepository;
+import com.xeno.repository.OrderRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.CustomerActivityRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Monthly customer retention cohorts built from compressed bitmaps.
+ * Each tenant keeps one bitmap per month of the customer ids that ordered in it,
+ * updated from committed order ingestion. A customer's cohort is the first month
+ * they appear in, and retention is the size of each cohort's intersection with
+ * later months. Changed bitmaps are written to customer_activity_bitmaps in the
+ * background and read back at startup, replaying only orders updated since the last write.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerCohortService {
+    
+    private static final int MAX_MONTHS = 36;
+    private static final int MAX_PERIODS = 24;
+    
+    private final CustomerActivityBitmapRepository bitmapRepository;
+    private final OrderRepository orderRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Map<Long, TenantActivity> tenants = new ConcurrentHashMap<>();
+    
+    // Orders committed while a flush was running may carry an earlier updated_at
+    @Value("${cohorts.replay-margin-minutes:5}")
+    private long replayMarginMinutes;
+    
+    private TransactionTemplate transaction;
+    
+    private record DirtyMonth(LocalDate month, long customers, byte[] bitmap) {
+    }
+    
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Load persisted bitmaps after startup and catch up on orders written since they were saved
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadBitmaps() {
+        int months = 0;
+        long replayed = 0;
+        
+        for (Tenant tenant : tenantRepository.findAll()) {
+            List<CustomerActivityBitmap> rows = bitmapRepository.findByTenantId(tenant.getId());
+            if (rows.isEmpty()) {
+                continue;
+            }
+            
+            TenantActivity activity = tenants.computeIfAbsent(tenant.getId(), id -> new TenantActivity());
+            LocalDateTime savedAt = null;
+            for (CustomerActivityBitmap row : rows) {
+                activity.merge(row.getActivityMonth(), RoaringBitmap.deserialize(row.getBitmap()));
+                if (savedAt == null || row.getUpdatedAt().isAfter(savedAt)) {
+                    savedAt = row.getUpdatedAt();
+                }
+                months++;
+            }
+            
+            try (Stream<CustomerActivityRow> orders = orderRepository.streamCustomerActivitySince(
+                    tenant.getId(), savedAt.minusMinutes(replayMarginMinutes))) {
+                replayed += orders.filter(row -> activity.add(monthOf(row.processedAt()), row.customerId())).count();
+            }
+        }
+        
+        log.info("Loaded {} monthly customer bitmaps for {} tenants, {} activity bits replayed",
+                months, tenants.size(), replayed);
+    }
+    
+    /**
+     * Mark the order's customer active in the order's month.
+     * Bits are only ever added, so an order moved to another month leaves its
+     * customer counted in both until the tenant is rebuilt.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @org.springframework.core.annotation.Order(0)
+    public void onOrderIngested(OrderIngestedEvent event) {
+        OrderSnapshot order = event.current();
+        if (order.customerId() == null || order.processedAt() == null) {
+            return;
+        }
+        tenants.computeIfAbsent(event.tenantId(), id -> new TenantActivity())
+                .add(monthOf(order.processedAt()), order.customerId());
+    }
+    
+    /**
+     * Write months whose bitmaps changed since the last flush
+     */
+    @Scheduled(fixedDelayString = "${cohorts.flush-interval-ms:10000}")
+    public void flush() {
+        tenants.forEach((tenantId, activity) -> {
+            List<DirtyMonth> dirty = activity.drainDirty();
+            if (dirty.isEmpty()) {
+                return;
+            }
+            try {
+                transaction.executeWithoutResult(status -> dirty.forEach(month -> bitmapRepository.upsert(
+                        tenantId, month.month(), month.customers(), month.bitmap())));
+            } catch (Exception e) {
+                dirty.forEach(month -> activity.markDirty(month.month()));
+                log.error("Failed to save customer bitmaps for tenant {}: {}", tenantId, e.getMessage());
+            }
+        });
+    }
+    
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+    
+    /**
+     * Recompute a tenant's monthly bitmaps from its orders
+     */
+    @Transactional
+    public int rebuild(Long tenantId) {
+        TenantActivity activity = new TenantActivity();
+        try (Stream<CustomerActivityRow> rows = orderRepository.streamCustomerActivityByTenantId(tenantId)) {
+            rows.forEach(row -> activity.add(monthOf(row.processedAt()), row.customerId()));
+        }
+        
+        bitmapRepository.deleteByTenantId(tenantId);
+        List<DirtyMonth> months = activity.drainDirty();
+        months.forEach(month -> bitmapRepository.upsert(tenantId, month.month(), month.customers(), month.bitmap()));
+        
+        // Keep anything ingested while the orders were being read
+        TenantActivity previous = tenants.put(tenantId, activity);
+        if (previous != null) {
+            activity.mergeAll(previous);
+        }
+        
+        log.info("Rebuilt {} monthly customer bitmaps for tenant {}", months.size(), tenantId);
+        return months.size();
+    }
+    
+    /**
+     * Whether a tenant has orders but no persisted bitmaps yet
+     */
+    @Transactional(readOnly = true)
+    public boolean needsBackfill(Long tenantId) {
+        return !bitmapRepository.existsByTenantId(tenantId) && orderRepository.countByTenantId(tenantId) > 0;
+    }
+    
+    /**
+     * Retention for the cohorts acquired in the last {@code months} months, each followed
+     * for up to {@code periods} months after acquisition or until the current month
+     */
+    public List<DashboardDto.CohortRetention> getCohorts(Long tenantId, int months, int periods) {
+        TenantActivity activity = tenants.get(tenantId);
+        if (activity == null) {
+            return List.of();
+        }
+        
+        YearMonth current = YearMonth.now();
+        YearMonth first = current.minusMonths(Math.max(1, Math.min(months, MAX_MONTHS)) - 1);
+        return activity.retention(first, current, Math.max(0, Math.min(periods, MAX_PERIODS)));
+    }
+    
+    private static LocalDate monthOf(LocalDateTime time) {
+        return time.toLocalDate().withDayOfMonth(1);
+    }
+    
+    private static double percentage(long part, long whole) {
+        if (whole == 0) return 0.0;
+        return Math.round((double) part / whole * 10000.0) / 100.0;
+    }
+    
+    /**
+     * One tenant's monthly bitmaps and the months not yet written back
+     */
+    private static class TenantActivity {
+        private final TreeMap<LocalDate, RoaringBitmap> months = new TreeMap<>();
+        private final Set<LocalDate> dirty = new HashSet<>();
+        
+        synchronized boolean add(LocalDate month, long customerId) {
+            if (months.computeIfAbsent(month, m -> new RoaringBitmap()).add(customerId)) {
+                dirty.add(month);
+                return true;
+            }
+            return false;
+        }
+        
+        synchronized void merge(LocalDate month, RoaringBitmap bitmap) {
+            RoaringBitmap existing = months.get(month);
+            if (existing == null) {
+                months.put(month, bitmap);
+            } else {
+                long before = existing.cardinality();
+                existing.or(bitmap);
+                if (existing.cardinality() != before) dirty.add(month);
+            }
+        }
+        
+        void mergeAll(TenantActivity other) {
+            Map<LocalDate, RoaringBitmap> copies = new HashMap<>();
+            synchronized (other) {
+                other.months.forEach((month, bitmap) -> copies.put(month, bitmap.copy()));
+            }
+            synchronized (this) {
+                copies.forEach((month, bitmap) -> {
+                    boolean added = !months.containsKey(month);
+                    merge(month, bitmap);
+                    if (added) dirty.add(month);
+                });
+            }
+        }
+        
+        synchronized void markDirty(LocalDate month) {
+            dirty.add(month);
+        }
+        
+        synchronized List<DirtyMonth> drainDirty() {
+            List<DirtyMonth> drained = new ArrayList<>(dirty.size());
+            for (LocalDate month : dirty) {
+                RoaringBitmap bitmap = months.get(month);
+                drained.add(new DirtyMonth(month, bitmap.cardinality(), bitmap.serialize()));
+            }
+            dirty.clear();
+            return drained;
+        }
+        
+        synchronized List<DashboardDto.CohortRetention> retention(YearMonth first, YearMonth last, int periods) {
+            List<DashboardDto.CohortRetention> cohorts = new ArrayList<>();
+            RoaringBitmap seen = new RoaringBitmap();
+            
+            for (Map.Entry<LocalDate, RoaringBitmap> entry : months.headMap(last.plusMonths(1).atDay(1)).entrySet()) {
+                YearMonth month = YearMonth.from(entry.getKey());
+                RoaringBitmap acquired = entry.getValue().andNot(seen);
+                seen.or(entry.getValue());
+                if (month.isBefore(first)) {
+                    continue;
+                }
+                
+                long size = acquired.cardinality();
+                List<Long> retained = new ArrayList<>();
+                List<Double> rates = new ArrayList<>();
+                for (int k = 1; k <= periods && !month.plusMonths(k).isAfter(last); k++) {
+                    RoaringBitmap later = months.get(month.plusMonths(k).atDay(1));
+                    long count = later != null ? acquired.andCardinality(later) : 0;
+                    retained.add(count);
+                    rates.add(percentage(count, size));
+                }
+                
+                cohorts.add(DashboardDto.CohortRetention.builder()
+                        .cohortMonth(month.toString())
+                        .customers(size)
+                        .retainedCustomers(retained)
+                        .retentionRates(rates)
+                        .build());
+            }
+            return cohorts;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.analytics.RankedSkipList;
+import com.xeno.entity.Tenant;
+import com.xeno.event.CustomerIngestedEvent;
+import com.xeno.repository.CustomerRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.CustomerSpend;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory customer spend leaderboard per tenant.
+ * Loaded from the customers table at startup and kept current from committed
+ * customer ingestion, it answers top-K and "what rank is this customer" in O(log n)
+ * without sorting the customers table. Tenants onboarded after startup are loaded on
+ * first use; reads fall back to SQL until a board has finished loading. Tenants larger
+ * than the configured limit are not held in memory and callers fall back to SQL.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerLeaderboardService {
+    
+    private final CustomerRepository customerRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Map<Long, RankedSkipList> boards = new ConcurrentHashMap<>();
+    // Boards still streaming from the database: updates are applied, reads go to SQL
+    private final Map<Long, RankedSkipList> pending = new ConcurrentHashMap<>();
+    // Tenants over the size limit, left to SQL until restart
+    private final Set<Long> notHeld = ConcurrentHashMap.newKeySet();
+    private final Object loading = new Object();
+    
+    private TransactionTemplate loadTransaction;
+    
+    @Value("${leaderboard.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${leaderboard.max-customers-per-tenant:1000000}")
+    private int maxCustomersPerTenant;
+    
+    /**
+     * A customer's position in the tenant's spend ranking
+     */
+    public record Rank(long rank, long totalCustomers) {
+    }
+    
+    @PostConstruct
+    void init() {
+        // A board first used from an after-commit listener needs a transaction of its own
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Load every tenant's leaderboard after startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLeaderboards() {
+        if (!enabled) {
+            return;
+        }
+        
+        for (Tenant tenant : tenantRepository.findAll()) {
+            board(tenant.getId(), false);
+        }
+        log.info("Loaded customer spend leaderboards for {} tenants", boards.size());
+    }
+    
+    /**
+     * Apply a committed spend change. Runs before the dashboard cache is invalidated,
+     * so a widget reloaded after invalidation already sees the new ranking.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void onCustomerIngested(CustomerIngestedEvent event) {
+        RankedSkipList board = board(event.tenantId(), false);
+        if (board == null) {
+            return;
+        }
+        
+        synchronized (board) {
+            board.put(event.customerId(), Money.toMinorUnits(event.totalSpent()));
+            if (board.size() > maxCustomersPerTenant) {
+                notHeld.add(event.tenantId());
+                boards.remove(event.tenantId());
+                pending.remove(event.tenantId());
+                log.info("Tenant {} exceeded {} customers, spend leaderboard falls back to SQL",
+                        event.tenantId(), maxCustomersPerTenant);
+            }
+        }
+    }
+    
+    /**
+     * Ids of the top spending customers, or empty when the tenant is not held in memory
+     */
+    public Optional<List<Long>> getTopCustomerIds(Long tenantId, int limit) {
+        RankedSkipList board = board(tenantId, true);
+        if (board == null) {
+            return Optional.empty();
+        }
+        
+        long[] ids;
+        synchronized (board) {
+            ids = board.top(limit);
+        }
+        return Optional.of(Arrays.stream(ids).boxed().toList());
+    }
+    
+    /**
+     * 1-based spend rank of a customer (highest spender first, ties by id).
+     * Answered from memory when possible, otherwise with a count query.
+     */
+    @Transactional(readOnly = true)
+    public Rank getRank(Long tenantId, Long customerId, BigDecimal totalSpent) {
+        RankedSkipList board = board(tenantId, true);
+        if (board != null) {
+            synchronized (board) {
+                long rank = board.rankOf(customerId);
+                if (rank > 0) {
+                    return new Rank(rank, board.size());
+                }
+            }
+        }
+        
+        BigDecimal spent = totalSpent != null ? totalSpent : BigDecimal.ZERO;
+        return new Rank(
+                customerRepository.getSpendRank(tenantId, customerId, spent),
+                customerRepository.countByTenantId(tenantId)
+        );
+    }
+    
+    /**
+     * The tenant's board, loaded now if the tenant was onboarded after startup, or null when it is not held.
+     * A board another thread is still loading is returned for updates but not for reads.
+     */
+    private RankedSkipList board(Long tenantId, boolean forRead) {
+        RankedSkipList board = boards.get(tenantId);
+        if (board != null) {
+            return board;
+        }
+        board = pending.get(tenantId);
+        if (board != null) {
+            return forRead ? null : board;
+        }
+        if (!enabled || notHeld.contains(tenantId)) {
+            return null;
+        }
+        synchronized (loading) {
+            if (!boards.containsKey(tenantId) && !notHeld.contains(tenantId)) {
+                loadTransaction.executeWithoutResult(status -> load(tenantId));
+            }
+        }
+        return boards.get(tenantId);
+    }
+    
+    private void load(Long tenantId) {
+        if (customerRepository.countByTenantId(tenantId) > maxCustomersPerTenant) {
+            notHeld.add(tenantId);
+            log.info("Tenant {} has more than {} customers, spend leaderboard falls back to SQL",
+                    tenantId, maxCustomersPerTenant);
+            return;
+        }
+        
+        // Updates committed while streaming go to the pending board and a loaded row never
+        // overwrites them; readers only see the board once every row is in
+        RankedSkipList board = new RankedSkipList();
+        pending.put(tenantId, board);
+        try (Stream<CustomerSpend> customers = customerRepository.streamSpendByTenantId(tenantId)) {
+            customers.forEach(customer -> {
+                synchronized (board) {
+                    if (!board.contains(customer.id())) {
+                        board.put(customer.id(), Money.toMinorUnits(customer.totalSpent()));
+                    }
+                }
+            });
+            synchronized (board) {
+                if (!notHeld.contains(tenantId)) {
+                    boards.put(tenantId, board);
+                }
+            }
+        } finally {
+            pending.remove(tenantId);
+        }
+    }
+}
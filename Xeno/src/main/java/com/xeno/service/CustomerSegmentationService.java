@@ -0,0 +1,211 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.analytics.RfmScorer;
+import com.xeno.dto.EntityDto;
+import com.xeno.entity.Customer;
+import com.xeno.event.CustomerSegmentsUpdatedEvent;
+import com.xeno.repository.CustomerRepository;
+import com.xeno.repository.projection.CustomerRfmRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Recency, frequency and monetary (RFM) segmentation of customers.
+ * A run reads a tenant's customers in id-ordered chunks into primitive columns,
+ * scores each dimension into quintiles in parallel, maps the three scores to a
+ * segment and writes the results back with one bulk update per distinct score
+ * and chunk of ids. Recency comes from the customer's latest order, frequency
+ * from their order count and monetary value from their total spend. Only customers
+ * with orders are ranked against each other; customers without any are prospects.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerSegmentationService {
+    
+    private final CustomerRepository customerRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${rfm.chunk-size:5000}")
+    private int chunkSize;
+    
+    // 0 uses one worker per available processor
+    @Value("${rfm.parallelism:0}")
+    private int parallelism;
+    
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate transaction;
+    private ForkJoinPool pool;
+    
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+    
+    /**
+     * Score and segment every customer of a tenant, returning the number of customers written
+     */
+    public int segmentTenant(Long tenantId) {
+        long started = System.nanoTime();
+        Columns columns = readColumns(tenantId);
+        if (columns.size == 0 && columns.prospects.isEmpty()) {
+            return 0;
+        }
+        
+        // Only customers with orders are ranked; the rest are prospects without a score
+        Map<Integer, List<Long>> groups = new HashMap<>();
+        if (columns.size > 0) {
+            byte[][] scores = RfmScorer.score(pool, columns.size, columns.recency, columns.frequency, columns.monetary);
+            
+            // Customers sharing all three scores share a segment, so group them for bulk updates
+            for (int i = 0; i < columns.size; i++) {
+                int code = scores[0][i] * 100 + scores[1][i] * 10 + scores[2][i];
+                groups.computeIfAbsent(code, c -> new ArrayList<>()).add(columns.ids[i]);
+            }
+        }
+        
+        LocalDateTime scoredAt = LocalDateTime.now();
+        int written = update(tenantId, columns.prospects, null, Customer.RfmSegment.PROSPECT, scoredAt);
+        for (Map.Entry<Integer, List<Long>> group : groups.entrySet()) {
+            int code = group.getKey();
+            written += update(tenantId, group.getValue(), String.valueOf(code),
+                    segmentOf(code / 100, code / 10 % 10, code % 10), scoredAt);
+        }
+        
+        eventPublisher.publishEvent(new CustomerSegmentsUpdatedEvent(tenantId));
+        log.info("Segmented {} customers of tenant {} into {} score groups and {} prospects in {} ms",
+                written, tenantId, groups.size(), columns.prospects.size(), (System.nanoTime() - started) / 1_000_000);
+        return written;
+    }
+    
+    /**
+     * Customers per segment from the last run, in segment order
+     */
+    public List<EntityDto.CustomerSegmentDto> getSegmentCounts(Long tenantId) {
+        Map<Customer.RfmSegment, Long> counts = new EnumMap<>(Customer.RfmSegment.class);
+        for (Object[] row : customerRepository.countByRfmSegment(tenantId)) {
+            counts.put((Customer.RfmSegment) row[0], ((Number) row[1]).longValue());
+        }
+        
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        List<EntityDto.CustomerSegmentDto> segments = new ArrayList<>();
+        for (Customer.RfmSegment segment : Customer.RfmSegment.values()) {
+            long count = counts.getOrDefault(segment, 0L);
+            segments.add(EntityDto.CustomerSegmentDto.builder()
+                    .segment(segment.name())
+                    .customers(count)
+                    .percentage(total > 0 ? Math.round((double) count / total * 10000.0) / 100.0 : 0.0)
+                    .build());
+        }
+        return segments;
+    }
+    
+    private int update(Long tenantId, List<Long> ids, String rfmScore, Customer.RfmSegment segment,
+                       LocalDateTime scoredAt) {
+        int written = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            Integer updated = transaction.execute(status ->
+                    customerRepository.updateRfmSegment(tenantId, chunk, rfmScore, segment, scoredAt));
+            written += updated != null ? updated : 0;
+        }
+        return written;
+    }
+    
+    /**
+     * Segment for a customer with at least one order, from 1-5 recency, frequency and monetary scores
+     */
+    private static Customer.RfmSegment segmentOf(int recency, int frequency, int monetary) {
+        if (recency >= 4 && frequency >= 4 && monetary >= 4) return Customer.RfmSegment.CHAMPIONS;
+        if (recency >= 3 && frequency >= 3) return Customer.RfmSegment.LOYAL;
+        if (recency >= 4) return Customer.RfmSegment.NEW;
+        if (recency == 3) return Customer.RfmSegment.POTENTIAL;
+        if (frequency >= 4 || monetary >= 4) return Customer.RfmSegment.AT_RISK;
+        if (recency == 2) return Customer.RfmSegment.HIBERNATING;
+        return Customer.RfmSegment.LOST;
+    }
+    
+    private Columns readColumns(Long tenantId) {
+        Columns columns = new Columns(chunkSize);
+        long afterId = 0;
+        while (true) {
+            long cursor = afterId;
+            List<CustomerRfmRow> chunk = readOnlyTransaction.execute(status ->
+                    customerRepository.findRfmRowsAfter(tenantId, cursor, PageRequest.of(0, chunkSize)));
+            if (chunk == null || chunk.isEmpty()) {
+                return columns;
+            }
+            chunk.forEach(columns::add);
+            afterId = chunk.get(chunk.size() - 1).id();
+            if (chunk.size() < chunkSize) {
+                return columns;
+            }
+        }
+    }
+    
+    /**
+     * One tenant's RFM inputs as growable primitive columns for customers with orders,
+     * and the ids of those without
+     */
+    private static class Columns {
+        private long[] ids;
+        private long[] recency;
+        private long[] frequency;
+        private long[] monetary;
+        private final List<Long> prospects = new ArrayList<>();
+        private int size;
+        
+        Columns(int capacity) {
+            ids = new long[capacity];
+            recency = new long[capacity];
+            frequency = new long[capacity];
+            monetary = new long[capacity];
+        }
+        
+        void add(CustomerRfmRow row) {
+            int orders = row.ordersCount() != null ? row.ordersCount() : 0;
+            if (orders == 0 && row.lastOrderAt() == null) {
+                prospects.add(row.id());
+                return;
+            }
+            
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                recency = Arrays.copyOf(recency, capacity);
+                frequency = Arrays.copyOf(frequency, capacity);
+                monetary = Arrays.copyOf(monetary, capacity);
+            }
+            
+            ids[size] = row.id();
+            // An order count without a known order date ranks below every dated order on recency
+            recency[size] = row.lastOrderAt() != null ? row.lastOrderAt().toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+            frequency[size] = orders;
+            monetary[size] = Money.toMinorUnits(row.totalSpent());
+            size++;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.entity.Order;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.repository.DailyOrderMetricRepository;
+import com.xeno.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maintains the daily_order_metrics rollup.
+ * Each ingested order takes its previous values out of the day it was counted
+ * under and adds its new values to the day it now falls on, inside the same
+ * transaction as the order write, so the rollup never drifts from the orders table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailyOrderMetricsService {
+    
+    private final DailyOrderMetricRepository metricRepository;
+    private final OrderRepository orderRepository;
+    
+    /**
+     * Apply the change an order upsert made to the daily totals
+     */
+    @EventListener
+    @Transactional
+    public void onOrderIngested(OrderIngestedEvent event) {
+        Map<LocalDate, Delta> deltas = new HashMap<>(4);
+        add(deltas, event.previous(), -1);
+        add(deltas, event.current(), 1);
+        
+        if (deltas.values().stream().allMatch(Delta::isZero)) {
+            return;
+        }
+        
+        metricRepository.lockShared(event.tenantId());
+        deltas.forEach((date, delta) -> {
+            if (!delta.isZero()) {
+                apply(event.tenantId(), date, delta);
+            }
+        });
+    }
+    
+    /**
+     * Recompute a tenant's daily totals from its orders
+     */
+    @Transactional
+    public int rebuild(Long tenantId) {
+        metricRepository.lockExclusive(tenantId);
+        metricRepository.deleteByTenantId(tenantId);
+        int days = metricRepository.rebuildFromOrders(tenantId);
+        log.info("Rebuilt {} days of order metrics for tenant {}", days, tenantId);
+        return days;
+    }
+    
+    /**
+     * Whether a tenant has orders but no daily totals yet, e.g. orders ingested before the rollup existed
+     */
+    @Transactional(readOnly = true)
+    public boolean needsBackfill(Long tenantId) {
+        return !metricRepository.existsByTenantId(tenantId) && orderRepository.countByTenantId(tenantId) > 0;
+    }
+    
+    private void add(Map<LocalDate, Delta> deltas, OrderSnapshot snapshot, int sign) {
+        if (snapshot == null || snapshot.processedAt() == null) {
+            return;
+        }
+        deltas.computeIfAbsent(snapshot.processedAt().toLocalDate(), date -> new Delta()).add(snapshot, sign);
+    }
+    
+    private void apply(Long tenantId, LocalDate date, Delta delta) {
+        long[] status = delta.statusCounts;
+        metricRepository.applyDelta(tenantId, date,
+                delta.orderCount, Money.toDecimal(delta.grossRevenue), Money.toDecimal(delta.totalTax),
+                Money.toDecimal(delta.totalDiscounts), delta.itemCount,
+                status[Order.FinancialStatus.PENDING.ordinal()],
+                status[Order.FinancialStatus.AUTHORIZED.ordinal()],
+                status[Order.FinancialStatus.PARTIALLY_PAID.ordinal()],
+                status[Order.FinancialStatus.PAID.ordinal()],
+                status[Order.FinancialStatus.PARTIALLY_REFUNDED.ordinal()],
+                status[Order.FinancialStatus.REFUNDED.ordinal()],
+                status[Order.FinancialStatus.VOIDED.ordinal()]);
+    }
+    
+    /**
+     * Net change to a single day's row, with amounts in minor units
+     */
+    private static class Delta {
+        private long orderCount;
+        private long grossRevenue;
+        private long totalTax;
+        private long totalDiscounts;
+        private long itemCount;
+        private final long[] statusCounts = new long[Order.FinancialStatus.values().length];
+        
+        void add(OrderSnapshot snapshot, int sign) {
+            orderCount += sign;
+            grossRevenue += Money.toMinorUnits(snapshot.totalPrice()) * sign;
+            totalTax += Money.toMinorUnits(snapshot.totalTax()) * sign;
+            totalDiscounts += Money.toMinorUnits(snapshot.totalDiscount()) * sign;
+            itemCount += (long) snapshot.itemCount() * sign;
+            statusCounts[snapshot.financialStatus().ordinal()] += sign;
+        }
+        
+        boolean isZero() {
+            if (orderCount != 0 || itemCount != 0 || grossRevenue != 0 || totalTax != 0 || totalDiscounts != 0) {
+                return false;
+            }
+            for (long count : statusCounts) {
+                if (count != 0) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.xeno.service;
+
+import com.xeno.event.TenantDataEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache for dashboard widget results, scoped per tenant.
+ * Entries are keyed by widget and request parameters, bounded in number per tenant
+ * and in age, and dropped as soon as ingestion commits a change the widget depends on.
+ */
+@Component
+@Slf4j
+public class DashboardCache {
+    
+    /**
+     * Cached dashboard widgets and the data each one is computed from
+     */
+    public enum Widget {
+        OVERVIEW(TenantDataEvent.DataType.ORDERS, TenantDataEvent.DataType.CUSTOMERS, TenantDataEvent.DataType.PRODUCTS),
+        ORDERS_BY_DATE(TenantDataEvent.DataType.ORDERS),
+        TOP_CUSTOMERS(TenantDataEvent.DataType.CUSTOMERS),
+        REVENUE_TRENDS(TenantDataEvent.DataType.ORDERS),
+        TOP_PRODUCTS(TenantDataEvent.DataType.ORDERS, TenantDataEvent.DataType.PRODUCTS),
+        ORDER_STATUS(TenantDataEvent.DataType.ORDERS),
+        RANGE_SUMMARY(TenantDataEvent.DataType.ORDERS),
+        EVENT_STATS(TenantDataEvent.DataType.EVENTS);
+        
+        private final Set<TenantDataEvent.DataType> dependsOn;
+        
+        Widget(TenantDataEvent.DataType... dependsOn) {
+            this.dependsOn = EnumSet.copyOf(Arrays.asList(dependsOn));
+        }
+        
+        boolean isAffectedBy(TenantDataEvent event) {
+            return dependsOn.stream().anyMatch(event::affects);
+        }
+    }
+    
+    private record Key(Widget widget, List<?> params) {
+    }
+    
+    private record Entry(Object value, long expiresAt) {
+    }
+    
+    private final Map<Long, TenantEntries> tenants = new ConcurrentHashMap<>();
+    
+    @Value("${dashboard.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${dashboard.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+    
+    @Value("${dashboard.cache.max-entries-per-tenant:100}")
+    private int maxEntriesPerTenant;
+    
+    @Value("${dashboard.cache.max-tenants:2000}")
+    private int maxTenants;
+    
+    /**
+     * Return the cached value for a widget, computing and caching it on a miss.
+     * A value computed while an invalidation of that widget was in flight is returned but not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Long tenantId, Widget widget, List<?> params, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        
+        TenantEntries entries = tenants.computeIfAbsent(tenantId, id -> new TenantEntries());
+        Key key = new Key(widget, params);
+        long now = System.nanoTime();
+        
+        Object cached = entries.get(key, now);
+        if (cached != null) {
+            return (T) cached;
+        }
+        
+        long generation = entries.generation(widget);
+        T value = loader.get();
+        if (value != null) {
+            entries.put(key, new Entry(value, now + ttlSeconds * 1_000_000_000L), generation);
+            evictTenantsIfNeeded();
+        }
+        return value;
+    }
+    
+    /**
+     * Drop every cached widget for a tenant
+     */
+    public void invalidateTenant(Long tenantId) {
+        TenantEntries entries = tenants.get(tenantId);
+        if (entries != null) {
+            entries.invalidate(widget -> true);
+        }
+    }
+    
+    /**
+     * Drop the widgets affected by committed ingestion changes.
+     * Runs after the in-memory views have applied the change, and before data versions are bumped.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onTenantDataChanged(TenantDataEvent event) {
+        TenantEntries entries = tenants.get(event.tenantId());
+        if (entries != null) {
+            entries.invalidate(widget -> widget.isAffectedBy(event));
+        }
+    }
+    
+    private void evictTenantsIfNeeded() {
+        if (tenants.size() <= maxTenants) {
+            return;
+        }
+        tenants.entrySet().stream()
+                .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .ifPresent(e -> {
+                    tenants.remove(e.getKey());
+                    log.debug("Evicted dashboard cache for tenant {}", e.getKey());
+                });
+    }
+    
+    /**
+     * Size-bounded LRU of one tenant's widget results
+     */
+    private class TenantEntries {
+        private volatile long lastAccess = System.nanoTime();
+        private final long[] generations = new long[Widget.values().length];
+        
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(32, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntriesPerTenant;
+            }
+        };
+        
+        synchronized Object get(Key key, long now) {
+            lastAccess = now;
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAt() > 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+        
+        synchronized long generation(Widget widget) {
+            return generations[widget.ordinal()];
+        }
+        
+        synchronized void put(Key key, Entry entry, long expectedGeneration) {
+            if (generations[key.widget().ordinal()] == expectedGeneration) {
+                entries.put(key, entry);
+            }
+        }
+        
+        synchronized void invalidate(Predicate<Widget> affected) {
+            for (Widget widget : Widget.values()) {
+                if (affected.test(widget)) generations[widget.ordinal()]++;
+            }
+            entries.keySet().removeIf(key -> affected.test(key.widget()));
+        }
+    }
+}
@@ -1,22 +1,41 @@
 package com.xeno.service;
 
+import com.xeno.analytics.Money;
+import com.xeno.analytics.MoneyAccumulator;
+import com.xeno.analytics.OrderColumns;
 import com.xeno.dto.DashboardDto;
 import com.xeno.entity.Customer;
+import com.xeno.entity.Order;
 import com.xeno.entity.ShopifyEvent;
+import com.xeno.event.SyncCompletedEvent;
 import com.xeno.repository.*;
+import com.xeno.repository.projection.CustomerOverviewTotals;
+import com.xeno.repository.projection.OrderOverviewTotals;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -30,145 +49,279 @@ public class DashboardService {
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
-    private final OrderItemRepository orderItemRepository;
     private final ShopifyEventRepository shopifyEventRepository;
+    private final DailyOrderMetricRepository dailyOrderMetricRepository;
+    private final ProductSalesRepository productSalesRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final DashboardCache dashboardCache;
+    private final CustomerLeaderboardService customerLeaderboardService;
+    private final OrderColumnStore orderColumnStore;
     
     /**
-     * Get overview statistics for the dashboard
+     * Upper bound on dashboard queries running at once across all requests,
+     * so the fan-out cannot drain the connection pool used by ingestion.
+     */
+    @Value("${dashboard.query-concurrency:6}")
+    private int queryConcurrency;
+    
+    private TransactionTemplate readOnlyTransaction;
+    private Semaphore queryPermits;
+    
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        queryPermits = new Semaphore(queryConcurrency, true);
+    }
+    
+    /**
+     * Get overview statistics for the dashboard.
+     * Order and customer figures for all time, this month and last month each come
+     * from a single aggregate scan using FILTER clauses.
      */
-    @Transactional(readOnly = true)
     public DashboardDto.OverviewStats getOverviewStats(Long tenantId) {
-        // Current stats
-        Long totalCustomers = customerRepository.countByTenantId(tenantId);
-        Long totalOrders = orderRepository.countByTenantId(tenantId);
-        BigDecimal totalRevenue = orderRepository.getTotalRevenue(tenantId);
-        Long totalProducts = productRepository.countByTenantId(tenantId);
-        BigDecimal avgOrderValue = orderRepository.getAverageOrderValue(tenantId);
-        
-        // Handle nulls
-        if (totalRevenue == null) totalRevenue = BigDecimal.ZERO;
-        if (avgOrderValue == null) avgOrderValue = BigDecimal.ZERO;
-        
-        // This month stats
-        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        LocalDateTime endOfMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1).atStartOfDay();
-        
-        Long newCustomersThisMonth = customerRepository.countNewCustomersSince(tenantId, startOfMonth);
-        Long ordersThisMonth = orderRepository.countByDateRange(tenantId, startOfMonth, endOfMonth);
-        BigDecimal revenueThisMonth = orderRepository.getRevenueByDateRange(tenantId, startOfMonth, endOfMonth);
-        if (revenueThisMonth == null) revenueThisMonth = BigDecimal.ZERO;
-        
-        // Last month stats for comparison
-        LocalDateTime startOfLastMonth = LocalDate.now().minusMonths(1).withDayOfMonth(1).atStartOfDay();
-        LocalDateTime endOfLastMonth = startOfMonth;
-        
-        Long customersLastMonth = customerRepository.countNewCustomersSince(tenantId, startOfLastMonth);
-        Long ordersLastMonth = orderRepository.countByDateRange(tenantId, startOfLastMonth, endOfLastMonth);
-        BigDecimal revenueLastMonth = orderRepository.getRevenueByDateRange(tenantId, startOfLastMonth, endOfLastMonth);
-        if (revenueLastMonth == null) revenueLastMonth = BigDecimal.ZERO;
-        
-        // Calculate percentage changes
-        Double customersChange = calculatePercentageChange(customersLastMonth, newCustomersThisMonth);
-        Double ordersChange = calculatePercentageChange(ordersLastMonth, ordersThisMonth);
-        Double revenueChange = calculatePercentageChange(revenueLastMonth, revenueThisMonth);
-        
-        return DashboardDto.OverviewStats.builder()
-                .totalCustomers(totalCustomers)
-                .totalOrders(totalOrders)
-                .totalRevenue(totalRevenue)
-                .totalProducts(totalProducts)
-                .averageOrderValue(avgOrderValue.setScale(2, RoundingMode.HALF_UP))
-                .newCustomersThisMonth(newCustomersThisMonth)
-                .ordersThisMonth(ordersThisMonth)
-                .revenueThisMonth(revenueThisMonth)
-                .customersChange(customersChange)
-                .ordersChange(ordersChange)
-                .revenueChange(revenueChange)
-                .build();
+        return cached(tenantId, DashboardCache.Widget.OVERVIEW, List.of(LocalDate.now().withDayOfMonth(1)), () -> {
+            LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
+            LocalDateTime endOfMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1).atStartOfDay();
+            LocalDateTime startOfLastMonth = LocalDate.now().minusMonths(1).withDayOfMonth(1).atStartOfDay();
+            
+            OrderOverviewTotals orders = orderRepository.getOverviewTotals(
+                    tenantId, startOfLastMonth, startOfMonth, endOfMonth);
+            CustomerOverviewTotals customers = customerRepository.getOverviewTotals(
+                    tenantId, startOfLastMonth, startOfMonth);
+            Long totalProducts = productRepository.countByTenantId(tenantId);
+            
+            MoneyAccumulator revenue = new MoneyAccumulator();
+            revenue.addTotal(Money.toMinorUnits(orders.totalRevenue()), orders.pricedOrders());
+            BigDecimal avgOrderValue = revenue.averageAsDecimal();
+            
+            // Calculate percentage changes against last month
+            Double customersChange = calculatePercentageChange(customers.newLastMonth(), customers.newThisMonth());
+            Double ordersChange = calculatePercentageChange(orders.ordersLastMonth(), orders.ordersThisMonth());
+            Double revenueChange = calculatePercentageChange(orders.revenueLastMonth(), orders.revenueThisMonth());
+            
+            return DashboardDto.OverviewStats.builder()
+                    .totalCustomers(customers.totalCustomers())
+                    .totalOrders(orders.totalOrders())
+                    .totalRevenue(orders.totalRevenue())
+                    .totalProducts(totalProducts)
+                    .averageOrderValue(avgOrderValue)
+                    .newCustomersThisMonth(customers.newThisMonth())
+                    .ordersThisMonth(orders.ordersThisMonth())
+                    .revenueThisMonth(orders.revenueThisMonth())
+                    .customersChange(customersChange)
+                    .ordersChange(ordersChange)
+                    .revenueChange(revenueChange)
+                    .build();
+        });
     }
     
     /**
-     * Get orders by date for chart display
+     * Get orders by date for chart display, read from the daily order metrics rollup
      */
-    @Transactional(readOnly = true)
     public List<DashboardDto.OrdersByDate> getOrdersByDate(Long tenantId, LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(LocalTime.MAX);
-        
-        List<Object[]> results = orderRepository.getOrdersByDateGrouped(tenantId, start, end);
-        
-        return results.stream()
-                .map(row -> DashboardDto.OrdersByDate.builder()
-                        .date(((java.sql.Date) row[0]).toLocalDate().atStartOfDay())
-                        .orderCount(((Number) row[1]).longValue())
-                        .revenue((BigDecimal) row[2])
-                        .build())
-                .collect(Collectors.toList());
+        return cached(tenantId, DashboardCache.Widget.ORDERS_BY_DATE, List.of(startDate, endDate), () ->
+                dailyOrderMetricRepository.findActiveDays(tenantId, startDate, endDate).stream()
+                        .map(day -> DashboardDto.OrdersByDate.builder()
+                                .date(day.getMetricDate().atStartOfDay())
+                                .orderCount(day.getOrderCount())
+                                .revenue(day.getGrossRevenue())
+                                .build())
+                        .collect(Collectors.toList()));
     }
     
     /**
-     * Get top customers by spend
+     * Get top customers by spend.
+     * The ranking comes from the in-memory leaderboard when the tenant is held there,
+     * so only the few customers shown are loaded.
      */
-    @Transactional(readOnly = true)
     public List<DashboardDto.TopCustomer> getTopCustomers(Long tenantId, int limit) {
-        List<Customer> customers = customerRepository.findTopCustomersBySpend(
-                tenantId, 
-                PageRequest.of(0, limit)
-        );
-        
-        return customers.stream()
-                .map(c -> DashboardDto.TopCustomer.builder()
-                        .id(c.getId())
-                        .name(c.getFullName())
-                        .email(c.getEmail())
-                        .totalSpent(c.getTotalSpent())
-                        .ordersCount(c.getOrdersCount())
-                        .build())
-                .collect(Collectors.toList());
+        return cached(tenantId, DashboardCache.Widget.TOP_CUSTOMERS, List.of(limit), () -> {
+            List<Customer> customers = customerLeaderboardService.getTopCustomerIds(tenantId, limit)
+                    .map(this::loadInOrder)
+                    .orElseGet(() -> customerRepository.findTopCustomersBySpend(
+                            tenantId, 
+                            PageRequest.of(0, limit)
+                    ));
+            
+            return customers.stream()
+                    .map(c -> DashboardDto.TopCustomer.builder()
+                            .id(c.getId())
+                            .name(c.getFullName())
+                            .email(c.getEmail())
+                            .totalSpent(c.getTotalSpent())
+                            .ordersCount(c.getOrdersCount())
+                            .build())
+                    .collect(Collectors.toList());
+        });
     }
     
     /**
-     * Get revenue trends (monthly)
+     * Get revenue trends (monthly), summed from the daily order metrics rollup
      */
-    @Transactional(readOnly = true)
     public List<DashboardDto.RevenueTrend> getRevenueTrends(Long tenantId, int months) {
-        LocalDateTime startDate = LocalDate.now().minusMonths(months).withDayOfMonth(1).atStartOfDay();
+        return cached(tenantId, DashboardCache.Widget.REVENUE_TRENDS, List.of(months, LocalDate.now().withDayOfMonth(1)), () -> {
+            LocalDate startDate = LocalDate.now().minusMonths(months).withDayOfMonth(1);
+            
+            List<Object[]> results = dailyOrderMetricRepository.getMonthlyTrends(tenantId, startDate);
+            
+            return results.stream()
+                    .map(row -> DashboardDto.RevenueTrend.builder()
+                            .period((String) row[0])
+                            .orderCount(((Number) row[1]).longValue())
+                            .revenue((BigDecimal) row[2])
+                            .build())
+                    .collect(Collectors.toList());
+        });
+    }
+    
+    /**
+     * Get top selling products by revenue, read from the product sales rollup
+     */
+    public List<DashboardDto.ProductPerformance> getTopProducts(Long tenantId, int limit) {
+        return cached(tenantId, DashboardCache.Widget.TOP_PRODUCTS, List.of(limit), () ->
+                productSalesRepository.findTopByRevenue(tenantId, PageRequest.of(0, limit)).stream()
+                        .map(p -> DashboardDto.ProductPerformance.builder()
+                                .productId(p.productId())
+                                .shopifyProductId(p.shopifyProductId())
+                                .productTitle(p.productTitle())
+                                .quantitySold(p.quantitySold())
+                                .revenue(p.revenue())
+                                .build())
+                        .collect(Collectors.toList()));
+    }
+    
+    /**
+     * Get order status breakdown, from the columnar store when the tenant is held there
+     */
+    public List<DashboardDto.OrderStatusBreakdown> getOrderStatusBreakdown(Long tenantId) {
+        Optional<long[]> counts = orderColumnStore.countByStatus(tenantId);
+        if (counts.isPresent()) {
+            List<Object[]> rows = new ArrayList<>();
+            for (Order.FinancialStatus status : Order.FinancialStatus.values()) {
+                long count = counts.get()[status.ordinal()];
+                if (count > 0) rows.add(new Object[]{status, count});
+            }
+            return toStatusBreakdown(rows);
+        }
+        return cached(tenantId, DashboardCache.Widget.ORDER_STATUS, List.of(), () ->
+                toStatusBreakdown(orderRepository.getOrderCountByFinancialStatus(tenantId)));
+    }
+    
+    /**
+     * Get order totals and status counts for a date range.
+     * Served from the columnar store when the tenant is held there, otherwise from one grouped query.
+     */
+    public DashboardDto.RangeSummary getRangeSummary(Long tenantId, LocalDate startDate, LocalDate endDate) {
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
         
-        List<Object[]> results = orderRepository.getMonthlyTrends(tenantId, startDate);
+        Optional<OrderColumns.RangeTotals> inMemory = orderColumnStore.summarize(tenantId, start, end);
+        if (inMemory.isPresent()) {
+            OrderColumns.RangeTotals totals = inMemory.get();
+            Map<String, Long> statusCounts = new LinkedHashMap<>();
+            for (Order.FinancialStatus status : Order.FinancialStatus.values()) {
+                long count = totals.statusCounts()[status.ordinal()];
+                if (count > 0) statusCounts.put(status.name(), count);
+            }
+            MoneyAccumulator revenue = new MoneyAccumulator();
+            revenue.addTotal(totals.revenueMinorUnits(), totals.orders());
+            return toRangeSummary(startDate, endDate, revenue, totals.items(), statusCounts, "memory");
+        }
         
-        return results.stream()
-                .map(row -> DashboardDto.RevenueTrend.builder()
-                        .period((String) row[0])
-                        .orderCount(((Number) row[1]).longValue())
-                        .revenue((BigDecimal) row[2])
-                        .build())
-                .collect(Collectors.toList());
+        return cached(tenantId, DashboardCache.Widget.RANGE_SUMMARY, List.of(startDate, endDate), () -> {
+            MoneyAccumulator revenue = new MoneyAccumulator();
+            long items = 0;
+            Map<String, Long> statusCounts = new LinkedHashMap<>();
+            for (Object[] row : orderRepository.getRangeTotalsByFinancialStatus(tenantId, start, end)) {
+                long count = ((Number) row[1]).longValue();
+                revenue.addTotal(Money.toMinorUnits((BigDecimal) row[2]), count);
+                if (row[3] != null) items += ((Number) row[3]).longValue();
+                statusCounts.put(String.valueOf(row[0]), count);
+            }
+            return toRangeSummary(startDate, endDate, revenue, items, statusCounts, "database");
+        });
     }
     
     /**
-     * Get top selling products
+     * Get the columnar store's memory footprint for a tenant
      */
-    @Transactional(readOnly = true)
-    public List<DashboardDto.ProductPerformance> getTopProducts(Long tenantId, int limit) {
-        List<Object[]> results = orderItemRepository.getTopSellingProducts(tenantId);
+    public DashboardDto.ColumnarStats getColumnarStats(Long tenantId) {
+        Optional<OrderColumnStore.Footprint> footprint = orderColumnStore.getFootprint(tenantId);
+        return DashboardDto.ColumnarStats.builder()
+                .enabled(orderColumnStore.isEnabled())
+                .loaded(footprint.isPresent())
+                .orders(footprint.map(OrderColumnStore.Footprint::orders).orElse(0))
+                .memoryBytes(footprint.map(OrderColumnStore.Footprint::memoryBytes).orElse(0L))
+                .build();
+    }
+    
+    /**
+     * Get event statistics
+     */
+    public List<DashboardDto.EventStats> getEventStats(Long tenantId) {
+        return cached(tenantId, DashboardCache.Widget.EVENT_STATS, List.of(), () -> {
+            List<Object[]> results = shopifyEventRepository.getEventCountsByType(tenantId);
+            
+            return results.stream()
+                    .map(row -> DashboardDto.EventStats.builder()
+                            .eventType(row[0].toString())
+                            .count(((Number) row[1]).longValue())
+                            .build())
+                    .collect(Collectors.toList());
+        });
+    }
+    
+    /**
+     * Get complete dashboard data.
+     * The widgets are independent, so each one runs on its own virtual thread in its own
+     * read-only transaction (and connection); latency follows the slowest widget, not the sum.
+     * Widgets already in the tenant cache are returned without touching the database.
+     */
+    public DashboardDto.DashboardData getDashboardData(Long tenantId) {
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = endDate.minusDays(30);
         
-        return results.stream()
-                .limit(limit)
-                .map(row -> DashboardDto.ProductPerformance.builder()
-                        .productTitle((String) row[0])
-                        .quantitySold(((Number) row[1]).longValue())
-                        .revenue((BigDecimal) row[2])
-                        .build())
-                .collect(Collectors.toList());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<DashboardDto.OverviewStats> overview = submit(executor, () -> getOverviewStats(tenantId));
+            Future<List<DashboardDto.OrdersByDate>> ordersByDate = submit(executor, () -> getOrdersByDate(tenantId, startDate, endDate));
+            Future<List<DashboardDto.TopCustomer>> topCustomers = submit(executor, () -> getTopCustomers(tenantId, 5));
+            Future<List<DashboardDto.RevenueTrend>> revenueTrends = submit(executor, () -> getRevenueTrends(tenantId, 12));
+            Future<List<DashboardDto.ProductPerformance>> topProducts = submit(executor, () -> getTopProducts(tenantId, 10));
+            Future<List<DashboardDto.OrderStatusBreakdown>> statusBreakdown = submit(executor, () -> getOrderStatusBreakdown(tenantId));
+            Future<List<DashboardDto.EventStats>> eventStats = submit(executor, () -> getEventStats(tenantId));
+            
+            return DashboardDto.DashboardData.builder()
+                    .overview(await(overview))
+                    .ordersByDate(await(ordersByDate))
+                    .topCustomers(await(topCustomers))
+                    .revenueTrends(await(revenueTrends))
+                    .topProducts(await(topProducts))
+                    .orderStatusBreakdown(await(statusBreakdown))
+                    .eventStats(await(eventStats))
+                    .build();
+        }
     }
     
     /**
-     * Get order status breakdown
+     * Warm the dashboard cache once a sync has committed, so the first view after it is fast
      */
-    @Transactional(readOnly = true)
-    public List<DashboardDto.OrderStatusBreakdown> getOrderStatusBreakdown(Long tenantId) {
-        List<Object[]> results = orderRepository.getOrderCountByFinancialStatus(tenantId);
-        Long totalOrders = orderRepository.countByTenantId(tenantId);
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSyncCompleted(SyncCompletedEvent event) {
+        dashboardCache.invalidateTenant(event.tenantId());
+        Thread.startVirtualThread(() -> {
+            try {
+                getDashboardData(event.tenantId());
+                log.debug("Pre-warmed dashboard cache for tenant {}", event.tenantId());
+            } catch (Exception e) {
+                log.warn("Failed to pre-warm dashboard cache for tenant {}: {}", event.tenantId(), e.getMessage());
+            }
+        });
+    }
+    
+    private List<DashboardDto.OrderStatusBreakdown> toStatusBreakdown(List<Object[]> results) {
+        // Every order falls into exactly one status group, so the groups sum to the order count
+        long totalOrders = results.stream().mapToLong(row -> ((Number) row[1]).longValue()).sum();
         
         return results.stream()
                 .map(row -> {
@@ -186,38 +339,66 @@ public class DashboardService {
                 .collect(Collectors.toList());
     }
     
-    /**
-     * Get event statistics
-     */
-    @Transactional(readOnly = true)
-    public List<DashboardDto.EventStats> getEventStats(Long tenantId) {
-        List<Object[]> results = shopifyEventRepository.getEventCountsByType(tenantId);
-        
-        return results.stream()
-                .map(row -> DashboardDto.EventStats.builder()
-                        .eventType(row[0].toString())
-                        .count(((Number) row[1]).longValue())
-                        .build())
+    private DashboardDto.RangeSummary toRangeSummary(LocalDate startDate, LocalDate endDate,
+                                                     MoneyAccumulator revenue, long items,
+                                                     Map<String, Long> statusCounts, String source) {
+        return DashboardDto.RangeSummary.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .orderCount(revenue.count())
+                .revenue(revenue.sumAsDecimal())
+                .itemCount(items)
+                .averageOrderValue(revenue.averageAsDecimal())
+                .statusCounts(statusCounts)
+                .source(source)
+                .build();
+    }
+    
+    private List<Customer> loadInOrder(List<Long> ids) {
+        Map<Long, Customer> byId = customerRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Customer::getId, c -> c));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
     
+    private <T> Future<T> submit(ExecutorService executor, Supplier<T> widget) {
+        return executor.submit(widget::get);
+    }
+    
     /**
-     * Get complete dashboard data
+     * Serve a widget from the tenant cache; on a miss run the query in its own
+     * read-only transaction, holding a query permit only while it touches the database.
      */
-    @Transactional(readOnly = true)
-    public DashboardDto.DashboardData getDashboardData(Long tenantId) {
-        LocalDate endDate = LocalDate.now();
-        LocalDate startDate = endDate.minusDays(30);
-        
-        return DashboardDto.DashboardData.builder()
-                .overview(getOverviewStats(tenantId))
-                .ordersByDate(getOrdersByDate(tenantId, startDate, endDate))
-                .topCustomers(getTopCustomers(tenantId, 5))
-                .revenueTrends(getRevenueTrends(tenantId, 12))
-                .topProducts(getTopProducts(tenantId, 10))
-                .orderStatusBreakdown(getOrderStatusBreakdown(tenantId))
-                .eventStats(getEventStats(tenantId))
-                .build();
+    private <T> T cached(Long tenantId, DashboardCache.Widget widget, List<?> params, Supplier<T> query) {
+        return dashboardCache.get(tenantId, widget, params, () -> {
+            try {
+                queryPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Dashboard query interrupted", e);
+            }
+            try {
+                return readOnlyTransaction.execute(status -> query.get());
+            } finally {
+                queryPermits.release();
+            }
+        });
+    }
+    
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Dashboard query interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Dashboard query failed: " + e.getCause().getMessage(), e.getCause());
+        }
     }
     
     private Double calculatePercentageChange(Long previous, Long current) {
@@ -228,12 +409,6 @@ public class DashboardService {
     }
     
     private Double calculatePercentageChange(BigDecimal previous, BigDecimal current) {
-        if (previous == null || previous.compareTo(BigDecimal.ZERO) == 0) {
-            return current != null && current.compareTo(BigDecimal.ZERO) > 0 ? 100.0 : 0.0;
-        }
-        return current.subtract(previous)
-                .divide(previous, 4, RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(100))
-                .doubleValue();
+        return Money.percentageChange(Money.toMinorUnits(previous), Money.toMinorUnits(current));
     }
 }
@@ -0,0 +1,242 @@
+package com.xeno.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xeno.dto.DashboardDto;
+import com.xeno.event.AnomalyDetectedEvent;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.event.SyncCompletedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live dashboard updates over Server-Sent Events.
+ * A client receives a "snapshot" event with the full dashboard when it connects,
+ * then small "order" deltas as ingestion commits order changes, "anomaly" events
+ * when hourly orders or revenue look abnormal, and a fresh snapshot after each full sync. Clients should apply deltas received after
+ * their latest snapshot. Each delta is serialized once per tenant and written
+ * to that tenant's connections by a single drain task, so slow clients never
+ * hold up ingestion.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardStreamService {
+    
+    private final DashboardService dashboardService;
+    private final ObjectMapper objectMapper;
+    
+    private final Map<Long, TenantStream> streams = new ConcurrentHashMap<>();
+    
+    @Value("${dashboard.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+    
+    @Value("${dashboard.stream.max-clients-per-tenant:50}")
+    private int maxClientsPerTenant;
+    
+    /**
+     * Open a stream for a tenant and queue its initial snapshot
+     */
+    public SseEmitter subscribe(Long tenantId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // Added inside compute so the heartbeat can't drop the stream between lookup and add
+        boolean[] added = new boolean[1];
+        TenantStream stream = streams.compute(tenantId, (id, existing) -> {
+            TenantStream tenantStream = existing != null ? existing : new TenantStream(id);
+            added[0] = tenantStream.add(emitter);
+            return tenantStream;
+        });
+        if (!added[0]) {
+            throw new RuntimeException("Too many open dashboard streams for this account");
+        }
+        
+        emitter.onCompletion(() -> stream.remove(emitter));
+        emitter.onTimeout(() -> {
+            stream.remove(emitter);
+            emitter.complete();
+        });
+        emitter.onError(e -> stream.remove(emitter));
+        
+        // Registered before the snapshot is read so no delta committed meanwhile is missed,
+        // which means a failed snapshot must give the slot back
+        String snapshot;
+        try {
+            snapshot = toJson(dashboardService.getDashboardData(tenantId));
+        } catch (RuntimeException e) {
+            stream.remove(emitter);
+            emitter.completeWithError(e);
+            throw e;
+        }
+        stream.enqueue(new Message(emitter, "snapshot", snapshot));
+        return emitter;
+    }
+    
+    /**
+     * Push a committed order change to the tenant's open streams
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderIngested(OrderIngestedEvent event) {
+        TenantStream stream = streams.get(event.tenantId());
+        if (stream == null || stream.isEmpty()) {
+            return;
+        }
+        stream.enqueue(new Message(null, "order", toJson(toDelta(event))));
+    }
+    
+    /**
+     * Push a recorded anomaly alert to the tenant's open streams
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnomalyDetected(AnomalyDetectedEvent event) {
+        TenantStream stream = streams.get(event.tenantId());
+        if (stream == null || stream.isEmpty()) {
+            return;
+        }
+        stream.enqueue(new Message(null, "anomaly", toJson(event.alert())));
+    }
+    
+    /**
+     * Push a fresh snapshot to the tenant's open streams once a full sync has committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSyncCompleted(SyncCompletedEvent event) {
+        TenantStream stream = streams.get(event.tenantId());
+        if (stream == null || stream.isEmpty()) {
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            try {
+                DashboardDto.DashboardData data = dashboardService.getDashboardData(event.tenantId());
+                stream.enqueue(new Message(null, "snapshot", toJson(data)));
+            } catch (Exception e) {
+                log.warn("Failed to push dashboard snapshot for tenant {}: {}", event.tenantId(), e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Keep idle connections open through proxies and notice clients that have gone away
+     */
+    @Scheduled(fixedDelayString = "${dashboard.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        for (Long tenantId : streams.keySet()) {
+            streams.computeIfPresent(tenantId, (id, stream) -> stream.isEmpty() ? null : stream);
+        }
+        streams.values().forEach(stream -> stream.enqueue(Message.HEARTBEAT));
+    }
+    
+    private static DashboardDto.OrderDelta toDelta(OrderIngestedEvent event) {
+        OrderSnapshot previous = event.previous();
+        OrderSnapshot current = event.current();
+        BigDecimal previousTotal = previous != null ? previous.totalPrice() : BigDecimal.ZERO;
+        
+        return DashboardDto.OrderDelta.builder()
+                .orderId(event.orderId())
+                .created(event.isNew())
+                .processedAt(current.processedAt())
+                .totalPrice(current.totalPrice())
+                .financialStatus(current.financialStatus().name())
+                .previousFinancialStatus(previous != null ? previous.financialStatus().name() : null)
+                .orderCountDelta(event.isNew() ? 1L : 0L)
+                .revenueDelta(current.totalPrice().subtract(previousTotal))
+                .build();
+    }
+    
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize dashboard update", e);
+        }
+    }
+    
+    /**
+     * An event to write, to one connection or to all of a tenant's connections when target is null
+     */
+    private record Message(SseEmitter target, String name, String json) {
+        static final Message HEARTBEAT = new Message(null, null, null);
+    }
+    
+    /**
+     * One tenant's open connections and the queue of events waiting to be written to them
+     */
+    private class TenantStream {
+        private final Long tenantId;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        
+        TenantStream(Long tenantId) {
+            this.tenantId = tenantId;
+        }
+        
+        synchronized boolean add(SseEmitter emitter) {
+            if (emitters.size() >= maxClientsPerTenant) {
+                return false;
+            }
+            emitters.add(emitter);
+            return true;
+        }
+        
+        void remove(SseEmitter emitter) {
+            emitters.remove(emitter);
+        }
+        
+        boolean isEmpty() {
+            return emitters.isEmpty();
+        }
+        
+        void enqueue(Message message) {
+            queue.add(message);
+            if (draining.compareAndSet(false, true)) {
+                Thread.startVirtualThread(this::drain);
+            }
+        }
+        
+        private void drain() {
+            do {
+                Message message;
+                while ((message = queue.poll()) != null) {
+                    if (message.target() != null) {
+                        write(message.target(), message);
+                    } else {
+                        for (SseEmitter emitter : emitters) {
+                            write(emitter, message);
+                        }
+                    }
+                }
+                draining.set(false);
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+        
+        private void write(SseEmitter emitter, Message message) {
+            try {
+                if (message == Message.HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    emitter.send(SseEmitter.event().name(message.name()).data(message.json()));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping dashboard stream for tenant {}: {}", tenantId, e.getMessage());
+                remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
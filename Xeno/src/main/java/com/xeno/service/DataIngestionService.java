@@ -3,9 +3,11 @@ package com.xeno.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.xeno.dto.ShopifyDto;
 import com.xeno.entity.*;
+import com.xeno.event.*;
 import com.xeno.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,6 +16,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Service for ingesting data from Shopify into the local database.
@@ -29,6 +32,8 @@ public class DataIngestionService {
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    private final ShopifyEventRepository shopifyEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     private static final int PAGE_SIZE = 250;
     private static final DateTimeFormatter SHOPIFY_DATE_FORMAT = DateTimeFormatter.ISO_DATE_TIME;
@@ -134,6 +139,7 @@ public class DataIngestionService {
             tenant.setSyncMessage(String.format("Successfully synced %d customers, %d products, %d orders",
                     customersImported, productsImported, ordersImported));
             tenantRepository.save(tenant);
+            eventPublisher.publishEvent(new SyncCompletedEvent(tenantId));
             
             log.info("Sync completed for tenant {}: {} customers, {} products, {} orders",
                     tenantId, customersImported, productsImported, ordersImported);
@@ -290,7 +296,9 @@ public class DataIngestionService {
         customer.setShopifyCreatedAt(getDateTimeValue(data, "created_at"));
         customer.setShopifyUpdatedAt(getDateTimeValue(data, "updated_at"));
         
-        customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        eventPublisher.publishEvent(new CustomerIngestedEvent(tenantId, saved.getId(), saved.getTotalSpent(),
+                saved.getFirstName(), saved.getLastName(), saved.getEmail()));
     }
     
     /**
@@ -334,7 +342,10 @@ public class DataIngestionService {
         product.setShopifyCreatedAt(getDateTimeValue(data, "created_at"));
         product.setShopifyUpdatedAt(getDateTimeValue(data, "updated_at"));
         
-        productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductIngestedEvent(tenantId, saved.getId(), saved.getShopifyProductId(),
+                saved.getTitle(), saved.getVendor(), saved.getSku(), saved.getProductType(), saved.getStatus(),
+                saved.getTags()));
     }
     
     /**
@@ -344,11 +355,13 @@ public class DataIngestionService {
     public void saveOrUpdateOrder(Long tenantId, JsonNode data) {
         Long shopifyId = data.get("id").asLong();
         
-        Order order = orderRepository.findByTenantIdAndShopifyOrderId(tenantId, shopifyId)
-                .orElse(Order.builder()
-                        .tenantId(tenantId)
-                        .shopifyOrderId(shopifyId)
-                        .build());
+        Optional<Order> existing = orderRepository.findByTenantIdAndShopifyOrderId(tenantId, shopifyId);
+        OrderSnapshot previous = existing.map(OrderSnapshot::of).orElse(null);
+        
+        Order order = existing.orElse(Order.builder()
+                .tenantId(tenantId)
+                .shopifyOrderId(shopifyId)
+                .build());
         
         order.setOrderNumber(getTextValue(data, "order_number"));
         order.setTotalPrice(getBigDecimalValue(data, "total_price"));
@@ -397,8 +410,8 @@ public class DataIngestionService {
                 OrderItem item = OrderItem.builder()
                         .order(savedOrder)
                         .shopifyLineItemId(itemNode.get("id").asLong())
-                        .shopifyProductId(itemNode.has("product_id") ? itemNode.get("product_id").asLong() : null)
-                        .shopifyVariantId(itemNode.has("variant_id") ? itemNode.get("variant_id").asLong() : null)
+                        .shopifyProductId(itemNode.hasNonNull("product_id") ? itemNode.get("product_id").asLong() : null)
+                        .shopifyVariantId(itemNode.hasNonNull("variant_id") ? itemNode.get("variant_id").asLong() : null)
                         .productTitle(getTextValue(itemNode, "title"))
                         .variantTitle(getTextValue(itemNode, "variant_title"))
                         .sku(getTextValue(itemNode, "sku"))
@@ -420,6 +433,50 @@ public class DataIngestionService {
             savedOrder.setItemCount(itemCount);
             orderRepository.save(savedOrder);
         }
+        
+        eventPublisher.publishEvent(new OrderIngestedEvent(
+                tenantId, savedOrder.getId(), previous, OrderSnapshot.of(savedOrder)));
+    }
+    
+    /**
+     * Save a storefront event (product view, add to cart, checkout...) from a tracking payload
+     */
+    @Transactional
+    public ShopifyEvent saveEvent(Long tenantId, JsonNode data) {
+        ShopifyEvent.EventType eventType = parseEventType(getTextValue(data, "event_type"));
+        
+        ShopifyEvent event = ShopifyEvent.builder()
+                .tenantId(tenantId)
+                .eventType(eventType)
+                .sessionId(getTextValue(data, "session_id"))
+                .customerEmail(getTextValue(data, "customer_email"))
+                .source(getTextValue(data, "source"))
+                .eventData(data.toString())
+                .build();
+        
+        LocalDateTime occurredAt = getDateTimeValue(data, "occurred_at");
+        event.setOccurredAt(occurredAt != null ? occurredAt : LocalDateTime.now());
+        
+        // Link to internal records where they exist
+        if (data.hasNonNull("customer_id")) {
+            customerRepository.findByTenantIdAndShopifyCustomerId(tenantId, data.get("customer_id").asLong())
+                    .ifPresent(c -> {
+                        event.setCustomerId(c.getId());
+                        if (event.getCustomerEmail() == null) event.setCustomerEmail(c.getEmail());
+                    });
+        }
+        if (data.hasNonNull("product_id")) {
+            productRepository.findByTenantIdAndShopifyProductId(tenantId, data.get("product_id").asLong())
+                    .ifPresent(p -> event.setProductId(p.getId()));
+        }
+        if (data.hasNonNull("order_id")) {
+            orderRepository.findByTenantIdAndShopifyOrderId(tenantId, data.get("order_id").asLong())
+                    .ifPresent(o -> event.setOrderId(o.getId()));
+        }
+        
+        ShopifyEvent saved = shopifyEventRepository.save(event);
+        eventPublisher.publishEvent(ShopifyEventIngestedEvent.from(saved));
+        return saved;
     }
     
     // Helper methods for parsing JSON
@@ -480,6 +537,17 @@ public class DataIngestionService {
         };
     }
     
+    private ShopifyEvent.EventType parseEventType(String type) {
+        if (type == null) {
+            throw new RuntimeException("Event type is required");
+        }
+        try {
+            return ShopifyEvent.EventType.valueOf(type.trim().toUpperCase().replace('/', '_').replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown event type: " + type);
+        }
+    }
+    
     private Order.FulfillmentStatus parseFulfillmentStatus(String status) {
         if (status == null) return null;
         return switch (status.toLowerCase()) {
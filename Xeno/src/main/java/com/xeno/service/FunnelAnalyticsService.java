@@ -0,0 +1,286 @@
+package com.xeno.service;
+
+import com.xeno.dto.DashboardDto;
+import com.xeno.entity.ShopifyEvent;
+import com.xeno.entity.Tenant;
+import com.xeno.event.ShopifyEventIngestedEvent;
+import com.xeno.repository.ShopifyEventRepository;
+import com.xeno.repository.TenantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Streaming checkout funnel analytics.
+ * Storefront events are grouped into sessions by sessionId inside a bounded
+ * in-memory window per tenant. Funnel step counts are updated as sessions
+ * advance, and sessions that time out after adding to cart are recorded as
+ * abandoned carts, so the funnel never needs to be recomputed from the events table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FunnelAnalyticsService {
+    
+    /**
+     * Funnel steps in order. A session counts towards every step up to the furthest one it reached.
+     */
+    public enum Step {
+        PRODUCT_VIEWED,
+        ADDED_TO_CART,
+        CHECKOUT_STARTED,
+        CHECKOUT_COMPLETED
+    }
+    
+    private static final Set<ShopifyEvent.EventType> FUNNEL_EVENT_TYPES = EnumSet.of(
+            ShopifyEvent.EventType.PRODUCT_VIEWED,
+            ShopifyEvent.EventType.PRODUCT_ADDED_TO_CART,
+            ShopifyEvent.EventType.CHECKOUT_STARTED,
+            ShopifyEvent.EventType.CHECKOUT_COMPLETED,
+            ShopifyEvent.EventType.ORDER_PLACED,
+            ShopifyEvent.EventType.CART_ABANDONED
+    );
+    
+    private static final int MAX_PRODUCTS_PER_SESSION = 20;
+    
+    private final ShopifyEventRepository shopifyEventRepository;
+    private final TenantRepository tenantRepository;
+    
+    private final Map<Long, TenantFunnel> funnels = new ConcurrentHashMap<>();
+    
+    @Value("${funnel.session-timeout-minutes:30}")
+    private long sessionTimeoutMinutes;
+    
+    @Value("${funnel.max-sessions-per-tenant:10000}")
+    private int maxSessionsPerTenant;
+    
+    @Value("${funnel.max-abandoned-carts:200}")
+    private int maxAbandonedCarts;
+    
+    @Value("${funnel.replay-hours:24}")
+    private long replayHours;
+    
+    /**
+     * Feed committed storefront events into the session window
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventIngested(ShopifyEventIngestedEvent event) {
+        accept(event);
+    }
+    
+    /**
+     * Rebuild the session window from recent events after a restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void replayRecentEvents() {
+        LocalDateTime since = LocalDateTime.now().minusHours(replayHours);
+        int replayed = 0;
+        
+        for (Tenant tenant : tenantRepository.findByActiveTrue()) {
+            try (Stream<ShopifyEventIngestedEvent> events =
+                         shopifyEventRepository.streamEventsSince(tenant.getId(), FUNNEL_EVENT_TYPES, since)) {
+                for (ShopifyEventIngestedEvent event : (Iterable<ShopifyEventIngestedEvent>) events::iterator) {
+                    accept(event);
+                    replayed++;
+                }
+            }
+        }
+        
+        expireSessions();
+        log.info("Replayed {} storefront events into funnel sessions", replayed);
+    }
+    
+    /**
+     * Close sessions that have been inactive longer than the timeout
+     */
+    @Scheduled(fixedDelayString = "${funnel.sweep-interval-ms:60000}")
+    public void expireSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(sessionTimeoutMinutes);
+        funnels.values().forEach(funnel -> funnel.expireBefore(cutoff));
+    }
+    
+    /**
+     * Get funnel conversion counts and recent abandoned carts for a tenant
+     */
+    public DashboardDto.FunnelData getFunnel(Long tenantId, int abandonedLimit) {
+        TenantFunnel funnel = funnels.get(tenantId);
+        if (funnel == null) {
+            return DashboardDto.FunnelData.builder()
+                    .since(LocalDateTime.now())
+                    .activeSessions(0)
+                    .abandonedCarts(0L)
+                    .steps(buildSteps(new long[Step.values().length]))
+                    .recentAbandonedCarts(List.of())
+                    .build();
+        }
+        return funnel.snapshot(abandonedLimit);
+    }
+    
+    private void accept(ShopifyEventIngestedEvent event) {
+        if (event.sessionId() == null || !FUNNEL_EVENT_TYPES.contains(event.eventType())) {
+            return;
+        }
+        funnels.computeIfAbsent(event.tenantId(), id -> new TenantFunnel()).accept(event);
+    }
+    
+    private static Step toStep(ShopifyEvent.EventType type) {
+        return switch (type) {
+            case PRODUCT_VIEWED -> Step.PRODUCT_VIEWED;
+            case PRODUCT_ADDED_TO_CART -> Step.ADDED_TO_CART;
+            case CHECKOUT_STARTED -> Step.CHECKOUT_STARTED;
+            case CHECKOUT_COMPLETED, ORDER_PLACED -> Step.CHECKOUT_COMPLETED;
+            default -> null;
+        };
+    }
+    
+    private static List<DashboardDto.FunnelStep> buildSteps(long[] counts) {
+        List<DashboardDto.FunnelStep> steps = new ArrayList<>(counts.length);
+        for (Step step : Step.values()) {
+            int i = step.ordinal();
+            steps.add(DashboardDto.FunnelStep.builder()
+                    .step(step.name())
+                    .sessions(counts[i])
+                    .conversionFromPrevious(i == 0 ? 100.0 : percentage(counts[i], counts[i - 1]))
+                    .conversionFromStart(percentage(counts[i], counts[0]))
+                    .build());
+        }
+        return steps;
+    }
+    
+    private static Double percentage(long part, long whole) {
+        if (whole == 0) return 0.0;
+        return Math.round((double) part / whole * 10000.0) / 100.0;
+    }
+    
+    /**
+     * Per-session state kept while the session is open
+     */
+    private static class Session {
+        private final String sessionId;
+        private final LocalDateTime startedAt;
+        private final Set<Long> productIds = new LinkedHashSet<>();
+        private LocalDateTime lastActivityAt;
+        private Long customerId;
+        private String customerEmail;
+        private int furthestStep = -1;
+        
+        Session(String sessionId, LocalDateTime startedAt) {
+            this.sessionId = sessionId;
+            this.startedAt = startedAt;
+            this.lastActivityAt = startedAt;
+        }
+    }
+    
+    /**
+     * Session window and running funnel counters for a single tenant.
+     * Access-ordered so the least recently active sessions are at the head.
+     */
+    private class TenantFunnel {
+        private final LocalDateTime since = LocalDateTime.now().minusHours(replayHours);
+        private final long[] stepCounts = new long[Step.values().length];
+        private final Deque<DashboardDto.AbandonedCart> abandoned = new ArrayDeque<>();
+        private long abandonedTotal;
+        
+        private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                if (size() > maxSessionsPerTenant) {
+                    close(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        
+        synchronized void accept(ShopifyEventIngestedEvent event) {
+            LocalDateTime occurredAt = event.occurredAt() != null ? event.occurredAt() : LocalDateTime.now();
+            Session session = sessions.get(event.sessionId());
+            if (session == null) {
+                session = new Session(event.sessionId(), occurredAt);
+                sessions.put(event.sessionId(), session);
+            }
+            
+            if (occurredAt.isAfter(session.lastActivityAt)) session.lastActivityAt = occurredAt;
+            if (event.customerId() != null) session.customerId = event.customerId();
+            if (event.customerEmail() != null) session.customerEmail = event.customerEmail();
+            if (event.productId() != null && session.productIds.size() < MAX_PRODUCTS_PER_SESSION) {
+                session.productIds.add(event.productId());
+            }
+            
+            if (event.eventType() == ShopifyEvent.EventType.CART_ABANDONED) {
+                sessions.remove(session.sessionId);
+                close(session);
+                return;
+            }
+            
+            Step step = toStep(event.eventType());
+            if (step != null && step.ordinal() > session.furthestStep) {
+                for (int i = session.furthestStep + 1; i <= step.ordinal(); i++) {
+                    stepCounts[i]++;
+                }
+                session.furthestStep = step.ordinal();
+            }
+            
+            if (session.furthestStep == Step.CHECKOUT_COMPLETED.ordinal()) {
+                sessions.remove(session.sessionId);
+            }
+        }
+        
+        synchronized void expireBefore(LocalDateTime cutoff) {
+            Iterator<Session> it = sessions.values().iterator();
+            while (it.hasNext()) {
+                Session session = it.next();
+                if (!session.lastActivityAt.isBefore(cutoff)) {
+                    // Sessions are ordered by last access, but replayed events may carry older
+                    // timestamps, so keep scanning instead of stopping at the first live session
+                    continue;
+                }
+                it.remove();
+                close(session);
+            }
+        }
+        
+        private void close(Session session) {
+            if (session.furthestStep < Step.ADDED_TO_CART.ordinal()
+                    || session.furthestStep >= Step.CHECKOUT_COMPLETED.ordinal()) {
+                return;
+            }
+            
+            abandonedTotal++;
+            abandoned.addFirst(DashboardDto.AbandonedCart.builder()
+                    .sessionId(session.sessionId)
+                    .customerId(session.customerId)
+                    .customerEmail(session.customerEmail)
+                    .lastStep(Step.values()[session.furthestStep].name())
+                    .productIds(new ArrayList<>(session.productIds))
+                    .startedAt(session.startedAt)
+                    .lastActivityAt(session.lastActivityAt)
+                    .build());
+            while (abandoned.size() > maxAbandonedCarts) {
+                abandoned.removeLast();
+            }
+        }
+        
+        synchronized DashboardDto.FunnelData snapshot(int abandonedLimit) {
+            return DashboardDto.FunnelData.builder()
+                    .since(since)
+                    .activeSessions(sessions.size())
+                    .abandonedCarts(abandonedTotal)
+                    .steps(buildSteps(stepCounts.clone()))
+                    .recentAbandonedCarts(abandoned.stream().limit(abandonedLimit).toList())
+                    .build();
+        }
+    }
+}
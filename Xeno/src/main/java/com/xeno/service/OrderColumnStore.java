@@ -0,0 +1,251 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.analytics.OrderColumns;
+import com.xeno.entity.Order;
+import com.xeno.entity.Tenant;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.repository.OrderRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.OrderColumnRow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-process columnar projection of each tenant's orders.
+ * Loaded at startup when enabled and kept current from committed order ingestion,
+ * it answers status and date-range aggregations without touching Postgres. Tenants
+ * onboarded after startup are loaded on first use, and reads fall back to SQL until a
+ * tenant has finished loading. Tenants above the configured size are left to SQL.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderColumnStore {
+    
+    private static final int STATUS_COUNT = Order.FinancialStatus.values().length;
+    
+    private final OrderRepository orderRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Map<Long, TenantColumns> tenants = new ConcurrentHashMap<>();
+    // Columns still streaming from the database: updates are applied, reads go to SQL
+    private final Map<Long, TenantColumns> pending = new ConcurrentHashMap<>();
+    // Tenants over the size limit, left to SQL until restart
+    private final Set<Long> notHeld = ConcurrentHashMap.newKeySet();
+    private final Object loading = new Object();
+    
+    private TransactionTemplate loadTransaction;
+    
+    @Value("${analytics.columnar.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${analytics.columnar.max-orders-per-tenant:2000000}")
+    private int maxOrdersPerTenant;
+    
+    /**
+     * Memory use of one tenant's columns
+     */
+    public record Footprint(int orders, long memoryBytes) {
+    }
+    
+    private record TenantColumns(OrderColumns columns, ReadWriteLock lock) {
+        
+        <T> T read(Function<OrderColumns, T> reader) {
+            lock.readLock().lock();
+            try {
+                return reader.apply(columns);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        // Columns first used from an after-commit listener need a transaction of their own
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Load every tenant's orders into columns after startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadColumns() {
+        if (!enabled) {
+            return;
+        }
+        
+        long totalBytes = 0;
+        for (Tenant tenant : tenantRepository.findAll()) {
+            TenantColumns loaded = columns(tenant.getId(), false);
+            if (loaded != null) {
+                totalBytes += loaded.read(OrderColumns::memoryBytes);
+            }
+        }
+        log.info("Columnar order store holds {} tenants ({} KB)", tenants.size(), totalBytes / 1024);
+    }
+    
+    /**
+     * Apply a committed order change. Runs before the dashboard cache is invalidated.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @org.springframework.core.annotation.Order(0)
+    public void onOrderIngested(OrderIngestedEvent event) {
+        TenantColumns tenant = columns(event.tenantId(), false);
+        if (tenant == null) {
+            return;
+        }
+        
+        tenant.lock().writeLock().lock();
+        try {
+            upsert(tenant.columns(), event.current());
+            if (tenant.columns().size() > maxOrdersPerTenant) {
+                notHeld.add(event.tenantId());
+                tenants.remove(event.tenantId());
+                pending.remove(event.tenantId());
+                log.info("Tenant {} exceeded {} orders, columnar analytics fall back to SQL",
+                        event.tenantId(), maxOrdersPerTenant);
+            }
+        } finally {
+            tenant.lock().writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Order counts per financial status ordinal, or empty when the tenant is not held in memory
+     */
+    public Optional<long[]> countByStatus(Long tenantId) {
+        return read(tenantId, columns -> columns.countByStatus(STATUS_COUNT));
+    }
+    
+    /**
+     * Totals for orders processed in [start, end), or empty when the tenant is not held in memory
+     */
+    public Optional<OrderColumns.RangeTotals> summarize(Long tenantId, LocalDateTime start, LocalDateTime end) {
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = end.toEpochSecond(ZoneOffset.UTC);
+        return read(tenantId, columns -> columns.summarize(from, to, STATUS_COUNT));
+    }
+    
+    /**
+     * Memory footprint of a tenant's columns, or empty when the tenant is not held in memory
+     */
+    public Optional<Footprint> getFootprint(Long tenantId) {
+        return read(tenantId, columns -> new Footprint(columns.size(), columns.memoryBytes()));
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    private <T> Optional<T> read(Long tenantId, Function<OrderColumns, T> reader) {
+        TenantColumns tenant = columns(tenantId, true);
+        return tenant != null ? Optional.of(tenant.read(reader)) : Optional.empty();
+    }
+    
+    /**
+     * The tenant's columns, loaded now if the tenant was onboarded after startup, or null when they are not held.
+     * Columns another thread is still loading are returned for updates but not for reads.
+     */
+    private TenantColumns columns(Long tenantId, boolean forRead) {
+        TenantColumns tenant = tenants.get(tenantId);
+        if (tenant != null) {
+            return tenant;
+        }
+        tenant = pending.get(tenantId);
+        if (tenant != null) {
+            return forRead ? null : tenant;
+        }
+        if (!enabled || notHeld.contains(tenantId)) {
+            return null;
+        }
+        synchronized (loading) {
+            if (!tenants.containsKey(tenantId) && !notHeld.contains(tenantId)) {
+                loadTransaction.executeWithoutResult(status -> load(tenantId));
+            }
+        }
+        return tenants.get(tenantId);
+    }
+    
+    private void load(Long tenantId) {
+        long count = orderRepository.countByTenantId(tenantId);
+        if (count > maxOrdersPerTenant) {
+            notHeld.add(tenantId);
+            log.info("Tenant {} has more than {} orders, columnar analytics fall back to SQL",
+                    tenantId, maxOrdersPerTenant);
+            return;
+        }
+        
+        // Updates committed while streaming go to the pending columns and a loaded row never
+        // overwrites them; readers only see the columns once every row is in
+        TenantColumns tenant = new TenantColumns(new OrderColumns((int) count), new ReentrantReadWriteLock());
+        pending.put(tenantId, tenant);
+        try (Stream<OrderColumnRow> rows = orderRepository.streamColumnRowsByTenantId(tenantId)) {
+            rows.forEach(row -> {
+                tenant.lock().writeLock().lock();
+                try {
+                    if (!tenant.columns().contains(row.id())) {
+                        tenant.columns().upsert(row.id(), epochSecond(row.processedAt()), Money.toMinorUnits(row.totalPrice()),
+                                status(row.financialStatus()), row.customerId() != null ? row.customerId() : 0L,
+                                row.itemCount() != null ? row.itemCount() : 0);
+                    }
+                } finally {
+                    tenant.lock().writeLock().unlock();
+                }
+            });
+            tenant.lock().writeLock().lock();
+            try {
+                if (!notHeld.contains(tenantId)) {
+                    tenants.put(tenantId, tenant);
+                }
+            } finally {
+                tenant.lock().writeLock().unlock();
+            }
+        } finally {
+            pending.remove(tenantId);
+        }
+        
+        Footprint footprint = tenant.read(c -> new Footprint(c.size(), c.memoryBytes()));
+        log.info("Loaded {} orders into columns for tenant {} ({} KB)",
+                footprint.orders(), tenantId, footprint.memoryBytes() / 1024);
+    }
+    
+    private static void upsert(OrderColumns columns, OrderSnapshot order) {
+        columns.upsert(order.orderId(), epochSecond(order.processedAt()), Money.toMinorUnits(order.totalPrice()),
+                status(order.financialStatus()), order.customerId() != null ? order.customerId() : 0L,
+                order.itemCount());
+    }
+    
+    private static long epochSecond(LocalDateTime time) {
+        return time != null ? time.toEpochSecond(ZoneOffset.UTC) : OrderColumns.NO_TIME;
+    }
+    
+    private static int status(Order.FinancialStatus status) {
+        return (status != null ? status : Order.FinancialStatus.PENDING).ordinal();
+    }
+}
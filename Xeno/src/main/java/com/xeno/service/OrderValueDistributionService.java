@@ -0,0 +1,201 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.analytics.QuantileSketch;
+import com.xeno.dto.DashboardDto;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.repository.OrderRepository;
+import com.xeno.repository.OrderValueBucketRepository;
+import com.xeno.repository.projection.OrderColumnRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Order value percentiles and histograms from per-day quantile sketches.
+ * Each tenant keeps, per day, the number of orders whose total falls in each
+ * logarithmic bucket of a {@link QuantileSketch}. Ingestion moves an order out of
+ * its previous bucket and into its new one in the same transaction as the order
+ * write, and a date range is answered by summing bucket counts across its days
+ * rather than sorting the orders in it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderValueDistributionService {
+    
+    // Percentiles are within 1% of the exact order value
+    public static final double RELATIVE_ACCURACY = 0.01;
+    
+    private static final int MAX_BINS = 100;
+    
+    private final OrderValueBucketRepository bucketRepository;
+    private final OrderRepository orderRepository;
+    
+    private record BucketKey(LocalDate date, int index) {
+    }
+    
+    /**
+     * Move the order between buckets if its day or total changed
+     */
+    @EventListener
+    @Transactional
+    public void onOrderIngested(OrderIngestedEvent event) {
+        QuantileSketch sketch = new QuantileSketch(RELATIVE_ACCURACY);
+        Map<BucketKey, Long> deltas = new HashMap<>(4);
+        add(deltas, sketch, event.previous(), -1);
+        add(deltas, sketch, event.current(), 1);
+        deltas.values().removeIf(delta -> delta == 0);
+        
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        bucketRepository.lockShared(event.tenantId());
+        deltas.forEach((key, delta) -> bucketRepository.applyDelta(event.tenantId(), key.date(), key.index(), delta));
+    }
+    
+    /**
+     * Recompute a tenant's bucket counts from its orders
+     */
+    @Transactional
+    public int rebuild(Long tenantId) {
+        bucketRepository.lockExclusive(tenantId);
+        bucketRepository.deleteByTenantId(tenantId);
+        
+        QuantileSketch sketch = new QuantileSketch(RELATIVE_ACCURACY);
+        Map<BucketKey, Long> counts = new HashMap<>();
+        try (Stream<OrderColumnRow> rows = orderRepository.streamColumnRowsByTenantId(tenantId)) {
+            for (OrderColumnRow row : (Iterable<OrderColumnRow>) rows::iterator) {
+                if (row.processedAt() != null) {
+                    BucketKey key = new BucketKey(row.processedAt().toLocalDate(), sketch.indexOf(valueOf(row.totalPrice())));
+                    counts.merge(key, 1L, Long::sum);
+                }
+            }
+        }
+        
+        counts.forEach((key, count) -> bucketRepository.applyDelta(tenantId, key.date(), key.index(), count));
+        log.info("Rebuilt {} order value buckets for tenant {}", counts.size(), tenantId);
+        return counts.size();
+    }
+    
+    /**
+     * Whether a tenant has orders but no bucket counts yet
+     */
+    @Transactional(readOnly = true)
+    public boolean needsBackfill(Long tenantId) {
+        return !bucketRepository.existsByTenantId(tenantId) && orderRepository.countByTenantId(tenantId) > 0;
+    }
+    
+    /**
+     * Median, 90th and 99th percentile order value for orders processed in a date range
+     */
+    @Transactional(readOnly = true)
+    public DashboardDto.OrderValueDistribution getDistribution(Long tenantId, LocalDate startDate, LocalDate endDate) {
+        QuantileSketch sketch = loadSketch(tenantId, startDate, endDate);
+        return DashboardDto.OrderValueDistribution.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .orderCount(sketch.count())
+                .p50(quantile(sketch, 0.50))
+                .p90(quantile(sketch, 0.90))
+                .p99(quantile(sketch, 0.99))
+                .min(quantile(sketch, 0))
+                .max(quantile(sketch, 1))
+                .relativeAccuracy(RELATIVE_ACCURACY)
+                .build();
+    }
+    
+    /**
+     * Order counts in up to {@code bins} logarithmically spaced value ranges spanning
+     * the range's smallest to largest order, plus a zero bin for free orders
+     */
+    @Transactional(readOnly = true)
+    public DashboardDto.OrderValueHistogram getHistogram(Long tenantId, LocalDate startDate, LocalDate endDate, int bins) {
+        QuantileSketch sketch = loadSketch(tenantId, startDate, endDate);
+        List<DashboardDto.HistogramBin> histogram = new ArrayList<>();
+        
+        if (sketch.getZeroCount() > 0) {
+            histogram.add(bin(BigDecimal.ZERO, BigDecimal.ZERO, sketch.getZeroCount()));
+        }
+        
+        int first = sketch.minIndex();
+        if (first != QuantileSketch.ZERO_INDEX) {
+            int last = sketch.maxIndex();
+            int span = last - first + 1;
+            int binCount = Math.min(span, Math.max(1, Math.min(bins, MAX_BINS)));
+            
+            // Split the bucket indexes evenly, so bins are equally wide on a log scale
+            long[] counts = new long[binCount];
+            sketch.forEachBucket((index, count) -> {
+                if (index != QuantileSketch.ZERO_INDEX) {
+                    counts[(int) ((long) (index - first) * binCount / span)] += count;
+                }
+            });
+            for (int b = 0; b < binCount; b++) {
+                int low = first + (int) Math.ceil((double) b * span / binCount);
+                int high = first + (int) Math.ceil((double) (b + 1) * span / binCount) - 1;
+                histogram.add(bin(round(sketch.lowerBound(low)), round(sketch.upperBound(high)), counts[b]));
+            }
+        }
+        
+        return DashboardDto.OrderValueHistogram.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .orderCount(sketch.count())
+                .bins(histogram)
+                .build();
+    }
+    
+    private QuantileSketch loadSketch(Long tenantId, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("End date must not be before start date");
+        }
+        
+        QuantileSketch sketch = new QuantileSketch(RELATIVE_ACCURACY);
+        for (Object[] row : bucketRepository.sumByBucket(tenantId, startDate, endDate)) {
+            sketch.addToBucket(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+        }
+        return sketch;
+    }
+    
+    private static void add(Map<BucketKey, Long> deltas, QuantileSketch sketch, OrderSnapshot snapshot, int sign) {
+        if (snapshot == null || snapshot.processedAt() == null) {
+            return;
+        }
+        BucketKey key = new BucketKey(snapshot.processedAt().toLocalDate(), sketch.indexOf(valueOf(snapshot.totalPrice())));
+        deltas.merge(key, (long) sign, Long::sum);
+    }
+    
+    private static double valueOf(BigDecimal totalPrice) {
+        return totalPrice != null ? totalPrice.doubleValue() : 0;
+    }
+    
+    private static BigDecimal quantile(QuantileSketch sketch, double q) {
+        return sketch.isEmpty() ? null : round(sketch.quantile(q));
+    }
+    
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(Money.SCALE, RoundingMode.HALF_UP);
+    }
+    
+    private static DashboardDto.HistogramBin bin(BigDecimal lowerBound, BigDecimal upperBound, long orderCount) {
+        return DashboardDto.HistogramBin.builder()
+                .lowerBound(lowerBound)
+                .upperBound(upperBound)
+                .orderCount(orderCount)
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+package com.xeno.service;
+
+import com.xeno.analytics.CoOccurrenceCounter;
+import com.xeno.dto.EntityDto;
+import com.xeno.event.ProductAffinitiesUpdatedEvent;
+import com.xeno.repository.OrderItemRepository;
+import com.xeno.repository.ProductAffinityRepository;
+import com.xeno.repository.projection.OrderProductRow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Frequently-bought-together products from basket analysis.
+ * A run streams a tenant's line items order by order, counts how often each
+ * pair of products shares an order in a sparse {@link CoOccurrenceCounter},
+ * keeps each product's top partners and replaces the tenant's product_affinities
+ * rows with them. Products are keyed by Shopify product id, which every line
+ * item carries even when the product itself has not been synced.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductAffinityService {
+    
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int MAX_RESULTS = 50;
+    
+    private final OrderItemRepository orderItemRepository;
+    private final ProductAffinityRepository affinityRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${affinity.top-k:20}")
+    private int topK;
+    
+    @Value("${affinity.min-co-occurrences:2}")
+    private int minCoOccurrences;
+    
+    // Orders with more distinct products than this are left out of pair counting
+    @Value("${affinity.max-basket-size:100}")
+    private int maxBasketSize;
+    
+    @Value("${affinity.max-pairs:2000000}")
+    private int maxPairs;
+    
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate transaction;
+    
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Recompute a tenant's product affinities from its orders, returning the number of rows written
+     */
+    public int computeAffinities(Long tenantId) {
+        long started = System.nanoTime();
+        CoOccurrenceCounter counter = new CoOccurrenceCounter(maxPairs);
+        long skipped = countBaskets(tenantId, counter);
+        
+        LocalDateTime computedAt = LocalDateTime.now();
+        Timestamp timestamp = Timestamp.valueOf(computedAt);
+        long baskets = counter.getBasketCount();
+        Integer written = transaction.execute(status -> {
+            affinityRepository.deleteByTenantId(tenantId);
+            
+            List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+            int[] rows = {0};
+            counter.forEachTopK(topK, minCoOccurrences, (product, related, rank, together, productOrders, relatedOrders) -> {
+                double confidence = (double) together / productOrders;
+                double lift = confidence * baskets / relatedOrders;
+                batch.add(new Object[]{tenantId, product, related, rank, together, confidence, lift, timestamp});
+                if (batch.size() == INSERT_BATCH_SIZE) {
+                    rows[0] += insert(batch);
+                }
+            });
+            rows[0] += insert(batch);
+            return rows[0];
+        });
+        
+        eventPublisher.publishEvent(new ProductAffinitiesUpdatedEvent(tenantId));
+        log.info("Computed {} product affinities for tenant {} from {} orders ({} skipped as too large), " +
+                 "{} products, {} pairs, prune level {}, ~{} KB in {} ms",
+                written, tenantId, baskets, skipped, counter.getItemCount(), counter.getPairCount(),
+                counter.getPruneLevel(), counter.memoryBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+        return written != null ? written : 0;
+    }
+    
+    /**
+     * Products most often bought together with a product, best first
+     */
+    public List<EntityDto.ProductAffinityDto> getAffinities(Long tenantId, Long shopifyProductId, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_RESULTS));
+        return affinityRepository.findTopRelated(tenantId, shopifyProductId, PageRequest.of(0, size)).stream()
+                .map(row -> EntityDto.ProductAffinityDto.builder()
+                        .productId(row.productId())
+                        .shopifyProductId(row.shopifyProductId())
+                        .title(row.productTitle())
+                        .rank(row.rank())
+                        .coOccurrences(row.coOccurrences())
+                        .confidence(round(row.confidence()))
+                        .lift(round(row.lift()))
+                        .build())
+                .toList();
+    }
+    
+    /**
+     * Feed every order of a tenant to the counter, returning how many were too large to count
+     */
+    private long countBaskets(Long tenantId, CoOccurrenceCounter counter) {
+        Long skipped = readOnlyTransaction.execute(status -> {
+            long[] basket = new long[16];
+            int size = 0;
+            long currentOrder = -1;
+            long tooLarge = 0;
+            
+            try (Stream<OrderProductRow> rows = orderItemRepository.streamOrderProductsByTenantId(tenantId)) {
+                for (OrderProductRow row : (Iterable<OrderProductRow>) rows::iterator) {
+                    if (row.orderId() != currentOrder) {
+                        tooLarge += addBasket(counter, basket, size);
+                        currentOrder = row.orderId();
+                        size = 0;
+                    }
+                    if (size == basket.length) {
+                        basket = Arrays.copyOf(basket, size * 2);
+                    }
+                    basket[size++] = row.shopifyProductId();
+                }
+            }
+            return tooLarge + addBasket(counter, basket, size);
+        });
+        return skipped != null ? skipped : 0;
+    }
+    
+    private int addBasket(CoOccurrenceCounter counter, long[] basket, int size) {
+        if (size == 0) {
+            return 0;
+        }
+        // Line items repeat products across variants, so only distinct products count toward the cap
+        if (size > maxBasketSize && Arrays.stream(basket, 0, size).distinct().count() > maxBasketSize) {
+            return 1;
+        }
+        counter.addBasket(basket, size);
+        return 0;
+    }
+    
+    private int insert(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO product_affinities (tenant_id, shopify_product_id, " +
+                "related_shopify_product_id, rank, co_occurrences, confidence, lift, computed_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", batch);
+        int inserted = batch.size();
+        batch.clear();
+        return inserted;
+    }
+    
+    private static double round(Double value) {
+        return value != null ? Math.round(value * 10000.0) / 10000.0 : 0.0;
+    }
+}
@@ -0,0 +1,262 @@
+package com.xeno.service;
+
+import com.xeno.analytics.FacetIndex;
+import com.xeno.analytics.RoaringBitmap;
+import com.xeno.entity.Product;
+import com.xeno.entity.Tenant;
+import com.xeno.event.ProductIngestedEvent;
+import com.xeno.repository.ProductRepository;
+import com.xeno.repository.RowQueryRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.ProductFacetRow;
+import com.xeno.repository.projection.ProductListRow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * In-memory product facets per tenant: vendor, product type, status and tag.
+ * Loaded from the products table at startup, or on first use for tenants onboarded
+ * later, and kept current from committed product ingestion, it answers faceted browsing
+ * by intersecting per-value bitmaps of product ids instead of filtering and grouping the
+ * products table, and lists vendors and types without a {@code SELECT DISTINCT}. While a
+ * tenant's facets are loading, browsing waits for them and vendor and type lists come from
+ * SQL. Tenants larger than the configured limit are not held; browsing is refused for them
+ * and their vendor and type lists come from SQL.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetService {
+    
+    private final ProductRepository productRepository;
+    private final RowQueryRepository rowQueryRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Map<Long, TenantFacets> facets = new ConcurrentHashMap<>();
+    // Facets still streaming from the database: updates are applied, reads wait or go to SQL
+    private final Map<Long, TenantFacets> pending = new ConcurrentHashMap<>();
+    // Tenants over the size limit, not held until restart
+    private final Set<Long> notHeld = ConcurrentHashMap.newKeySet();
+    private final Object loading = new Object();
+    
+    private TransactionTemplate loadTransaction;
+    
+    @Value("${facets.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${facets.max-products-per-tenant:1000000}")
+    private int maxProductsPerTenant;
+    
+    public enum Facet {
+        VENDOR, PRODUCT_TYPE, STATUS, TAG
+    }
+    
+    /**
+     * A page of matching products, newest first, and the value counts of every facet
+     */
+    public record Browse(Page<ProductListRow> products, Map<Facet, Map<String, Long>> facets) {
+    }
+    
+    // What a browse reads from the index: the page's ids, the number matching and the facet counts
+    private record Selection(List<Long> pageIds, long total, Map<Facet, Map<String, Long>> counts) {
+    }
+    
+    private record TenantFacets(FacetIndex<Facet> index, ReadWriteLock lock) {
+        
+        <R> R read(Function<FacetIndex<Facet>, R> reader) {
+            lock.readLock().lock();
+            try {
+                return reader.apply(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        void put(long id, Map<Facet, List<String>> values) {
+            lock.writeLock().lock();
+            try {
+                index.put(id, values);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        // Facets first used from an after-commit listener need a transaction of their own
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Load every tenant's facets after startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFacets() {
+        if (!enabled) {
+            return;
+        }
+        
+        long started = System.nanoTime();
+        long totalBytes = 0;
+        for (Tenant tenant : tenantRepository.findAll()) {
+            TenantFacets tenantFacets = facets(tenant.getId(), false);
+            if (tenantFacets != null) {
+                totalBytes += tenantFacets.read(FacetIndex::memoryBytes);
+            }
+        }
+        log.info("Loaded product facets for {} tenants ({} KB) in {} ms", facets.size(), totalBytes / 1024,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductIngested(ProductIngestedEvent event) {
+        TenantFacets tenantFacets = facets(event.tenantId(), false);
+        if (tenantFacets == null) {
+            return;
+        }
+        
+        tenantFacets.put(event.productId(), values(event.vendor(), event.productType(), event.status(), event.tags()));
+        if (tenantFacets.read(FacetIndex::size) > maxProductsPerTenant) {
+            notHeld.add(event.tenantId());
+            facets.remove(event.tenantId());
+            pending.remove(event.tenantId());
+            log.info("Tenant {} exceeded {} products, product facets are no longer held",
+                    event.tenantId(), maxProductsPerTenant);
+        }
+    }
+    
+    /**
+     * Products matching the selected values, one of them per filtered facet, with counts for
+     * at most {@code facetLimit} values of each facet. Not available for tenants whose facets
+     * are not held.
+     */
+    @Transactional(readOnly = true)
+    public Browse browse(Long tenantId, Map<Facet, Set<String>> selected, Pageable pageable, int facetLimit) {
+        TenantFacets tenantFacets = facets(tenantId, true);
+        if (tenantFacets == null && enabled && !notHeld.contains(tenantId)) {
+            // Browsing has no SQL fallback, so wait out a load under way
+            synchronized (loading) {
+                tenantFacets = facets.get(tenantId);
+            }
+        }
+        if (tenantFacets == null) {
+            throw new RuntimeException("Faceted browsing is not available for stores with more than "
+                    + maxProductsPerTenant + " products; filter the product list instead");
+        }
+        Selection selection = tenantFacets.read(index -> {
+            RoaringBitmap matching = index.matching(selected);
+            List<Long> pageIds = Arrays.stream(matching.descending(pageable.getOffset(), pageable.getPageSize()))
+                    .boxed()
+                    .toList();
+            return new Selection(pageIds, matching.cardinality(), index.counts(selected, facetLimit));
+        });
+        
+        // Rows are loaded after the lock is released
+        List<ProductListRow> rows = selection.pageIds().isEmpty() ? List.of()
+                : rowQueryRepository.findRanked(Product.class, ProductListRow.class, ProductRepository.ofTenant(tenantId),
+                        selection.pageIds(), PageRequest.of(0, selection.pageIds().size())).getContent();
+        return new Browse(new PageImpl<>(rows, pageable, selection.total()), selection.counts());
+    }
+    
+    /**
+     * Every vendor or product type of a tenant's products, or empty when the tenant is not held in memory
+     */
+    public Optional<List<String>> getValues(Long tenantId, Facet facet) {
+        TenantFacets tenantFacets = facets(tenantId, true);
+        if (tenantFacets == null) {
+            return Optional.empty();
+        }
+        return Optional.of(tenantFacets.read(index -> index.values(facet)));
+    }
+    
+    /**
+     * The tenant's facets, loaded now if the tenant was onboarded after startup, or null when they are not held.
+     * Facets another thread is still loading are returned for updates but not for reads.
+     */
+    private TenantFacets facets(Long tenantId, boolean forRead) {
+        TenantFacets tenantFacets = facets.get(tenantId);
+        if (tenantFacets != null) {
+            return tenantFacets;
+        }
+        tenantFacets = pending.get(tenantId);
+        if (tenantFacets != null) {
+            return forRead ? null : tenantFacets;
+        }
+        if (!enabled || notHeld.contains(tenantId)) {
+            return null;
+        }
+        synchronized (loading) {
+            if (!facets.containsKey(tenantId) && !notHeld.contains(tenantId)) {
+                loadTransaction.executeWithoutResult(status -> load(tenantId));
+            }
+        }
+        return facets.get(tenantId);
+    }
+    
+    private void load(Long tenantId) {
+        if (productRepository.countByTenantId(tenantId) > maxProductsPerTenant) {
+            notHeld.add(tenantId);
+            log.info("Tenant {} has more than {} products, product facets are not held", tenantId, maxProductsPerTenant);
+            return;
+        }
+        
+        // Updates committed while streaming go to the pending facets and a loaded row never
+        // overwrites them; readers only see the facets once every row is in
+        TenantFacets tenantFacets = new TenantFacets(new FacetIndex<>(Facet.class), new ReentrantReadWriteLock());
+        pending.put(tenantId, tenantFacets);
+        try (Stream<ProductFacetRow> rows = productRepository.streamFacetRowsByTenantId(tenantId)) {
+            rows.forEach(row -> {
+                if (!tenantFacets.read(index -> index.contains(row.id()))) {
+                    tenantFacets.put(row.id(), values(row.vendor(), row.productType(), row.status(), row.tags()));
+                }
+            });
+            facets.put(tenantId, tenantFacets);
+            // An update may have pushed the tenant over the limit while streaming
+            if (notHeld.contains(tenantId)) {
+                facets.remove(tenantId);
+            }
+        } finally {
+            pending.remove(tenantId);
+        }
+    }
+    
+    private static Map<Facet, List<String>> values(String vendor, String productType, Product.ProductStatus status,
+                                                  String tags) {
+        Map<Facet, List<String>> values = new EnumMap<>(Facet.class);
+        values.put(Facet.VENDOR, vendor != null ? List.of(vendor) : List.of());
+        values.put(Facet.PRODUCT_TYPE, productType != null ? List.of(productType) : List.of());
+        values.put(Facet.STATUS, status != null ? List.of(status.name()) : List.of());
+        values.put(Facet.TAG, tags != null ? Arrays.stream(tags.split(",")).map(String::trim).toList() : List.of());
+        return values;
+    }
+}
@@ -0,0 +1,175 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.dto.EntityDto;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.repository.OrderRepository;
+import com.xeno.repository.ProductDailySalesRepository;
+import com.xeno.repository.ProductSalesRepository;
+import com.xeno.repository.projection.StockOutRiskRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the product_sales and product_daily_sales rollups.
+ * When an order is ingested its previous line items are taken out of the
+ * per-product totals, daily units and rolling 7- and 30-day unit counts and its
+ * new line items are added, in the same transaction as the order write. The rolling
+ * counts are re-rolled from the daily units each day as the oldest day drops out.
+ * Custom line items without a Shopify product are not tracked.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSalesService {
+    
+    private static final int MAX_RISK_RESULTS = 100;
+    
+    private final ProductSalesRepository productSalesRepository;
+    private final ProductDailySalesRepository dailySalesRepository;
+    private final OrderRepository orderRepository;
+    
+    private record DailyKey(Long shopifyProductId, LocalDate date) {
+    }
+    
+    /**
+     * Apply the change an order upsert made to its products' totals
+     */
+    @EventListener
+    @Transactional
+    public void onOrderIngested(OrderIngestedEvent event) {
+        LocalDate today = LocalDate.now();
+        Map<Long, Delta> deltas = new HashMap<>();
+        Map<DailyKey, Long> dailyDeltas = new HashMap<>();
+        add(deltas, dailyDeltas, event.previous(), -1, today);
+        add(deltas, dailyDeltas, event.current(), 1, today);
+        deltas.values().removeIf(Delta::isZero);
+        dailyDeltas.values().removeIf(quantity -> quantity == 0);
+        
+        if (deltas.isEmpty() && dailyDeltas.isEmpty()) {
+            return;
+        }
+        
+        productSalesRepository.lockShared(event.tenantId());
+        deltas.forEach((shopifyProductId, delta) -> productSalesRepository.applyDelta(
+                event.tenantId(), shopifyProductId, delta.title, delta.quantity, Money.toDecimal(delta.revenue),
+                delta.unitsLast7Days, delta.unitsLast30Days));
+        dailyDeltas.forEach((key, quantity) -> dailySalesRepository.applyDelta(
+                event.tenantId(), key.shopifyProductId(), key.date(), quantity));
+    }
+    
+    /**
+     * Recompute a tenant's product totals from its order items
+     */
+    @Transactional
+    public int rebuild(Long tenantId) {
+        productSalesRepository.lockExclusive(tenantId);
+        productSalesRepository.deleteByTenantId(tenantId);
+        dailySalesRepository.deleteByTenantId(tenantId);
+        int products = productSalesRepository.rebuildFromOrderItems(tenantId);
+        int days = dailySalesRepository.rebuildFromOrderItems(tenantId);
+        productSalesRepository.rollWindows(tenantId, LocalDate.now());
+        log.info("Rebuilt sales totals for {} products of tenant {} from {} product days", products, tenantId, days);
+        return products;
+    }
+    
+    /**
+     * Whether a tenant has orders but no product totals or daily units yet
+     */
+    @Transactional(readOnly = true)
+    public boolean needsBackfill(Long tenantId) {
+        return (!productSalesRepository.existsByTenantId(tenantId) || !dailySalesRepository.existsByTenantId(tenantId))
+                && orderRepository.countByTenantId(tenantId) > 0;
+    }
+    
+    /**
+     * Recompute the rolling unit counts so they cover the days up to today
+     */
+    @Transactional
+    public int rollWindows(Long tenantId) {
+        productSalesRepository.lockExclusive(tenantId);
+        return productSalesRepository.rollWindows(tenantId, LocalDate.now());
+    }
+    
+    /**
+     * Products most at risk of selling out, fewest days of stock first
+     */
+    @Transactional(readOnly = true)
+    public List<EntityDto.StockOutRiskDto> getStockOutRisk(Long tenantId, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_RISK_RESULTS));
+        LocalDate today = LocalDate.now();
+        return productSalesRepository.findStockOutRisk(tenantId, PageRequest.of(0, size)).stream()
+                .map(row -> toRiskDto(row, today))
+                .toList();
+    }
+    
+    private static EntityDto.StockOutRiskDto toRiskDto(StockOutRiskRow row, LocalDate today) {
+        int inventory = row.inventoryQuantity() != null ? row.inventoryQuantity() : 0;
+        long units7 = row.unitsLast7Days() != null ? row.unitsLast7Days() : 0;
+        double velocity = Math.max(units7 / 7.0, row.unitsLast30Days() / 30.0);
+        double daysRemaining = Math.max(0, inventory / velocity);
+        return EntityDto.StockOutRiskDto.builder()
+                .productId(row.productId())
+                .shopifyProductId(row.shopifyProductId())
+                .title(row.title())
+                .sku(row.sku())
+                .inventoryQuantity(inventory)
+                .unitsLast7Days(units7)
+                .unitsLast30Days(row.unitsLast30Days())
+                .dailyVelocity(Math.round(velocity * 100.0) / 100.0)
+                .daysOfStockRemaining(Math.round(daysRemaining * 10.0) / 10.0)
+                .projectedStockOutDate(today.plusDays((long) Math.floor(daysRemaining)))
+                .build();
+    }
+    
+    private void add(Map<Long, Delta> deltas, Map<DailyKey, Long> dailyDeltas, OrderSnapshot snapshot, int sign, LocalDate today) {
+        if (snapshot == null) {
+            return;
+        }
+        LocalDate date = snapshot.processedAt() != null ? snapshot.processedAt().toLocalDate() : null;
+        long age = date != null ? today.toEpochDay() - date.toEpochDay() : -1;
+        
+        for (OrderSnapshot.LineSnapshot line : snapshot.lines()) {
+            if (line.shopifyProductId() == null) {
+                continue;
+            }
+            long quantity = (long) line.quantity() * sign;
+            Delta delta = deltas.computeIfAbsent(line.shopifyProductId(), id -> new Delta());
+            delta.quantity += quantity;
+            delta.revenue += Money.toMinorUnits(line.price()) * line.quantity() * sign;
+            if (age >= 0 && age < 7) delta.unitsLast7Days += quantity;
+            if (age >= 0 && age < 30) delta.unitsLast30Days += quantity;
+            if (sign > 0 && line.title() != null) {
+                delta.title = line.title();
+            }
+            if (date != null) {
+                dailyDeltas.merge(new DailyKey(line.shopifyProductId(), date), quantity, Long::sum);
+            }
+        }
+    }
+    
+    /**
+     * Net change to a single product's totals, with revenue in minor units
+     */
+    private static class Delta {
+        private long quantity;
+        private long revenue;
+        private long unitsLast7Days;
+        private long unitsLast30Days;
+        private String title;
+        
+        boolean isZero() {
+            return quantity == 0 && revenue == 0 && unitsLast7Days == 0 && unitsLast30Days == 0;
+        }
+    }
+}
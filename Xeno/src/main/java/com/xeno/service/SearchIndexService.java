@@ -0,0 +1,283 @@
+package com.xeno.service;
+
+import com.xeno.analytics.TrigramIndex;
+import com.xeno.entity.Tenant;
+import com.xeno.event.CustomerIngestedEvent;
+import com.xeno.event.ProductIngestedEvent;
+import com.xeno.repository.CustomerRepository;
+import com.xeno.repository.ProductRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.CustomerSearchRow;
+import com.xeno.repository.projection.ProductSearchRow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * In-memory trigram search over customers and products per tenant.
+ * Loaded from the database at startup and kept current from committed ingestion,
+ * it answers list searches with ids ranked by relevance instead of a
+ * {@code LIKE '%term%'} scan of the tenant's rows. Customers are indexed by full name
+ * then email, products by title then vendor. Tenants onboarded after startup are
+ * indexed on first use, and searches fall back to SQL until an index has finished
+ * loading. Tenants larger than the configured limit, queries shorter
+ * than {@value TrigramIndex#MIN_QUERY_LENGTH} characters and queries matching more
+ * than the configured number of results are left to SQL, which pages and counts
+ * every match.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndexService {
+    
+    private final CustomerRepository customerRepository;
+    private final ProductRepository productRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Indexes customers = new Indexes("customers", this::countCustomers, this::loadCustomers);
+    private final Indexes products = new Indexes("products", this::countProducts, this::loadProducts);
+    private final Object loading = new Object();
+    
+    private TransactionTemplate loadTransaction;
+    
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${search.index.max-documents-per-tenant:1000000}")
+    private int maxDocumentsPerTenant;
+    
+    // Share of a query's trigrams a result must contain; 1.0 allows substring matches only
+    @Value("${search.min-similarity:0.6}")
+    private double minSimilarity;
+    
+    // Queries matching more documents than this are answered by SQL
+    @Value("${search.max-results:500}")
+    private int maxResults;
+    
+    private record TenantIndex(TrigramIndex index, ReadWriteLock lock) {
+        
+        List<TrigramIndex.Hit> search(String query, double minSimilarity, int limit) {
+            lock.readLock().lock();
+            try {
+                return index.search(query, minSimilarity, limit);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        void write(Consumer<TrigramIndex> writer) {
+            lock.writeLock().lock();
+            try {
+                writer.accept(index);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * The indexes of one kind of document, with how to count and stream a tenant's documents
+     */
+    private record Indexes(String kind, ToLongFunction<Long> counter, BiConsumer<Long, TenantIndex> loader,
+                           Map<Long, TenantIndex> held, Map<Long, TenantIndex> pending, Set<Long> notHeld) {
+        
+        Indexes(String kind, ToLongFunction<Long> counter, BiConsumer<Long, TenantIndex> loader) {
+            // Indexes still streaming stay in pending, taking updates but not searches; tenants
+            // over the size limit stay in notHeld, left to SQL until restart
+            this(kind, counter, loader, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        // An index first used from an after-commit listener needs a transaction of its own
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Index every tenant's customers and products after startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexes() {
+        if (!enabled) {
+            return;
+        }
+        
+        long started = System.nanoTime();
+        long totalBytes = 0;
+        for (Tenant tenant : tenantRepository.findAll()) {
+            for (Indexes indexes : List.of(customers, products)) {
+                TenantIndex index = index(indexes, tenant.getId(), false);
+                if (index != null) {
+                    totalBytes += index.index().memoryBytes();
+                }
+            }
+        }
+        log.info("Loaded search indexes for {} tenants ({} KB) in {} ms", customers.held().size(), totalBytes / 1024,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerIngested(CustomerIngestedEvent event) {
+        update(customers, event.tenantId(), index ->
+                index.put(event.customerId(), fullName(event.firstName(), event.lastName()), event.email()));
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductIngested(ProductIngestedEvent event) {
+        update(products, event.tenantId(), index ->
+                index.put(event.productId(), event.title(), event.vendor()));
+    }
+    
+    /**
+     * Ids of the customers matching a query, most relevant first, or empty when SQL has to answer it
+     */
+    public Optional<List<Long>> searchCustomers(Long tenantId, String query) {
+        return search(customers, tenantId, query);
+    }
+    
+    /**
+     * Ids of the products matching a query, most relevant first, or empty when SQL has to answer it
+     */
+    public Optional<List<Long>> searchProducts(Long tenantId, String query) {
+        return search(products, tenantId, query);
+    }
+    
+    private Optional<List<Long>> search(Indexes indexes, Long tenantId, String query) {
+        if (!TrigramIndex.accepts(query)) {
+            return Optional.empty();
+        }
+        TenantIndex index = index(indexes, tenantId, true);
+        if (index == null) {
+            return Optional.empty();
+        }
+        // One more than the cap tells a complete result from a truncated one
+        List<TrigramIndex.Hit> hits = index.search(query, minSimilarity, maxResults + 1);
+        if (hits.size() > maxResults) {
+            return Optional.empty();
+        }
+        return Optional.of(hits.stream().map(TrigramIndex.Hit::id).toList());
+    }
+    
+    /**
+     * The tenant's index, loaded now if the tenant was onboarded after startup, or null when it is not held.
+     * An index another thread is still loading is returned for updates but not for searches.
+     */
+    private TenantIndex index(Indexes indexes, Long tenantId, boolean forRead) {
+        TenantIndex index = indexes.held().get(tenantId);
+        if (index != null) {
+            return index;
+        }
+        index = indexes.pending().get(tenantId);
+        if (index != null) {
+            return forRead ? null : index;
+        }
+        if (!enabled || indexes.notHeld().contains(tenantId)) {
+            return null;
+        }
+        synchronized (loading) {
+            if (!indexes.held().containsKey(tenantId) && !indexes.notHeld().contains(tenantId)) {
+                loadTransaction.executeWithoutResult(status -> load(indexes, tenantId));
+            }
+        }
+        return indexes.held().get(tenantId);
+    }
+    
+    private void load(Indexes indexes, Long tenantId) {
+        if (indexes.counter().applyAsLong(tenantId) > maxDocumentsPerTenant) {
+            indexes.notHeld().add(tenantId);
+            log.info("Tenant {} has more than {} {}, search falls back to SQL", tenantId, maxDocumentsPerTenant,
+                    indexes.kind());
+            return;
+        }
+        
+        // Updates committed while streaming go to the pending index and a loaded row never
+        // overwrites them; searches only see the index once every row is in
+        TenantIndex index = new TenantIndex(new TrigramIndex(), new ReentrantReadWriteLock());
+        indexes.pending().put(tenantId, index);
+        try {
+            indexes.loader().accept(tenantId, index);
+            index.write(i -> {
+                if (!indexes.notHeld().contains(tenantId)) {
+                    indexes.held().put(tenantId, index);
+                }
+            });
+        } finally {
+            indexes.pending().remove(tenantId);
+        }
+    }
+    
+    private long countCustomers(Long tenantId) {
+        return customerRepository.countByTenantId(tenantId);
+    }
+    
+    private long countProducts(Long tenantId) {
+        return productRepository.countByTenantId(tenantId);
+    }
+    
+    private void loadCustomers(Long tenantId, TenantIndex index) {
+        try (Stream<CustomerSearchRow> rows = customerRepository.streamSearchRowsByTenantId(tenantId)) {
+            rows.forEach(row -> index.write(i -> {
+                if (!i.contains(row.id())) {
+                    i.put(row.id(), fullName(row.firstName(), row.lastName()), row.email());
+                }
+            }));
+        }
+    }
+    
+    private void loadProducts(Long tenantId, TenantIndex index) {
+        try (Stream<ProductSearchRow> rows = productRepository.streamSearchRowsByTenantId(tenantId)) {
+            rows.forEach(row -> index.write(i -> {
+                if (!i.contains(row.id())) {
+                    i.put(row.id(), row.title(), row.vendor());
+                }
+            }));
+        }
+    }
+    
+    private void update(Indexes indexes, Long tenantId, Consumer<TrigramIndex> writer) {
+        TenantIndex index = index(indexes, tenantId, false);
+        if (index == null) {
+            return;
+        }
+        index.write(writer.andThen(i -> {
+            if (i.size() > maxDocumentsPerTenant) {
+                indexes.notHeld().add(tenantId);
+                indexes.held().remove(tenantId);
+                indexes.pending().remove(tenantId);
+                log.info("Tenant {} exceeded {} {}, search falls back to SQL", tenantId, maxDocumentsPerTenant,
+                        indexes.kind());
+            }
+        }));
+    }
+    
+    private static String fullName(String firstName, String lastName) {
+        if (firstName == null) {
+            return lastName;
+        }
+        return lastName != null ? firstName + " " + lastName : firstName;
+    }
+}
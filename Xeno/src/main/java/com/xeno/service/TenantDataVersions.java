@@ -0,0 +1,77 @@
+package com.xeno.service;
+
+import com.xeno.event.TenantDataEvent;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monotonic per-tenant data versions, one counter per data type, bumped when ingestion commits.
+ * Read endpoints derive an ETag from the versions they depend on and answer
+ * If-None-Match with 304 before any query runs. The ETag also carries a process
+ * epoch, since counters restart at zero, and the current date, since some
+ * widgets are relative to today.
+ */
+@Component
+public class TenantDataVersions {
+    
+    private static final String NO_CACHE = CacheControl.noCache().cachePrivate().getHeaderValue();
+    
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, AtomicLongArray> versions = new ConcurrentHashMap<>();
+    
+    /**
+     * Bump the versions of the changed data types. Ordered last among commit listeners so the
+     * dashboard cache and in-memory views already reflect the change when a new ETag is served.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onTenantDataChanged(TenantDataEvent event) {
+        AtomicLongArray tenant = versions.computeIfAbsent(event.tenantId(),
+                id -> new AtomicLongArray(TenantDataEvent.DataType.values().length));
+        for (TenantDataEvent.DataType type : TenantDataEvent.DataType.values()) {
+            if (event.affects(type)) {
+                tenant.incrementAndGet(type.ordinal());
+            }
+        }
+    }
+    
+    public long getVersion(Long tenantId, TenantDataEvent.DataType type) {
+        AtomicLongArray tenant = versions.get(tenantId);
+        return tenant != null ? tenant.get(type.ordinal()) : 0;
+    }
+    
+    /**
+     * ETag for a response built from the given data types of a tenant
+     */
+    public String etag(Long tenantId, TenantDataEvent.DataType... dependsOn) {
+        StringBuilder etag = new StringBuilder("\"").append(epoch).append('-').append(LocalDate.now().toEpochDay());
+        for (TenantDataEvent.DataType type : dependsOn) {
+            etag.append('-').append(getVersion(tenantId, type));
+        }
+        return etag.append('"').toString();
+    }
+    
+    /**
+     * Set the ETag for the response and report whether the client's copy is still current,
+     * in which case the response has been turned into a 304 and the handler should return null.
+     * Responses are marked private and no-cache so browsers keep them and revalidate on every use.
+     */
+    public boolean checkNotModified(NativeWebRequest request, Long tenantId, TenantDataEvent.DataType... dependsOn) {
+        HttpServletResponse response = request.getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, NO_CACHE);
+        }
+        return request.checkNotModified(etag(tenantId, dependsOn));
+    }
+}
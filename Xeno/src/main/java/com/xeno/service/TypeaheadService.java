@@ -0,0 +1,533 @@
+package com.xeno.service;
+
+import com.xeno.analytics.Money;
+import com.xeno.analytics.PrefixTrie;
+import com.xeno.entity.Customer;
+import com.xeno.entity.Product;
+import com.xeno.entity.Tenant;
+import com.xeno.event.CustomerIngestedEvent;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.event.ProductIngestedEvent;
+import com.xeno.repository.CustomerRepository;
+import com.xeno.repository.ProductRepository;
+import com.xeno.repository.ProductSalesRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.CustomerSearchRow;
+import com.xeno.repository.projection.ProductSearchRow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Search-as-you-type suggestions from in-memory prefix tries per tenant.
+ * Products complete on any word of their title, their SKU and their vendor, ranked by
+ * units sold; customers complete on any word of their name and their email, ranked by
+ * lifetime spend. Loaded from the database at startup and kept current from committed
+ * product, customer and order ingestion, a suggestion is a walk down the trie to a
+ * cached top list rather than a query. Tenants onboarded after startup are loaded on
+ * first use, and suggestions come from SQL until a trie has finished loading. Tenants larger than the configured limit are answered by the list
+ * searches' SQL instead, without popularity ranking.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TypeaheadService {
+    
+    // Title words a product completes on, so long titles don't multiply keys
+    private static final int MAX_TITLE_WORDS = 4;
+    
+    private final CustomerRepository customerRepository;
+    private final ProductRepository productRepository;
+    private final ProductSalesRepository productSalesRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Tries<ProductTrie> products = new Tries<>("products", this::countProducts, ProductTrie::new,
+            this::loadProducts);
+    private final Tries<CustomerTrie> customers = new Tries<>("customers", this::countCustomers, CustomerTrie::new,
+            this::loadCustomers);
+    private final Object loading = new Object();
+    
+    private TransactionTemplate loadTransaction;
+    
+    @Value("${search.suggest.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${search.suggest.max-documents-per-tenant:1000000}")
+    private int maxDocumentsPerTenant;
+    
+    public enum Kind {
+        PRODUCT, SKU, VENDOR, CUSTOMER, EMAIL
+    }
+    
+    /**
+     * One completion: the product or customer it opens (none for a vendor), the text
+     * that matched and a line of context
+     */
+    public record Suggestion(Kind kind, Long id, String text, String detail) {
+    }
+    
+    private record Guarded<T>(T trie, ReadWriteLock lock) {
+        
+        <R> R read(Function<T, R> reader) {
+            lock.readLock().lock();
+            try {
+                return reader.apply(trie);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        void write(Consumer<T> writer) {
+            lock.writeLock().lock();
+            try {
+                writer.accept(trie);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * The tries of one kind of document, with how to count and stream a tenant's documents
+     */
+    private record Tries<T extends Sized>(String kind, ToLongFunction<Long> counter, Supplier<T> factory,
+                                          BiConsumer<Long, Guarded<T>> loader, Map<Long, Guarded<T>> held,
+                                          Map<Long, Guarded<T>> pending, Set<Long> notHeld) {
+        
+        Tries(String kind, ToLongFunction<Long> counter, Supplier<T> factory, BiConsumer<Long, Guarded<T>> loader) {
+            // Tries still streaming stay in pending, taking updates but not suggestions; tenants
+            // over the size limit stay in notHeld, left to SQL until restart
+            this(kind, counter, factory, loader, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+                    ConcurrentHashMap.newKeySet());
+        }
+    }
+    
+    @PostConstruct
+    void init() {
+        // A trie first used from an after-commit listener needs a transaction of its own
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Load every tenant's suggestion tries after startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadTries() {
+        if (!enabled) {
+            return;
+        }
+        
+        long started = System.nanoTime();
+        long totalBytes = 0;
+        for (Tenant tenant : tenantRepository.findAll()) {
+            Guarded<ProductTrie> productTrie = trie(products, tenant.getId(), false);
+            if (productTrie != null) {
+                totalBytes += productTrie.read(ProductTrie::memoryBytes);
+            }
+            Guarded<CustomerTrie> customerTrie = trie(customers, tenant.getId(), false);
+            if (customerTrie != null) {
+                totalBytes += customerTrie.read(CustomerTrie::memoryBytes);
+            }
+        }
+        log.info("Loaded suggestion tries for {} tenants ({} KB) in {} ms", products.held().size(), totalBytes / 1024,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductIngested(ProductIngestedEvent event) {
+        Guarded<ProductTrie> trie = trie(products, event.tenantId(), false);
+        if (trie == null) {
+            return;
+        }
+        
+        // Units sold only change with orders, so a known product keeps the count it has
+        Long unitsSold = null;
+        if (!trie.read(t -> t.contains(event.productId()))) {
+            unitsSold = event.shopifyProductId() != null
+                    ? productSalesRepository.findQuantitySold(event.tenantId(), event.shopifyProductId()).orElse(0L) : 0L;
+        }
+        Long units = unitsSold;
+        update(products, event.tenantId(), t -> t.put(event.productId(), event.shopifyProductId(),
+                event.title(), event.vendor(), event.sku(), units));
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerIngested(CustomerIngestedEvent event) {
+        update(customers, event.tenantId(), t -> t.put(event.customerId(), event.firstName(),
+                event.lastName(), event.email(), event.totalSpent()));
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderIngested(OrderIngestedEvent event) {
+        Guarded<ProductTrie> trie = trie(products, event.tenantId(), false);
+        if (trie == null) {
+            return;
+        }
+        
+        Map<Long, Long> deltas = new HashMap<>();
+        addUnits(deltas, event.previous(), -1);
+        addUnits(deltas, event.current(), 1);
+        deltas.values().removeIf(units -> units == 0);
+        if (!deltas.isEmpty()) {
+            trie.write(t -> deltas.forEach(t::addUnits));
+        }
+    }
+    
+    /**
+     * Up to {@code limit} products, SKUs and vendors starting with {@code prefix}, best selling first
+     */
+    public List<Suggestion> suggestProducts(Long tenantId, String prefix, int limit) {
+        Guarded<ProductTrie> trie = trie(products, tenantId, true);
+        if (trie != null) {
+            return trie.read(t -> t.complete(prefix, limit));
+        }
+        return productRepository.searchByTenantId(tenantId, prefix.trim(), PageRequest.of(0, limit)).stream()
+                .map(TypeaheadService::productSuggestion)
+                .toList();
+    }
+    
+    /**
+     * Up to {@code limit} customers whose name or email starts with {@code prefix}, highest spend first
+     */
+    public List<Suggestion> suggestCustomers(Long tenantId, String prefix, int limit) {
+        Guarded<CustomerTrie> trie = trie(customers, tenantId, true);
+        if (trie != null) {
+            return trie.read(t -> t.complete(prefix, limit));
+        }
+        return customerRepository.searchByTenantId(tenantId, prefix.trim(), PageRequest.of(0, limit)).stream()
+                .map(TypeaheadService::customerSuggestion)
+                .toList();
+    }
+    
+    /**
+     * The tenant's trie, loaded now if the tenant was onboarded after startup, or null when it is not held.
+     * A trie another thread is still loading is returned for updates but not for suggestions.
+     */
+    private <T extends Sized> Guarded<T> trie(Tries<T> tries, Long tenantId, boolean forRead) {
+        Guarded<T> trie = tries.held().get(tenantId);
+        if (trie != null) {
+            return trie;
+        }
+        trie = tries.pending().get(tenantId);
+        if (trie != null) {
+            return forRead ? null : trie;
+        }
+        if (!enabled || tries.notHeld().contains(tenantId)) {
+            return null;
+        }
+        synchronized (loading) {
+            if (!tries.held().containsKey(tenantId) && !tries.notHeld().contains(tenantId)) {
+                loadTransaction.executeWithoutResult(status -> load(tries, tenantId));
+            }
+        }
+        return tries.held().get(tenantId);
+    }
+    
+    private <T extends Sized> void load(Tries<T> tries, Long tenantId) {
+        if (tries.counter().applyAsLong(tenantId) > maxDocumentsPerTenant) {
+            tries.notHeld().add(tenantId);
+            log.info("Tenant {} has more than {} {}, suggestions fall back to SQL", tenantId, maxDocumentsPerTenant,
+                    tries.kind());
+            return;
+        }
+        
+        // Updates committed while streaming go to the pending trie and a loaded row never
+        // overwrites them; suggestions only come from the trie once every row is in
+        Guarded<T> trie = new Guarded<>(tries.factory().get(), new ReentrantReadWriteLock());
+        tries.pending().put(tenantId, trie);
+        try {
+            tries.loader().accept(tenantId, trie);
+            trie.write(t -> {
+                if (!tries.notHeld().contains(tenantId)) {
+                    tries.held().put(tenantId, trie);
+                }
+            });
+        } finally {
+            tries.pending().remove(tenantId);
+        }
+    }
+    
+    private long countProducts(Long tenantId) {
+        return productRepository.countByTenantId(tenantId);
+    }
+    
+    private long countCustomers(Long tenantId) {
+        return customerRepository.countByTenantId(tenantId);
+    }
+    
+    private void loadProducts(Long tenantId, Guarded<ProductTrie> trie) {
+        try (Stream<ProductSearchRow> rows = productRepository.streamSearchRowsByTenantId(tenantId)) {
+            rows.forEach(row -> trie.write(t -> {
+                if (!t.contains(row.id())) {
+                    t.put(row.id(), row.shopifyProductId(), row.title(), row.vendor(), row.sku(),
+                            row.unitsSold() != null ? row.unitsSold() : 0);
+                }
+            }));
+        }
+    }
+    
+    private void loadCustomers(Long tenantId, Guarded<CustomerTrie> trie) {
+        try (Stream<CustomerSearchRow> rows = customerRepository.streamSearchRowsByTenantId(tenantId)) {
+            rows.forEach(row -> trie.write(t -> {
+                if (!t.contains(row.id())) {
+                    t.put(row.id(), row.firstName(), row.lastName(), row.email(), row.totalSpent());
+                }
+            }));
+        }
+    }
+    
+    private <T extends Sized> void update(Tries<T> tries, Long tenantId, Consumer<T> writer) {
+        Guarded<T> trie = trie(tries, tenantId, false);
+        if (trie == null) {
+            return;
+        }
+        trie.write(writer.andThen(t -> {
+            if (t.size() > maxDocumentsPerTenant) {
+                tries.notHeld().add(tenantId);
+                tries.held().remove(tenantId);
+                tries.pending().remove(tenantId);
+                log.info("Tenant {} exceeded {} {}, suggestions fall back to SQL", tenantId, maxDocumentsPerTenant,
+                        tries.kind());
+            }
+        }));
+    }
+    
+    private static void addUnits(Map<Long, Long> deltas, OrderSnapshot order, int sign) {
+        if (order == null) {
+            return;
+        }
+        for (OrderSnapshot.LineSnapshot line : order.lines()) {
+            if (line.shopifyProductId() != null) {
+                deltas.merge(line.shopifyProductId(), (long) sign * line.quantity(), Long::sum);
+            }
+        }
+    }
+    
+    private static Suggestion productSuggestion(Product product) {
+        return new Suggestion(Kind.PRODUCT, product.getId(), product.getTitle(), product.getVendor());
+    }
+    
+    private static Suggestion customerSuggestion(Customer customer) {
+        return new Suggestion(Kind.CUSTOMER, customer.getId(),
+                fullName(customer.getFirstName(), customer.getLastName()), customer.getEmail());
+    }
+    
+    private static String fullName(String firstName, String lastName) {
+        if (firstName == null) {
+            return lastName;
+        }
+        return lastName != null ? firstName + " " + lastName : firstName;
+    }
+    
+    private static List<Suggestion> values(List<PrefixTrie.Completion<Suggestion>> completions) {
+        return completions.stream().map(PrefixTrie.Completion::value).toList();
+    }
+    
+    private interface Sized {
+        int size();
+    }
+    
+    /**
+     * Products under their title words and SKU, and vendors scored by the units of all their products
+     */
+    private static final class ProductTrie implements Sized {
+        
+        private record Entry(Long shopifyProductId, String title, String vendor, String sku, long unitsSold,
+                             PrefixTrie.Handle<Suggestion> productHandle, PrefixTrie.Handle<Suggestion> skuHandle) {
+        }
+        
+        private record Vendor(PrefixTrie.Handle<Suggestion> handle, int products) {
+        }
+        
+        private final PrefixTrie<Suggestion> trie = new PrefixTrie<>();
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final Map<Long, Long> productIdsByShopifyId = new HashMap<>();
+        // Keyed by the vendor name in lower case, so spellings differing only in case share one entry
+        private final Map<String, Vendor> vendors = new HashMap<>();
+        
+        @Override
+        public int size() {
+            return entries.size();
+        }
+        
+        boolean contains(long id) {
+            return entries.containsKey(id);
+        }
+        
+        /**
+         * Add or replace a product; {@code unitsSold} null keeps the count it already has
+         */
+        void put(long id, Long shopifyProductId, String title, String vendor, String sku, Long unitsSold) {
+            Entry existing = entries.get(id);
+            long units = unitsSold != null || existing == null ? Objects.requireNonNullElse(unitsSold, 0L)
+                    : existing.unitsSold();
+            if (existing != null) {
+                if (Objects.equals(existing.shopifyProductId(), shopifyProductId) && Objects.equals(existing.title(), title)
+                        && Objects.equals(existing.vendor(), vendor) && Objects.equals(existing.sku(), sku)
+                        && existing.unitsSold() == units) {
+                    return;
+                }
+                remove(id, existing);
+            }
+            
+            PrefixTrie.Handle<Suggestion> product = trie.add(new Suggestion(Kind.PRODUCT, id, title, vendor), units,
+                    PrefixTrie.wordStarts(title, MAX_TITLE_WORDS));
+            PrefixTrie.Handle<Suggestion> skuHandle = sku == null || sku.isBlank() ? null
+                    : trie.add(new Suggestion(Kind.SKU, id, sku, title), units, List.of(sku));
+            entries.put(id, new Entry(shopifyProductId, title, vendor, sku, units, product, skuHandle));
+            if (shopifyProductId != null) {
+                productIdsByShopifyId.put(shopifyProductId, id);
+            }
+            if (vendor != null && !vendor.isBlank()) {
+                String key = vendor.toLowerCase(Locale.ROOT);
+                Vendor entry = vendors.get(key);
+                if (entry == null) {
+                    vendors.put(key, new Vendor(trie.add(new Suggestion(Kind.VENDOR, null, vendor, null), units,
+                            PrefixTrie.wordStarts(vendor, MAX_TITLE_WORDS)), 1));
+                } else {
+                    trie.setScore(entry.handle(), entry.handle().score() + units);
+                    vendors.put(key, new Vendor(entry.handle(), entry.products() + 1));
+                }
+            }
+        }
+        
+        void addUnits(long shopifyProductId, long delta) {
+            Long id = productIdsByShopifyId.get(shopifyProductId);
+            Entry entry = id != null ? entries.get(id) : null;
+            if (entry == null) {
+                return;
+            }
+            long units = entry.unitsSold() + delta;
+            trie.setScore(entry.productHandle(), units);
+            if (entry.skuHandle() != null) {
+                trie.setScore(entry.skuHandle(), units);
+            }
+            if (entry.vendor() != null) {
+                Vendor vendor = vendors.get(entry.vendor().toLowerCase(Locale.ROOT));
+                if (vendor != null) {
+                    trie.setScore(vendor.handle(), vendor.handle().score() + delta);
+                }
+            }
+            entries.put(id, new Entry(entry.shopifyProductId(), entry.title(), entry.vendor(), entry.sku(), units,
+                    entry.productHandle(), entry.skuHandle()));
+        }
+        
+        List<Suggestion> complete(String prefix, int limit) {
+            return values(trie.complete(prefix, limit));
+        }
+        
+        long memoryBytes() {
+            return trie.memoryBytes() + (long) entries.size() * 96 + (long) vendors.size() * 64;
+        }
+        
+        private void remove(long id, Entry entry) {
+            trie.remove(entry.productHandle());
+            if (entry.skuHandle() != null) {
+                trie.remove(entry.skuHandle());
+            }
+            if (entry.shopifyProductId() != null) {
+                productIdsByShopifyId.remove(entry.shopifyProductId(), id);
+            }
+            if (entry.vendor() != null && !entry.vendor().isBlank()) {
+                String key = entry.vendor().toLowerCase(Locale.ROOT);
+                Vendor vendor = vendors.get(key);
+                if (vendor.products() == 1) {
+                    trie.remove(vendor.handle());
+                    vendors.remove(key);
+                } else {
+                    trie.setScore(vendor.handle(), vendor.handle().score() - entry.unitsSold());
+                    vendors.put(key, new Vendor(vendor.handle(), vendor.products() - 1));
+                }
+            }
+            entries.remove(id);
+        }
+    }
+    
+    /**
+     * Customers under their name words and email, scored by lifetime spend in minor units
+     */
+    private static final class CustomerTrie implements Sized {
+        
+        private record Entry(String name, String email, long spent, PrefixTrie.Handle<Suggestion> customerHandle,
+                             PrefixTrie.Handle<Suggestion> emailHandle) {
+        }
+        
+        private final PrefixTrie<Suggestion> trie = new PrefixTrie<>();
+        private final Map<Long, Entry> entries = new HashMap<>();
+        
+        @Override
+        public int size() {
+            return entries.size();
+        }
+        
+        boolean contains(long id) {
+            return entries.containsKey(id);
+        }
+        
+        void put(long id, String firstName, String lastName, String email, BigDecimal totalSpent) {
+            String name = fullName(firstName, lastName);
+            long spent = Money.toMinorUnits(totalSpent);
+            Entry existing = entries.get(id);
+            if (existing != null) {
+                if (Objects.equals(existing.name(), name) && Objects.equals(existing.email(), email)) {
+                    if (existing.spent() != spent) {
+                        trie.setScore(existing.customerHandle(), spent);
+                        if (existing.emailHandle() != null) {
+                            trie.setScore(existing.emailHandle(), spent);
+                        }
+                        entries.put(id, new Entry(name, email, spent, existing.customerHandle(), existing.emailHandle()));
+                    }
+                    return;
+                }
+                trie.remove(existing.customerHandle());
+                if (existing.emailHandle() != null) {
+                    trie.remove(existing.emailHandle());
+                }
+            }
+            
+            PrefixTrie.Handle<Suggestion> customer = trie.add(new Suggestion(Kind.CUSTOMER, id, name, email), spent,
+                    PrefixTrie.wordStarts(name, MAX_TITLE_WORDS));
+            PrefixTrie.Handle<Suggestion> emailHandle = email == null || email.isBlank() ? null
+                    : trie.add(new Suggestion(Kind.EMAIL, id, email, name), spent, List.of(email));
+            entries.put(id, new Entry(name, email, spent, customer, emailHandle));
+        }
+        
+        List<Suggestion> complete(String prefix, int limit) {
+            return values(trie.complete(prefix, limit));
+        }
+        
+        long memoryBytes() {
+            return trie.memoryBytes() + (long) entries.size() * 80;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.xeno.service;
+
+import com.xeno.analytics.HyperLogLog;
+import com.xeno.dto.DashboardDto;
+import com.xeno.entity.AnalyticsSketch;
+import com.xeno.entity.Tenant;
+import com.xeno.event.OrderIngestedEvent;
+import com.xeno.event.OrderSnapshot;
+import com.xeno.event.ShopifyEventIngestedEvent;
+import com.xeno.repository.AnalyticsSketchRepository;
+import com.xeno.repository.OrderRepository;
+import com.xeno.repository.ShopifyEventRepository;
+import com.xeno.repository.TenantRepository;
+import com.xeno.repository.projection.CustomerActivityRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Approximate distinct counts backed by per-day HyperLogLog sketches.
+ * Committed orders add their customer to the day's UNIQUE_CUSTOMERS sketch and
+ * storefront events add their session to the day's UNIQUE_SESSIONS sketch, both
+ * overall and per event type. Additions collect in small in-memory deltas that
+ * are merged into analytics_sketches in the background; since merging is
+ * idempotent, orders and events written since the last flush are simply
+ * replayed after a restart.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UniqueCountService {
+    
+    /**
+     * Registers per sketch are 2^12, for a standard error of about 1.6% in 4 KB or less
+     */
+    public static final int PRECISION = 12;
+    
+    private static final String ALL = "";
+    private static final int MAX_RANGE_DAYS = 366;
+    
+    private final AnalyticsSketchRepository sketchRepository;
+    private final OrderRepository orderRepository;
+    private final ShopifyEventRepository shopifyEventRepository;
+    private final TenantRepository tenantRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Map<Key, HyperLogLog> pending = new ConcurrentHashMap<>();
+    
+    // Rows committed while a flush was running may carry an earlier timestamp
+    @Value("${analytics.sketch.replay-margin-minutes:5}")
+    private long replayMarginMinutes;
+    
+    private TransactionTemplate transaction;
+    
+    private record Key(Long tenantId, AnalyticsSketch.Metric metric, String dimension, LocalDate date) {
+    }
+    
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Record committed changes before data versions are bumped, so a fresh ETag never serves stale counts
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void onOrderIngested(OrderIngestedEvent event) {
+        OrderSnapshot order = event.current();
+        if (order.customerId() != null && order.processedAt() != null) {
+            addCustomer(pending, event.tenantId(), order.customerId(), order.processedAt());
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void onEventIngested(ShopifyEventIngestedEvent event) {
+        addSession(pending, event);
+    }
+    
+    /**
+     * Replay orders and events written since each tenant's sketches were last saved
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void replayRecent() {
+        long replayed = 0;
+        for (Tenant tenant : tenantRepository.findAll()) {
+            Optional<LocalDateTime> savedAt = sketchRepository.findLastUpdatedAt(tenant.getId());
+            if (savedAt.isEmpty()) {
+                continue;
+            }
+            LocalDateTime since = savedAt.get().minusMinutes(replayMarginMinutes);
+            try (Stream<CustomerActivityRow> orders = orderRepository.streamCustomerActivitySince(tenant.getId(), since)) {
+                for (CustomerActivityRow row : (Iterable<CustomerActivityRow>) orders::iterator) {
+                    addCustomer(pending, tenant.getId(), row.customerId(), row.processedAt());
+                    replayed++;
+                }
+            }
+            try (Stream<ShopifyEventIngestedEvent> events = shopifyEventRepository.streamCreatedSince(tenant.getId(), since)) {
+                for (ShopifyEventIngestedEvent event : (Iterable<ShopifyEventIngestedEvent>) events::iterator) {
+                    addSession(pending, event);
+                    replayed++;
+                }
+            }
+        }
+        log.info("Replayed {} orders and events into unique count sketches", replayed);
+    }
+    
+    /**
+     * Merge pending additions into the stored sketches
+     */
+    @Scheduled(fixedDelayString = "${analytics.sketch.flush-interval-ms:10000}")
+    public void flush() {
+        Map<Long, Map<Key, HyperLogLog>> byTenant = new HashMap<>();
+        for (Key key : pending.keySet()) {
+            HyperLogLog delta = pending.remove(key);
+            if (delta != null) {
+                byTenant.computeIfAbsent(key.tenantId(), id -> new HashMap<>()).put(key, delta);
+            }
+        }
+        
+        byTenant.forEach((tenantId, deltas) -> {
+            try {
+                transaction.executeWithoutResult(status -> {
+                    sketchRepository.lock(tenantId);
+                    deltas.forEach(this::mergeIntoStored);
+                });
+            } catch (Exception e) {
+                deltas.forEach((key, delta) -> pending.merge(key, delta, (a, b) -> {
+                    a.merge(b);
+                    return a;
+                }));
+                log.error("Failed to save unique count sketches for tenant {}: {}", tenantId, e.getMessage());
+            }
+        });
+    }
+    
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+    
+    /**
+     * Recompute a tenant's sketches from its orders and events
+     */
+    @Transactional
+    public int rebuild(Long tenantId) {
+        Map<Key, HyperLogLog> sketches = new HashMap<>();
+        try (Stream<CustomerActivityRow> orders = orderRepository.streamCustomerActivityByTenantId(tenantId)) {
+            orders.forEach(row -> addCustomer(sketches, tenantId, row.customerId(), row.processedAt()));
+        }
+        try (Stream<ShopifyEventIngestedEvent> events = shopifyEventRepository.streamAllByTenantId(tenantId)) {
+            events.forEach(event -> addSession(sketches, event));
+        }
+        
+        sketchRepository.lock(tenantId);
+        sketchRepository.deleteByTenantId(tenantId);
+        sketches.forEach((key, sketch) -> sketchRepository.save(AnalyticsSketch.builder()
+                .tenantId(tenantId)
+                .metric(key.metric())
+                .dimension(key.dimension())
+                .sketchDate(key.date())
+                .estimate(sketch.estimate())
+                .sketch(sketch.serialize())
+                .build()));
+        log.info("Rebuilt {} unique count sketches for tenant {}", sketches.size(), tenantId);
+        return sketches.size();
+    }
+    
+    /**
+     * Whether a tenant has orders or events but no sketches yet
+     */
+    @Transactional(readOnly = true)
+    public boolean needsBackfill(Long tenantId) {
+        return !sketchRepository.existsByTenantId(tenantId)
+                && (orderRepository.countByTenantId(tenantId) > 0 || shopifyEventRepository.countByTenantId(tenantId) > 0);
+    }
+    
+    /**
+     * Approximate unique customers and sessions across a date range, with a per-day breakdown
+     */
+    @Transactional(readOnly = true)
+    public DashboardDto.UniqueCounts getUniqueCounts(Long tenantId, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("End date must not be before start date");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_RANGE_DAYS) {
+            throw new RuntimeException("Date range cannot exceed " + MAX_RANGE_DAYS + " days");
+        }
+        
+        Map<Key, HyperLogLog> days = new HashMap<>();
+        for (AnalyticsSketch row : sketchRepository.findInRange(tenantId, startDate, endDate)) {
+            days.put(new Key(tenantId, row.getMetric(), row.getDimension(), row.getSketchDate()),
+                    HyperLogLog.deserialize(row.getSketch()));
+        }
+        // Pending registers are read without the map's lock; an addition racing with the read is at worst missed
+        pending.forEach((key, delta) -> {
+            if (key.tenantId().equals(tenantId) && !key.date().isBefore(startDate) && !key.date().isAfter(endDate)) {
+                days.computeIfAbsent(key, k -> new HyperLogLog(PRECISION)).merge(delta);
+            }
+        });
+        
+        HyperLogLog customers = new HyperLogLog(PRECISION);
+        HyperLogLog sessions = new HyperLogLog(PRECISION);
+        Map<String, HyperLogLog> sessionsByType = new TreeMap<>();
+        Map<LocalDate, DashboardDto.DailyUniqueCounts> daily = new TreeMap<>();
+        days.forEach((key, sketch) -> {
+            DashboardDto.DailyUniqueCounts day = daily.computeIfAbsent(key.date(), date ->
+                    DashboardDto.DailyUniqueCounts.builder().date(date).uniqueCustomers(0L).uniqueSessions(0L).build());
+            if (key.metric() == AnalyticsSketch.Metric.UNIQUE_CUSTOMERS) {
+                customers.merge(sketch);
+                day.setUniqueCustomers(sketch.estimate());
+            } else if (ALL.equals(key.dimension())) {
+                sessions.merge(sketch);
+                day.setUniqueSessions(sketch.estimate());
+            } else {
+                sessionsByType.computeIfAbsent(key.dimension(), type -> new HyperLogLog(PRECISION)).merge(sketch);
+            }
+        });
+        
+        Map<String, Long> sessionCounts = new LinkedHashMap<>();
+        sessionsByType.forEach((type, sketch) -> sessionCounts.put(type, sketch.estimate()));
+        
+        return DashboardDto.UniqueCounts.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .uniqueCustomers(customers.estimate())
+                .uniqueSessions(sessions.estimate())
+                .uniqueSessionsByEventType(sessionCounts)
+                .daily(new ArrayList<>(daily.values()))
+                .standardError(HyperLogLog.standardError(PRECISION))
+                .build();
+    }
+    
+    private void mergeIntoStored(Key key, HyperLogLog delta) {
+        AnalyticsSketch stored = sketchRepository.findByTenantIdAndMetricAndDimensionAndSketchDate(
+                        key.tenantId(), key.metric(), key.dimension(), key.date())
+                .orElseGet(() -> AnalyticsSketch.builder()
+                        .tenantId(key.tenantId())
+                        .metric(key.metric())
+                        .dimension(key.dimension())
+                        .sketchDate(key.date())
+                        .build());
+        
+        HyperLogLog sketch = stored.getSketch() != null
+                ? HyperLogLog.deserialize(stored.getSketch())
+                : new HyperLogLog(PRECISION);
+        sketch.merge(delta);
+        stored.setSketch(sketch.serialize());
+        stored.setEstimate(sketch.estimate());
+        sketchRepository.save(stored);
+    }
+    
+    private static void addCustomer(Map<Key, HyperLogLog> sketches, Long tenantId, Long customerId, LocalDateTime at) {
+        add(sketches, new Key(tenantId, AnalyticsSketch.Metric.UNIQUE_CUSTOMERS, ALL, at.toLocalDate()),
+                HyperLogLog.hash(customerId));
+    }
+    
+    private static void addSession(Map<Key, HyperLogLog> sketches, ShopifyEventIngestedEvent event) {
+        if (event.sessionId() == null || event.occurredAt() == null) {
+            return;
+        }
+        long hash = HyperLogLog.hash(event.sessionId());
+        LocalDate date = event.occurredAt().toLocalDate();
+        add(sketches, new Key(event.tenantId(), AnalyticsSketch.Metric.UNIQUE_SESSIONS, ALL, date), hash);
+        add(sketches, new Key(event.tenantId(), AnalyticsSketch.Metric.UNIQUE_SESSIONS, event.eventType().name(), date), hash);
+    }
+    
+    private static void add(Map<Key, HyperLogLog> sketches, Key key, long hash) {
+        sketches.compute(key, (k, sketch) -> {
+            HyperLogLog target = sketch != null ? sketch : new HyperLogLog(PRECISION);
+            target.addHash(hash);
+            return target;
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package com.xeno.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Random adds, removals and score changes, with completions checked against a brute-force
+ * scan of every value's keys. Few distinct words keep subtrees over the cache size, so both
+ * cached and collected completions are exercised.
+ */
+class PrefixTrieTest {
+    
+    private static final String[] WORDS = {
+            "alpha", "alps", "alpine", "beta", "bet", "better", "gamma", "gam", "game",
+            "delta", "del", "deli", "a", "ab", "abc"
+    };
+    
+    private record Entry(PrefixTrie.Handle<Integer> handle, List<String> keys) {
+    }
+    
+    @Test
+    void completionsMatchBruteForce() {
+        for (long seed = 1; seed <= 5; seed++) {
+            check(new Random(seed), 20_000);
+        }
+    }
+    
+    @Test
+    void completionsOfEmptyPrefixAreTheBestValues() {
+        PrefixTrie<Integer> trie = new PrefixTrie<>();
+        for (int id = 0; id < 50; id++) {
+            trie.add(id, id % 7, List.of(WORDS[id % WORDS.length]));
+        }
+        
+        assertThat(trie.complete("", 3)).extracting(PrefixTrie.Completion::score).containsExactly(6L, 6L, 6L);
+        assertThat(trie.complete("zzz", 3)).isEmpty();
+    }
+    
+    @Test
+    void loweringAScoreUnderSeveralKeysRefreshesSharedAncestors() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        for (int i = 1; i <= 21; i++) {
+            trie.add("b" + i, 1, List.of("ab" + i));
+            trie.add("c" + i, 99 + i, List.of("ac" + i));
+        }
+        PrefixTrie.Handle<String> handle = trie.add("h", 200, List.of("ab0", "ac0"));
+        
+        trie.setScore(handle, 0);
+        
+        List<String> expected = new ArrayList<>();
+        for (int i = 21; i >= 2; i--) {
+            expected.add("c" + i);
+        }
+        assertThat(trie.complete("a", 20)).extracting(PrefixTrie.Completion::value).containsExactlyElementsOf(expected);
+        assertThat(trie.complete("", 20)).extracting(PrefixTrie.Completion::value).containsExactlyElementsOf(expected);
+    }
+    
+    private static void check(Random random, int operations) {
+        PrefixTrie<Integer> trie = new PrefixTrie<>();
+        // Ids are assigned in add order, which is also the trie's tie-break between equal scores
+        Map<Integer, Entry> entries = new HashMap<>();
+        int nextId = 0;
+        
+        for (int op = 0; op < operations; op++) {
+            int kind = random.nextInt(10);
+            if (kind < 4 || entries.isEmpty()) {
+                List<String> keys = new ArrayList<>();
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    keys.add(word(random) + (random.nextBoolean() ? " " + word(random) : ""));
+                }
+                int id = nextId++;
+                entries.put(id, new Entry(trie.add(id, random.nextInt(50), keys), keys.stream().distinct().toList()));
+            } else if (kind < (entries.size() > 60 ? 8 : 5)) {
+                trie.remove(entries.remove(anyId(random, entries)).handle());
+            } else {
+                trie.setScore(entries.get(anyId(random, entries)).handle(), random.nextInt(50));
+            }
+            
+            if (op % 20 == 0) {
+                String word = word(random);
+                int shape = random.nextInt(5);
+                String prefix = shape == 0 ? ""
+                        : shape == 1 ? word + " " + word(random).charAt(0)
+                        : word.substring(0, 1 + random.nextInt(word.length()));
+                int limit = 1 + random.nextInt(PrefixTrie.CACHE_SIZE);
+                
+                List<Integer> expected = entries.entrySet().stream()
+                        .filter(e -> e.getValue().keys().stream().anyMatch(key -> key.startsWith(prefix)))
+                        .sorted(Comparator.<Map.Entry<Integer, Entry>>comparingLong(e -> -e.getValue().handle().score())
+                                .thenComparing(Map.Entry::getKey))
+                        .limit(limit)
+                        .map(Map.Entry::getKey)
+                        .toList();
+                assertThat(trie.complete(prefix, limit))
+                        .as("completions of '%s' after %d operations", prefix, op)
+                        .extracting(PrefixTrie.Completion::value)
+                        .containsExactlyElementsOf(expected);
+            }
+        }
+        assertThat(trie.size()).isEqualTo(entries.size());
+    }
+    
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+    
+    private static int anyId(Random random, Map<Integer, Entry> entries) {
+        return entries.keySet().stream().skip(random.nextInt(entries.size())).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,39 @@
+package com.xeno.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Descending pages checked against a sorted set, over ids dense enough to use bitmap
+ * containers and sparse enough to use array containers.
+ */
+class RoaringBitmapTest {
+    
+    @Test
+    void descendingPagesMatchSortedSet() {
+        Random random = new Random(7);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 30_000; i++) {
+            // Ids under 2^16 fill one bitmap container; the rest spread over array containers
+            long id = random.nextBoolean() ? random.nextInt(1 << 16) : random.nextLong(RoaringBitmap.MAX_ID);
+            bitmap.add(id);
+            expected.add(id);
+        }
+        List<Long> descending = expected.descendingSet().stream().toList();
+        
+        for (int check = 0; check < 500; check++) {
+            int skip = random.nextInt(expected.size() + 10);
+            int limit = random.nextInt(100);
+            List<Long> page = descending.subList(Math.min(skip, descending.size()),
+                    Math.min(skip + limit, descending.size()));
+            assertThat(bitmap.descending(skip, limit)).as("skip %d, limit %d", skip, limit)
+                    .containsExactly(page.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+}